@@ -5,6 +5,7 @@ plugins {
     id("com.diffplug.spotless") version "6.25.0"
 	  id("org.springframework.boot") version "3.4.0"
     id("com.adarshr.test-logger") version "4.0.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 apply(plugin = "io.spring.dependency-management")
@@ -30,6 +31,9 @@ dependencies {
     implementation("commons-cli:commons-cli:1.6.0")
     implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.6.0")
     implementation("org.springframework.boot:spring-boot-starter")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.springframework.boot:spring-boot-starter-cache")
+    implementation("com.github.ben-manes.caffeine:caffeine")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-starter-web")
@@ -58,6 +62,11 @@ tasks.named<Test>("test") {
     useJUnitPlatform()
 }
 
+jmh {
+    // Report bytes allocated per operation alongside the timings.
+    profilers.add("gc")
+}
+
 
 configure<com.diffplug.gradle.spotless.SpotlessExtension> {
 
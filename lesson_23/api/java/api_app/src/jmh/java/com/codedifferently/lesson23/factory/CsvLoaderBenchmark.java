@@ -0,0 +1,169 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Measures loading a generated catalog from CSV files with the buffered and the mapped loaders.
+ *
+ * <p>Items are fed to a sink that only counts them, so the timings cover reading and parsing the
+ * files rather than building a library. Loading whole models is measured as well, since that path
+ * keeps every row in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvLoaderBenchmark {
+
+  private static final String[] TYPES = {"book", "dvd", "magazine", "newspaper"};
+  private static final String[] WORDS = {"Great", "Gatsby", "Mockingbird", "Escape", "The", "Lee"};
+  private static final int GUEST_COUNT = 100;
+
+  @Param({"10000", "1000000"})
+  public int itemCount;
+
+  private Path directory;
+  private LibraryCsvDataLoader bufferedLoader;
+  private LibraryMappedCsvDataLoader mappedLoader;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("csv-loader-benchmark");
+    writeCatalog(directory, itemCount);
+    var resource = new FileSystemResource(directory.toString() + "/");
+    bufferedLoader = new LibraryCsvDataLoader(resource, ForkJoinPool.commonPool());
+    mappedLoader = new LibraryMappedCsvDataLoader(resource);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    deleteCatalog(directory);
+  }
+
+  @Benchmark
+  public long bufferedIntoSink() throws IOException {
+    var sink = new CountingSink();
+    bufferedLoader.loadData(sink);
+    return sink.items.sum();
+  }
+
+  @Benchmark
+  public long mappedIntoSink() throws IOException {
+    var sink = new CountingSink();
+    mappedLoader.loadData(sink);
+    return sink.items.sum();
+  }
+
+  @Benchmark
+  public int bufferedModel() throws IOException {
+    return bufferedLoader.loadData().mediaItems.size();
+  }
+
+  @Benchmark
+  public int mappedModel() throws IOException {
+    return mappedLoader.loadData().mediaItems.size();
+  }
+
+  /**
+   * Write a generated catalog of the given size as CSV files, with one checkout for each guest.
+   *
+   * @param directory The directory to write the files to.
+   * @param itemCount The number of media items to write.
+   * @throws IOException If a file cannot be written.
+   */
+  static void writeCatalog(Path directory, int itemCount) throws IOException {
+    var random = new Random(42);
+    UUID[] checkedOut = new UUID[GUEST_COUNT];
+    try (BufferedWriter items = Files.newBufferedWriter(directory.resolve("media_items.csv"))) {
+      items.write("type,id,title,isbn,authors,pages,runtime,edition\n");
+      int checkouts = 0;
+      for (int i = 0; i < itemCount; i++) {
+        UUID id = new UUID(random.nextLong(), random.nextLong());
+        String type = TYPES[i % TYPES.length];
+        // Only books and dvds can be checked out, and loaders refuse checkouts of anything else.
+        if (checkouts < GUEST_COUNT && (type.equals("book") || type.equals("dvd"))) {
+          checkedOut[checkouts++] = id;
+        }
+        String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[i % WORDS.length];
+        items.write(type + "," + id + "," + title + ",");
+        if (type.equals("book")) {
+          items.write("978-" + i + ",\"Harper Lee, " + WORDS[i % WORDS.length] + "\"," + i % 500);
+        } else {
+          items.write(",,");
+        }
+        items.write(",,\n");
+      }
+    }
+    try (BufferedWriter guests = Files.newBufferedWriter(directory.resolve("guests.csv"));
+        BufferedWriter checkouts =
+            Files.newBufferedWriter(directory.resolve("checked_out_items.csv"))) {
+      guests.write("type,name,email\n");
+      checkouts.write("email,item_id,due_date\n");
+      for (int i = 0; i < GUEST_COUNT; i++) {
+        String email = "guest" + i + "@example.com";
+        guests.write((i == 0 ? "librarian" : "patron") + ",Guest " + i + "," + email + "\n");
+        if (checkedOut[i] != null) {
+          checkouts.write(email + "," + checkedOut[i] + ",2024-04-05T00:00:00Z\n");
+        }
+      }
+    }
+  }
+
+  /**
+   * Delete a catalog written by {@link #writeCatalog} along with its directory.
+   *
+   * @param directory The directory holding the catalog.
+   * @throws IOException If a file cannot be deleted.
+   */
+  static void deleteCatalog(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private static final class CountingSink implements LibraryDataSink {
+
+    private final LongAdder items = new LongAdder();
+
+    @Override
+    public void addGuest(LibraryGuest guest) {}
+
+    @Override
+    public void addMediaItem(MediaItem item) {
+      items.increment();
+    }
+
+    @Override
+    public void addCheckout(String email, CheckoutModel checkout) {}
+  }
+}
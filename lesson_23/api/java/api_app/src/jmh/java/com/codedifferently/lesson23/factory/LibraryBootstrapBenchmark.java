@@ -0,0 +1,82 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.Library;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Measures building a library from a generated CSV catalog one item at a time and in parallel.
+ *
+ * <p>Each build runs inside a pool with the given parallelism, so the CSV parsing, the parallel
+ * streams and the batch indexing all share its threads. With one thread the parallel build shows
+ * its cost over the sequential one, and the larger pools show how it scales with cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryBootstrapBenchmark {
+
+  @Param({"1", "4", "8", "16"})
+  public int parallelism;
+
+  @Param({"100000", "1000000"})
+  public int itemCount;
+
+  private Path directory;
+  private ForkJoinPool pool;
+  private LibraryCsvDataLoader loader;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("library-bootstrap-benchmark");
+    CsvLoaderBenchmark.writeCatalog(directory, itemCount);
+    pool = new ForkJoinPool(parallelism);
+    loader = new LibraryCsvDataLoader(new FileSystemResource(directory.toString() + "/"), pool);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    pool.shutdown();
+    CsvLoaderBenchmark.deleteCatalog(directory);
+  }
+
+  @Benchmark
+  public long sequential() throws Exception {
+    return inPool(() -> LibraryFactory.createWithLoader(loader));
+  }
+
+  @Benchmark
+  public long parallel() throws Exception {
+    return inPool(() -> LibraryFactory.createWithLoaderInParallel(loader));
+  }
+
+  private long inPool(LibraryBuild build) throws ExecutionException, InterruptedException {
+    // Parallel streams started from a task in the pool run on that pool rather than the common one.
+    return pool.submit(() -> build.run().getStats().getItemCount()).get();
+  }
+
+  @FunctionalInterface
+  private interface LibraryBuild {
+    Library run() throws IOException;
+  }
+}
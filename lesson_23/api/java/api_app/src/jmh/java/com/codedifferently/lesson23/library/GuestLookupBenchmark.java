@@ -0,0 +1,75 @@
+package com.codedifferently.lesson23.library;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures looking guests up by email as the number of guests grows.
+ *
+ * <p>Lookups cycle through a shuffled sample of the guests' emails, written in upper case so the
+ * case-insensitive path is the one measured. A flat cost across guest counts shows the lookups do
+ * not scan the guests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuestLookupBenchmark {
+
+  private static final int SAMPLE_SIZE = 4096;
+
+  @Param({"10000", "100000", "1000000"})
+  public int guestCount;
+
+  private Library library;
+  private final String[] emails = new String[SAMPLE_SIZE];
+  private int next;
+
+  @Setup
+  public void setUp() {
+    library = new Library("benchmark-library");
+    for (int i = 0; i < guestCount; i++) {
+      String name = "Guest " + i;
+      String email = "guest" + i + "@example.com";
+      library.addLibraryGuest(i % 10 == 0 ? new Librarian(name, email) : new Patron(name, email));
+    }
+    var random = new Random(42);
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      emails[i] = ("guest" + random.nextInt(guestCount) + "@example.com").toUpperCase();
+    }
+  }
+
+  private String nextEmail() {
+    next = (next + 1) & (SAMPLE_SIZE - 1);
+    return emails[next];
+  }
+
+  @Benchmark
+  public boolean hasGuest() {
+    return library.hasLibraryGuest(nextEmail());
+  }
+
+  @Benchmark
+  public Optional<LibraryGuest> findGuest() {
+    return library.findLibraryGuest(nextEmail());
+  }
+
+  @Benchmark
+  public boolean hasMissingGuest() {
+    return library.hasLibraryGuest("nobody@example.com");
+  }
+}
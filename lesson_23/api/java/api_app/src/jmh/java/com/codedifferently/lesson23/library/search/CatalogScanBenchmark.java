@@ -0,0 +1,99 @@
+package com.codedifferently.lesson23.library.search;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Magazine;
+import com.codedifferently.lesson23.library.MediaItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures queries that no index can narrow, scanned over objects and over columns.
+ *
+ * <p>Each scan runs on a pool with the given number of threads. With one thread the strategy falls
+ * back to a sequential scan, which is the baseline for the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogScanBenchmark {
+
+  private static final String[] WORDS = {"Great", "Gatsby", "Mockingbird", "Escape", "The", "Lee"};
+
+  @Param({"1", "4", "16"})
+  public int threads;
+
+  @Param({"10000", "1000000"})
+  public int itemCount;
+
+  private ForkJoinPool pool;
+  private CatalogSearcher<MediaItem> objectSearcher;
+  private ColumnarCatalogSearcher<MediaItem> columnarSearcher;
+  private final SearchCriteria typeQuery = SearchCriteria.builder().type("dvd").build();
+  private final SearchCriteria titleQuery =
+      SearchCriteria.builder().title("at").type("book").build();
+
+  @Setup
+  public void setUp() {
+    var random = new Random(42);
+    List<MediaItem> catalog = new ArrayList<>(itemCount);
+    for (int i = 0; i < itemCount; i++) {
+      String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[i % WORDS.length];
+      catalog.add(
+          switch (i % 3) {
+            case 0 -> new Book(UUID.randomUUID(), title, "978-0", List.of("Harper Lee"), 100);
+            case 1 -> new Dvd(UUID.randomUUID(), title);
+            default -> new Magazine(UUID.randomUUID(), title);
+          });
+    }
+    pool = new ForkJoinPool(threads);
+    ScanStrategy strategy = ScanStrategy.parallel(pool);
+    objectSearcher = new CatalogSearcher<>(catalog, strategy);
+    columnarSearcher = new ColumnarCatalogSearcher<>(strategy);
+    columnarSearcher.addAll(catalog);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public int objectsByType() {
+    return objectSearcher.search(typeQuery).size();
+  }
+
+  @Benchmark
+  public int columnsByType() {
+    return columnarSearcher.search(typeQuery).size();
+  }
+
+  @Benchmark
+  public int objectsByTitle() {
+    return objectSearcher.search(titleQuery).size();
+  }
+
+  @Benchmark
+  public int columnsByTitle() {
+    return columnarSearcher.search(titleQuery).size();
+  }
+}
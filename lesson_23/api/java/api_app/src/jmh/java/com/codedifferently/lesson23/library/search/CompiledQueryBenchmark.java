@@ -0,0 +1,80 @@
+package com.codedifferently.lesson23.library.search;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.MediaItem;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures matching a query against every item of a catalog.
+ *
+ * <p>Each operation is one item, so with the gc profiler {@code gc.alloc.rate.norm} reads as bytes
+ * allocated per item and should be zero for the compiled scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CompiledQueryBenchmark.ITEM_COUNT)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledQueryBenchmark {
+
+  static final int ITEM_COUNT = 10_000;
+
+  private static final String[] WORDS = {"Great", "Gatsby", "Mockingbird", "Escape", "The", "Lee"};
+
+  private final MediaItem[] items = new MediaItem[ITEM_COUNT];
+  private SearchCriteria criteria;
+  private CompiledQuery query;
+
+  @Setup
+  public void setUp() {
+    var random = new Random(42);
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[i % WORDS.length];
+      items[i] =
+          i % 2 == 0
+              ? new Book(UUID.randomUUID(), title, "978-0", List.of("Harper Lee", "F. Scott"), 100)
+              : new Dvd(UUID.randomUUID(), title);
+    }
+    criteria = SearchCriteria.builder().title("GREAT").author("lee").type("book").build();
+    query = CompiledQuery.compile(criteria);
+  }
+
+  @Benchmark
+  public int scanCompiled() {
+    int count = 0;
+    for (MediaItem item : items) {
+      if (item.matches(query)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int scanCriteria() {
+    int count = 0;
+    for (MediaItem item : items) {
+      if (item.matches(criteria)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
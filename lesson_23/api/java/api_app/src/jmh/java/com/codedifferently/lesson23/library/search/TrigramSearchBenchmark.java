@@ -0,0 +1,98 @@
+package com.codedifferently.lesson23.library.search;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Magazine;
+import com.codedifferently.lesson23.library.MediaItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures title-contains queries answered by the trigram index against a linear scan.
+ *
+ * <p>Titles pair common words with a numbered word, so queries range from a single match to a
+ * large share of the catalog. The scan is sequential, which is the baseline the index replaces.
+ * Ten million items need a large heap, so the fork is given one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class TrigramSearchBenchmark {
+
+  private static final String[] WORDS = {"Great", "Gatsby", "Mockingbird", "Escape", "The", "Lee"};
+
+  @Param({"10000", "1000000", "10000000"})
+  public int itemCount;
+
+  private CatalogSearcher<MediaItem> scanSearcher;
+  private IndexedCatalogSearcher<MediaItem> indexedSearcher;
+  private SearchCriteria rareQuery;
+  private final SearchCriteria commonQuery = SearchCriteria.builder().title("gatsby").build();
+  private final SearchCriteria shortQuery = SearchCriteria.builder().title("ck").build();
+
+  @Setup
+  public void setUp() {
+    var random = new Random(42);
+    List<MediaItem> catalog = new ArrayList<>(itemCount);
+    for (int i = 0; i < itemCount; i++) {
+      String title = WORDS[random.nextInt(WORDS.length)] + " volume" + i;
+      catalog.add(
+          switch (i % 3) {
+            case 0 -> new Book(UUID.randomUUID(), title, "978-0", List.of("Harper Lee"), 100);
+            case 1 -> new Dvd(UUID.randomUUID(), title);
+            default -> new Magazine(UUID.randomUUID(), title);
+          });
+    }
+    rareQuery = SearchCriteria.builder().title("volume" + itemCount / 2).build();
+    scanSearcher = new CatalogSearcher<>(catalog, ScanStrategy.sequential());
+    indexedSearcher = new IndexedCatalogSearcher<>();
+    indexedSearcher.addAll(catalog);
+  }
+
+  @Benchmark
+  public int scanRareTitle() {
+    return scanSearcher.search(rareQuery).size();
+  }
+
+  @Benchmark
+  public int indexRareTitle() {
+    return indexedSearcher.search(rareQuery).size();
+  }
+
+  @Benchmark
+  public int scanCommonTitle() {
+    return scanSearcher.search(commonQuery).size();
+  }
+
+  @Benchmark
+  public int indexCommonTitle() {
+    return indexedSearcher.search(commonQuery).size();
+  }
+
+  @Benchmark
+  public int scanShortTitle() {
+    return scanSearcher.search(shortQuery).size();
+  }
+
+  @Benchmark
+  public int indexShortTitle() {
+    return indexedSearcher.search(shortQuery).size();
+  }
+}
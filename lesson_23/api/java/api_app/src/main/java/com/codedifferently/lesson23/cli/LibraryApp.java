@@ -3,13 +3,12 @@ package com.codedifferently.lesson23.cli;
 import com.codedifferently.lesson23.factory.LibraryDataLoader;
 import com.codedifferently.lesson23.library.Book;
 import com.codedifferently.lesson23.library.Library;
-import com.codedifferently.lesson23.library.LibraryInfo;
+import com.codedifferently.lesson23.library.LibraryStats;
 import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.library.MediaType;
 import com.codedifferently.lesson23.library.search.SearchCriteria;
-import java.util.Map;
+import java.util.List;
 import java.util.Scanner;
-import java.util.Set;
-import java.util.UUID;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -23,6 +22,9 @@ import org.springframework.stereotype.Service;
 @Service
 public final class LibraryApp {
 
+  /** The most search results shown at once; the best matches are shown first. */
+  static final int MAX_SEARCH_RESULTS = 20;
+
   @Autowired private Library library;
 
   public void run(String[] args) throws Exception {
@@ -42,15 +44,20 @@ public final class LibraryApp {
   }
 
   private void printLibraryInfo(Library library) {
-    LibraryInfo info = library.getInfo();
-    Map<UUID, Set<MediaItem>> checkedOutItemsByGuest = info.getCheckedOutItemsByGuest();
-    int numCheckedOutItems = checkedOutItemsByGuest.values().stream().mapToInt(Set::size).sum();
+    LibraryStats stats = library.getStats();
     System.out.println();
     System.out.println("========================================");
     System.out.println("Library id: " + library.getId());
-    System.out.println("Number of items: " + info.getItems().size());
-    System.out.println("Number of guests: " + info.getGuests().size());
-    System.out.println("Number of checked out items: " + numCheckedOutItems);
+    System.out.println("Number of items: " + stats.getItemCount());
+    for (MediaType type : MediaType.values()) {
+      long count = stats.getItemCount(type);
+      if (count > 0) {
+        System.out.println("  " + type.getType() + ": " + count);
+      }
+    }
+    System.out.println("Number of guests: " + stats.getGuestCount());
+    System.out.println("Number of librarians: " + stats.getLibrarianCount());
+    System.out.println("Number of checked out items: " + stats.getCheckedOutCount());
     System.out.println("========================================");
     System.out.println();
   }
@@ -115,7 +122,7 @@ public final class LibraryApp {
       return;
     }
     SearchCriteria criteria = getSearchCriteria(scanner, command);
-    Set<MediaItem> results = library.search(criteria);
+    List<MediaItem> results = library.searchRanked(criteria, MAX_SEARCH_RESULTS);
     printSearchResults(results);
   }
 
@@ -168,7 +175,7 @@ public final class LibraryApp {
     return null;
   }
 
-  private void printSearchResults(Set<MediaItem> results) {
+  private void printSearchResults(List<MediaItem> results) {
     System.out.println();
 
     if (results.isEmpty()) {
@@ -186,6 +193,10 @@ public final class LibraryApp {
       System.out.println("TYPE: " + item.getType().toString().toUpperCase());
       System.out.println();
     }
-    System.out.println("Found " + results.size() + " result(s).\n");
+    if (results.size() == MAX_SEARCH_RESULTS) {
+      System.out.println("Showing the top " + results.size() + " result(s).\n");
+    } else {
+      System.out.println("Found " + results.size() + " result(s).\n");
+    }
   }
 }
@@ -0,0 +1,90 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.Librarian;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** Builds a library directly from the data fed to it by a loader. */
+public final class LibraryBuilder implements LibraryDataSink {
+
+  private final Library library;
+  private final Queue<PendingCheckout> pendingCheckouts = new ConcurrentLinkedQueue<>();
+  private volatile Librarian firstLibrarian;
+
+  /**
+   * Create a builder that fills the given library.
+   *
+   * @param library The library to fill.
+   */
+  public LibraryBuilder(Library library) {
+    this.library = library;
+  }
+
+  @Override
+  public void addGuest(LibraryGuest guest) {
+    library.addLibraryGuest(guest);
+    if (firstLibrarian == null && guest instanceof Librarian librarian) {
+      firstLibrarian = librarian;
+    }
+  }
+
+  @Override
+  public void addMediaItem(MediaItem item) {
+    library.addMediaItem(item, firstLibrarian);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the library refuses the checkout, e.g. because the item is
+   *     checked out already.
+   */
+  @Override
+  public void addCheckout(String email, CheckoutModel checkout) {
+    if (!tryCheckOut(email, checkout)) {
+      pendingCheckouts.add(new PendingCheckout(email, checkout));
+    }
+  }
+
+  /**
+   * Finish building the library, applying checkouts that arrived before their guest or item.
+   *
+   * @return The library.
+   * @throws IllegalArgumentException if a checkout refers to an unknown guest or item.
+   * @throws IllegalStateException if the library refuses a checkout, e.g. because the item is
+   *     checked out already.
+   */
+  public Library build() {
+    PendingCheckout pending;
+    while ((pending = pendingCheckouts.poll()) != null) {
+      if (!tryCheckOut(pending.email(), pending.checkout())) {
+        throw new IllegalArgumentException(
+            "Unknown guest or item in checkout: "
+                + pending.email()
+                + ", "
+                + pending.checkout().itemId);
+      }
+    }
+    return library;
+  }
+
+  private boolean tryCheckOut(String email, CheckoutModel checkout) {
+    Optional<LibraryGuest> guest = library.findLibraryGuest(email);
+    Optional<MediaItem> item = library.findMediaItem(checkout.itemId);
+    if (guest.isEmpty() || item.isEmpty()) {
+      return false;
+    }
+    if (!library.checkOutMediaItem(item.get(), guest.get(), checkout.dueDate)) {
+      throw new IllegalStateException(
+          "Checkout refused by the library: " + email + ", " + checkout.itemId);
+    }
+    return true;
+  }
+
+  private record PendingCheckout(String email, CheckoutModel checkout) {}
+}
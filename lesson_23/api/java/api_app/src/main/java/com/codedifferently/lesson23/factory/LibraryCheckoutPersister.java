@@ -0,0 +1,317 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.LibraryInfo;
+import com.codedifferently.lesson23.library.LibraryListener;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import com.codedifferently.lesson23.repository.CheckoutRepository;
+import com.codedifferently.lesson23.repository.RepositoryCacheConfiguration;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes checkouts and check-ins back to the database in the background.
+ *
+ * <p>Changes are queued as they happen and written in batches by a single thread, once a batch is
+ * full or the flush interval has passed. Only the latest change to each item in a batch is written,
+ * and whatever is still queued is written on shutdown.
+ *
+ * <p>Changes are reported while the library holds the locks of the items and guests involved, so
+ * queueing never waits. When the queue is full the change is dropped and the persister is marked
+ * dirty, and once the queue has drained every checkout of the {@link #attach attached} library is
+ * rewritten from a consistent view of it. A batch that still fails after {@link
+ * #MAX_WRITE_ATTEMPTS} attempts, with growing delays in between, is dropped the same way. Dropped
+ * changes and failed batches are logged and counted in the {@code library.checkout.writer} metrics.
+ */
+@Service
+@ConditionalOnProperty(
+    name = "library.write-behind.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public final class LibraryCheckoutPersister implements LibraryListener, MeterBinder {
+
+  static final int QUEUE_CAPACITY = 10_000;
+  static final int BATCH_SIZE = 500;
+  static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+  static final int MAX_WRITE_ATTEMPTS = 5;
+  static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(1);
+  static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+
+  private static final Logger logger = LoggerFactory.getLogger(LibraryCheckoutPersister.class);
+
+  @Autowired private CheckoutRepository checkoutRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private CacheManager cacheManager;
+  @PersistenceContext private EntityManager entityManager;
+
+  private final BlockingQueue<CheckoutChange> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread writer = new Thread(this::writeChanges, "library-checkout-writer");
+  private final LongAdder droppedChanges = new LongAdder();
+  private final LongAdder failedBatches = new LongAdder();
+  private volatile Library library;
+  private volatile boolean resyncNeeded;
+  private volatile boolean closed;
+
+  /**
+   * Persist the checkouts of a library, and rewrite them all from it when changes were lost.
+   *
+   * @param library The library to persist.
+   */
+  public void attach(Library library) {
+    this.library = library;
+    library.addListener(this);
+  }
+
+  /**
+   * Get the number of changes dropped because the queue was full.
+   *
+   * @return The number of dropped changes.
+   */
+  public long getDroppedChangeCount() {
+    return droppedChanges.sum();
+  }
+
+  /**
+   * Get the number of batches, including full rewrites, that failed on every attempt.
+   *
+   * @return The number of failed batches.
+   */
+  public long getFailedBatchCount() {
+    return failedBatches.sum();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(
+            "library.checkout.writer.dropped.changes",
+            this,
+            LibraryCheckoutPersister::getDroppedChangeCount)
+        .register(registry);
+    FunctionCounter.builder(
+            "library.checkout.writer.failed.batches",
+            this,
+            LibraryCheckoutPersister::getFailedBatchCount)
+        .register(registry);
+    Gauge.builder("library.checkout.writer.queue.size", queue, BlockingQueue::size)
+        .register(registry);
+  }
+
+  @PostConstruct
+  void start() {
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /** Write every queued change and stop the writer. */
+  @PreDestroy
+  void close() throws InterruptedException {
+    closed = true;
+    writer.join();
+  }
+
+  @Override
+  public void onMediaItemCheckedOut(MediaItem item, LibraryGuest guest, Instant dueDate) {
+    enqueue(new CheckoutChange(item.getId(), guest.getEmail(), dueDate, true));
+  }
+
+  @Override
+  public void onMediaItemCheckedIn(MediaItem item, LibraryGuest guest) {
+    enqueue(new CheckoutChange(item.getId(), guest.getEmail(), null, false));
+  }
+
+  private void enqueue(CheckoutChange change) {
+    // The caller holds library locks, so never wait here; a full rewrite recovers the change.
+    if (!queue.offer(change)) {
+      droppedChanges.increment();
+      resyncNeeded = true;
+    }
+  }
+
+  private void writeChanges() {
+    List<CheckoutChange> batch = new ArrayList<>(BATCH_SIZE);
+    while (!closed || !queue.isEmpty() || resyncNeeded) {
+      if (resyncNeeded) {
+        resync();
+        continue;
+      }
+      fillBatch(batch);
+      if (!batch.isEmpty() && !writeWithRetries(() -> write(batch), batch.size() + " changes")) {
+        lose(batch.size() + " checkout changes");
+      }
+      batch.clear();
+    }
+  }
+
+  /** Rewrite every checkout of the library, replacing whatever is queued. */
+  private void resync() {
+    Library source = library;
+    if (source == null) {
+      resyncNeeded = false;
+      logger.warn("Checkout changes were dropped and no library is attached to rewrite them from");
+      return;
+    }
+    // No change can be reported while changes are paused, so the view and the queue agree.
+    LibraryInfo info =
+        source.whileChangesPaused(
+            () -> {
+              queue.clear();
+              resyncNeeded = false;
+              return source.getInfo();
+            });
+    if (!writeWithRetries(() -> writeAll(info), "every checkout")) {
+      lose("the rewrite of every checkout");
+    }
+  }
+
+  /** Count and log a write that failed for good, and rewrite everything once it can. */
+  private void lose(String what) {
+    failedBatches.increment();
+    if (closed) {
+      logger.error("Dropped {} while shutting down", what);
+    } else {
+      logger.error("Dropped {}; every checkout will be rewritten", what);
+      resyncNeeded = true;
+    }
+  }
+
+  /**
+   * Run a write until it succeeds, waiting longer after each failure, up to {@link
+   * #MAX_WRITE_ATTEMPTS} attempts. Only one attempt is made once the persister is closed.
+   *
+   * @return True if the write succeeded, false otherwise.
+   */
+  private boolean writeWithRetries(Runnable write, String what) {
+    Duration delay = FIRST_RETRY_DELAY;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        write.run();
+        return true;
+      } catch (RuntimeException e) {
+        if (closed || attempt == MAX_WRITE_ATTEMPTS) {
+          logger.error("Failed to write {} after {} attempts", what, attempt, e);
+          return false;
+        }
+        logger.warn("Failed to write {}, retrying in {}", what, delay, e);
+        waitBeforeRetry(delay);
+        Duration doubled = delay.multipliedBy(2);
+        delay = doubled.compareTo(MAX_RETRY_DELAY) < 0 ? doubled : MAX_RETRY_DELAY;
+      }
+    }
+  }
+
+  /** Collect changes until the batch is full or the flush interval passes after the first one. */
+  private void fillBatch(List<CheckoutChange> batch) {
+    long deadline = System.nanoTime() + FLUSH_INTERVAL.toNanos();
+    try {
+      while (batch.size() < BATCH_SIZE) {
+        queue.drainTo(batch, BATCH_SIZE - batch.size());
+        long remaining = deadline - System.nanoTime();
+        if (batch.size() >= BATCH_SIZE || remaining <= 0 || closed) {
+          return;
+        }
+        CheckoutChange next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (next != null) {
+          batch.add(next);
+        }
+      }
+    } catch (InterruptedException e) {
+      // Write what has been collected; close decides when the writer stops.
+    }
+  }
+
+  private void write(List<CheckoutChange> batch) {
+    Map<UUID, CheckoutChange> latest = new LinkedHashMap<>();
+    Set<String> touchedEmails = new HashSet<>();
+    for (CheckoutChange change : batch) {
+      latest.put(change.itemId(), change);
+      touchedEmails.add(change.email());
+    }
+    var transaction = new TransactionTemplate(transactionManager);
+    transaction.executeWithoutResult(
+        status -> {
+          // Clear every touched item, then insert the ones still checked out in one JDBC batch.
+          checkoutRepository.deleteByItemIds(latest.keySet());
+          for (CheckoutChange change : latest.values()) {
+            if (change.checkedOut()) {
+              persist(change.itemId(), change.email(), change.dueDate());
+            }
+          }
+        });
+    // Cached guests carry their checkouts, so drop the ones this batch changed.
+    Cache guests = cacheManager.getCache(RepositoryCacheConfiguration.GUESTS);
+    if (guests != null) {
+      touchedEmails.forEach(guests::evict);
+    }
+  }
+
+  private void writeAll(LibraryInfo info) {
+    var transaction = new TransactionTemplate(transactionManager);
+    transaction.executeWithoutResult(
+        status -> {
+          checkoutRepository.deleteAllCheckouts();
+          Map<UUID, Set<MediaItem>> itemsByGuest = info.getCheckedOutItemsByGuest();
+          for (LibraryGuest guest : info.getGuests()) {
+            for (MediaItem item : itemsByGuest.getOrDefault(guest.getId(), Set.of())) {
+              persist(item.getId(), guest.getEmail(), info.getDueDatesByItemId().get(item.getId()));
+            }
+          }
+        });
+    Cache guests = cacheManager.getCache(RepositoryCacheConfiguration.GUESTS);
+    if (guests != null) {
+      guests.clear();
+    }
+  }
+
+  private void persist(UUID itemId, String email, Instant dueDate) {
+    var checkout = new CheckoutModel();
+    checkout.itemId = itemId;
+    checkout.email = email;
+    checkout.dueDate = dueDate;
+    entityManager.persist(checkout);
+  }
+
+  /** Wait before retrying a write, cutting the wait short once the persister is closed. */
+  private void waitBeforeRetry(Duration duration) {
+    long deadline = System.nanoTime() + duration.toNanos();
+    try {
+      while (!closed && System.nanoTime() < deadline) {
+        Thread.sleep(100);
+      }
+    } catch (InterruptedException e) {
+      // Retry straight away.
+    }
+  }
+
+  /** A checkout or check-in of an item by the guest with the email. */
+  private record CheckoutChange(UUID itemId, String email, Instant dueDate, boolean checkedOut) {}
+}
@@ -5,63 +5,228 @@ import com.codedifferently.lesson23.models.CheckoutModel;
 import com.codedifferently.lesson23.models.LibraryDataModel;
 import com.codedifferently.lesson23.models.LibraryGuestModel;
 import com.codedifferently.lesson23.models.MediaItemModel;
-import java.io.FileReader;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
-/** An object that loads data from a CSV and returns a LibraryDataModel object. */
+/**
+ * An object that loads data from a CSV and returns a LibraryDataModel object.
+ *
+ * <p>When feeding a {@link LibraryDataSink}, media items are streamed from the file in chunks that
+ * are parsed in parallel, so only a bounded number of rows is held in memory at once.
+ */
 @Service
 public final class LibraryCsvDataLoader implements LibraryDataLoader {
 
-  private static final String MEDIA_ITEMS_CSV_PATH = "csv/media_items.csv";
-  private static final String GUESTS_CSV_PATH = "csv/guests.csv";
-  private static final String CHECKED_OUT_ITEMS_CSV_PATH = "csv/checked_out_items.csv";
+  private static final String MEDIA_ITEMS_CSV_NAME = "media_items.csv";
+  private static final String GUESTS_CSV_NAME = "guests.csv";
+  private static final String CHECKED_OUT_ITEMS_CSV_NAME = "checked_out_items.csv";
+  private static final int ROWS_PER_CHUNK = 8192;
+
+  private final Resource directory;
+  private final ForkJoinPool pool;
+
+  public LibraryCsvDataLoader() {
+    this(new ClassPathResource("csv/"), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a loader that reads the CSV files from the given directory.
+   *
+   * @param directory The directory holding the CSV files, e.g. a classpath, file or jar resource.
+   * @param pool The pool to parse media items on.
+   */
+  public LibraryCsvDataLoader(Resource directory, ForkJoinPool pool) {
+    this.directory = directory;
+    this.pool = pool;
+  }
 
   @Override
   public LibraryDataModel loadData() throws IOException {
     var model = new LibraryDataModel();
-    model.mediaItems = loadMediaItemsFromCsv(MEDIA_ITEMS_CSV_PATH);
-    model.guests = loadGuestsFromCsv(GUESTS_CSV_PATH, CHECKED_OUT_ITEMS_CSV_PATH);
+    model.mediaItems = loadMediaItemsFromCsv(MEDIA_ITEMS_CSV_NAME);
+    model.guests = loadGuestsFromCsv(GUESTS_CSV_NAME, CHECKED_OUT_ITEMS_CSV_NAME);
     return model;
   }
 
-  private List<MediaItemModel> loadMediaItemsFromCsv(String filePath) throws IOException {
-    List<MediaItemModel> mediaItems = new ArrayList<>();
+  @Override
+  public void loadData(LibraryDataSink sink) throws IOException {
+    try (var csvParser = openCsv(GUESTS_CSV_NAME)) {
+      for (CSVRecord csvRecord : csvParser) {
+        sink.addGuest(toGuestModel(csvRecord).toLibraryGuest());
+      }
+    }
+    streamMediaItemsFromCsv(MEDIA_ITEMS_CSV_NAME, sink);
+    try (var csvParser = openCsv(CHECKED_OUT_ITEMS_CSV_NAME)) {
+      for (CSVRecord csvRecord : csvParser) {
+        sink.addCheckout(csvRecord.get("email"), toCheckoutModel(csvRecord));
+      }
+    }
+  }
+
+  private CSVParser openCsv(String fileName) throws IOException {
+    return CSVFormat.DEFAULT
+        .builder()
+        .setHeader()
+        .setSkipHeaderRecord(true)
+        .build()
+        .parse(openReader(fileName));
+  }
+
+  private BufferedReader openReader(String fileName) throws IOException {
+    Resource resource = directory.createRelative(fileName);
+    return new BufferedReader(
+        new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8));
+  }
 
-    try (var reader = new FileReader(new ClassPathResource(filePath).getFile());
-        var csvParser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+  private List<MediaItemModel> loadMediaItemsFromCsv(String fileName) throws IOException {
+    List<MediaItemModel> mediaItems = new ArrayList<>();
+    try (var csvParser = openCsv(fileName)) {
       for (CSVRecord csvRecord : csvParser) {
-        var item = new MediaItemModel();
-
-        item.type = MediaType.fromString(csvRecord.get("type"));
-        item.id = UUID.fromString(csvRecord.get("id"));
-        item.title = csvRecord.get("title");
-        item.isbn = csvRecord.get("isbn");
-        item.authors = List.of(csvRecord.get("authors").split(", "));
-        item.pages = parseIntOrDefault(csvRecord.get("pages"), 0);
-        item.runtime = parseIntOrDefault(csvRecord.get("runtime"), 0);
-        item.edition = csvRecord.get("edition");
-
-        mediaItems.add(item);
+        mediaItems.add(toMediaItemModel(csvRecord));
       }
+    }
+    return mediaItems;
+  }
 
-    } catch (IOException e) {
-      return new ArrayList<>();
+  /**
+   * Stream media items to the sink, parsing chunks of the file in parallel.
+   *
+   * <p>The file is cut into chunks after a newline outside a quoted field, which only requires
+   * tracking whether the reader is inside quotes. Chunks are copied from the file character for
+   * character, so line breaks inside quoted fields keep their original form. At most two chunks per
+   * worker are in flight at once.
+   */
+  private void streamMediaItemsFromCsv(String fileName, LibraryDataSink sink) throws IOException {
+    int maxInFlight = pool.getParallelism() * 2;
+    Queue<ForkJoinTask<?>> inFlight = new ArrayDeque<>();
+    try (BufferedReader reader = openReader(fileName)) {
+      String headerLine = reader.readLine();
+      if (headerLine == null) {
+        return;
+      }
+      String[] header = parseHeader(headerLine);
+      StringBuilder chunk = new StringBuilder();
+      char[] buffer = new char[64 * 1024];
+      int rows = 0;
+      boolean inQuotes = false;
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        int start = 0;
+        for (int i = 0; i < read; i++) {
+          char c = buffer[i];
+          if (c == '"') {
+            inQuotes = !inQuotes;
+          } else if (c == '\n' && !inQuotes && ++rows >= ROWS_PER_CHUNK) {
+            chunk.append(buffer, start, i + 1 - start);
+            start = i + 1;
+            if (inFlight.size() >= maxInFlight) {
+              join(inFlight.remove());
+            }
+            inFlight.add(pool.submit(parseChunkTask(chunk.toString(), header, sink)));
+            chunk.setLength(0);
+            rows = 0;
+          }
+        }
+        chunk.append(buffer, start, read - start);
+      }
+      if (!chunk.isEmpty()) {
+        inFlight.add(pool.submit(parseChunkTask(chunk.toString(), header, sink)));
+      }
+    } finally {
+      // Wait for every submitted chunk, even on failure, so none outlives the load.
+      awaitAll(inFlight);
     }
+  }
 
-    return mediaItems;
+  private static String[] parseHeader(String headerLine) throws IOException {
+    try (var csvParser = CSVFormat.DEFAULT.parse(new StringReader(headerLine))) {
+      CSVRecord csvRecord = csvParser.iterator().next();
+      String[] header = new String[csvRecord.size()];
+      for (int i = 0; i < header.length; i++) {
+        header[i] = csvRecord.get(i);
+      }
+      return header;
+    }
+  }
+
+  private static Runnable parseChunkTask(String chunk, String[] header, LibraryDataSink sink) {
+    return () -> {
+      try (Reader reader = new StringReader(chunk);
+          var csvParser = CSVFormat.DEFAULT.builder().setHeader(header).build().parse(reader)) {
+        for (CSVRecord csvRecord : csvParser) {
+          sink.addMediaItem(toMediaItemModel(csvRecord).toMediaItem());
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  private static void join(ForkJoinTask<?> task) throws IOException {
+    try {
+      task.join();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static void awaitAll(Queue<ForkJoinTask<?>> tasks) throws IOException {
+    IOException ioFailure = null;
+    RuntimeException failure = null;
+    while (!tasks.isEmpty()) {
+      try {
+        join(tasks.remove());
+      } catch (IOException e) {
+        ioFailure = ioFailure == null ? e : ioFailure;
+      } catch (RuntimeException e) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    if (ioFailure != null) {
+      throw ioFailure;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static MediaItemModel toMediaItemModel(CSVRecord csvRecord) {
+    var item = new MediaItemModel();
+
+    item.type = MediaType.fromString(csvRecord.get("type"));
+    item.id = UUID.fromString(csvRecord.get("id"));
+    item.title = csvRecord.get("title");
+    item.isbn = csvRecord.get("isbn");
+    item.authors = List.of(csvRecord.get("authors").split(", "));
+    item.pages = parseIntOrDefault(csvRecord.get("pages"), 0);
+    item.runtime = parseIntOrDefault(csvRecord.get("runtime"), 0);
+    item.edition = csvRecord.get("edition");
+
+    return item;
   }
 
-  private int parseIntOrDefault(String value, int defaultVal) {
+  private static int parseIntOrDefault(String value, int defaultVal) {
     try {
       return Integer.parseInt(value);
     } catch (NumberFormatException e) {
@@ -70,9 +235,9 @@ public final class LibraryCsvDataLoader implements LibraryDataLoader {
   }
 
   private List<LibraryGuestModel> loadGuestsFromCsv(
-      String guestsCsvPath, String checkedOutCsvPath) {
-    List<LibraryGuestModel> guests = loadGuestRecordsFromCsv(guestsCsvPath);
-    Map<String, List<CheckoutModel>> checkedOutItems = loadCheckoutsFromCsv(checkedOutCsvPath);
+      String guestsFileName, String checkedOutFileName) throws IOException {
+    List<LibraryGuestModel> guests = loadGuestRecordsFromCsv(guestsFileName);
+    Map<String, List<CheckoutModel>> checkedOutItems = loadCheckoutsFromCsv(checkedOutFileName);
     for (LibraryGuestModel guest : guests) {
       if (checkedOutItems.containsKey(guest.email)) {
         guest.checkedOutItems = checkedOutItems.get(guest.email);
@@ -83,45 +248,46 @@ public final class LibraryCsvDataLoader implements LibraryDataLoader {
     return guests;
   }
 
-  private List<LibraryGuestModel> loadGuestRecordsFromCsv(String guestsCsvPath) {
+  private List<LibraryGuestModel> loadGuestRecordsFromCsv(String fileName) throws IOException {
     List<LibraryGuestModel> guests = new ArrayList<>();
-
-    try (var reader = new FileReader(new ClassPathResource(guestsCsvPath).getFile());
-        var csvParser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+    try (var csvParser = openCsv(fileName)) {
       for (CSVRecord csvRecord : csvParser) {
-        var guest = new LibraryGuestModel();
-
-        guest.type = csvRecord.get("type");
-        guest.name = csvRecord.get("name");
-        guest.email = csvRecord.get("email");
-
-        guests.add(guest);
+        guests.add(toGuestModel(csvRecord));
       }
-    } catch (IOException e) {
-      return new ArrayList<>();
     }
-
     return guests;
   }
 
-  private Map<String, List<CheckoutModel>> loadCheckoutsFromCsv(String checkedOutCsvPath) {
-    Map<String, List<CheckoutModel>> checkoutsByGuestEmail = new HashMap<>();
+  private static LibraryGuestModel toGuestModel(CSVRecord csvRecord) {
+    var guest = new LibraryGuestModel();
 
-    try (var reader = new FileReader(new ClassPathResource(checkedOutCsvPath).getFile());
-        var csvParser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-      for (CSVRecord csvRecord : csvParser) {
-        var checkout = new CheckoutModel();
+    guest.type = csvRecord.get("type");
+    guest.name = csvRecord.get("name");
+    guest.email = csvRecord.get("email");
 
-        checkout.itemId = UUID.fromString(csvRecord.get("item_id"));
-        checkout.dueDate = Instant.parse(csvRecord.get("due_date"));
+    return guest;
+  }
 
+  private Map<String, List<CheckoutModel>> loadCheckoutsFromCsv(String fileName)
+      throws IOException {
+    Map<String, List<CheckoutModel>> checkoutsByGuestEmail = new HashMap<>();
+    try (var csvParser = openCsv(fileName)) {
+      for (CSVRecord csvRecord : csvParser) {
         String guestEmail = csvRecord.get("email");
-        checkoutsByGuestEmail.computeIfAbsent(guestEmail, e -> new ArrayList<>()).add(checkout);
+        checkoutsByGuestEmail
+            .computeIfAbsent(guestEmail, e -> new ArrayList<>())
+            .add(toCheckoutModel(csvRecord));
       }
-    } catch (IOException e) {
-      return new HashMap<>();
     }
-
     return checkoutsByGuestEmail;
   }
+
+  private static CheckoutModel toCheckoutModel(CSVRecord csvRecord) {
+    var checkout = new CheckoutModel();
+
+    checkout.itemId = UUID.fromString(csvRecord.get("item_id"));
+    checkout.dueDate = Instant.parse(csvRecord.get("due_date"));
+
+    return checkout;
+  }
 }
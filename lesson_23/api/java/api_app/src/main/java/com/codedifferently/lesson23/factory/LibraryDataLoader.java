@@ -13,4 +13,21 @@ public interface LibraryDataLoader {
    * @throws IOException if an I/O error occurs.
    */
   public LibraryDataModel loadData() throws IOException;
+
+  /**
+   * Load data from a source and feed it to the given sink as it is read.
+   *
+   * <p>The default implementation loads the whole LibraryDataModel first. Loaders that can read
+   * their source incrementally should override it.
+   *
+   * @param sink The sink to feed the data to.
+   * @throws IOException if an I/O error occurs.
+   */
+  public default void loadData(LibraryDataSink sink) throws IOException {
+    LibraryDataModel data = loadData();
+    data.getGuests().forEach(sink::addGuest);
+    data.getMediaItems().forEach(sink::addMediaItem);
+    data.getCheckoutsByEmail()
+        .forEach((email, checkouts) -> checkouts.forEach(c -> sink.addCheckout(email, c)));
+  }
 }
@@ -0,0 +1,36 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.CheckoutModel;
+
+/**
+ * Receives library data as a loader produces it.
+ *
+ * <p>Guests, media items and checkouts may arrive in any order, so loaders can follow the layout
+ * of their source. Media items may be fed from several threads at once.
+ */
+public interface LibraryDataSink {
+
+  /**
+   * Accept a guest of the library.
+   *
+   * @param guest The guest.
+   */
+  public void addGuest(LibraryGuest guest);
+
+  /**
+   * Accept a media item of the library. May be called concurrently.
+   *
+   * @param item The media item.
+   */
+  public void addMediaItem(MediaItem item);
+
+  /**
+   * Accept an item checked out by a guest.
+   *
+   * @param email The email address of the guest holding the item.
+   * @param checkout The checked out item.
+   */
+  public void addCheckout(String email, CheckoutModel checkout);
+}
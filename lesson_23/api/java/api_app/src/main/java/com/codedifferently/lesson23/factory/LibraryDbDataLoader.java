@@ -1,26 +1,73 @@
 package com.codedifferently.lesson23.factory;
 
+import com.codedifferently.lesson23.models.CheckoutModel;
 import com.codedifferently.lesson23.models.LibraryDataModel;
+import com.codedifferently.lesson23.models.LibraryGuestModel;
+import com.codedifferently.lesson23.models.MediaItemModel;
 import com.codedifferently.lesson23.repository.LibraryGuestRepository;
 import com.codedifferently.lesson23.repository.MediaItemRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import java.io.IOException;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-/** A data loader that loads library data from a database. */
+/**
+ * A data loader that loads library data from a database.
+ *
+ * <p>When feeding a {@link LibraryDataSink}, guests and items are streamed through database
+ * cursors inside one read-only transaction. Guests come with their checkouts in the same query, and
+ * each entity is detached once it has been handed over, so memory stays bounded by the fetch size.
+ */
 @Service
 public final class LibraryDbDataLoader implements LibraryDataLoader {
 
   @Autowired private MediaItemRepository mediaItemsRepository;
   @Autowired private LibraryGuestRepository libraryGuestRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @PersistenceContext private EntityManager entityManager;
 
   @Override
   public LibraryDataModel loadData() throws IOException {
     var model = new LibraryDataModel();
 
     model.mediaItems = mediaItemsRepository.findAll();
-    model.guests = libraryGuestRepository.findAll();
+    model.guests = libraryGuestRepository.findAllWithCheckouts();
 
     return model;
   }
+
+  @Override
+  public void loadData(LibraryDataSink sink) throws IOException {
+    // The class is final, so @Transactional proxies are not an option here.
+    var transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+    transaction.executeWithoutResult(
+        status -> {
+          // Items go first so each checkout can be applied as soon as its guest arrives.
+          try (Stream<MediaItemModel> items = mediaItemsRepository.streamAll()) {
+            items.forEach(item -> addMediaItem(sink, item));
+          }
+          try (Stream<LibraryGuestModel> guests = libraryGuestRepository.streamAllWithCheckouts()) {
+            guests.forEach(guest -> addGuest(sink, guest));
+          }
+        });
+  }
+
+  private void addGuest(LibraryDataSink sink, LibraryGuestModel guest) {
+    sink.addGuest(guest.toLibraryGuest());
+    for (CheckoutModel checkout : guest.checkedOutItems) {
+      sink.addCheckout(guest.email, checkout);
+      entityManager.detach(checkout);
+    }
+    entityManager.detach(guest);
+  }
+
+  private void addMediaItem(LibraryDataSink sink, MediaItemModel item) {
+    sink.addMediaItem(item.toMediaItem());
+    entityManager.detach(item);
+  }
 }
@@ -0,0 +1,517 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.LibraryInfo;
+import com.codedifferently.lesson23.library.LibraryListener;
+import com.codedifferently.lesson23.library.MediaItem;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Makes the changes to a library durable with a write-ahead log.
+ *
+ * <p>Every change is appended to the current journal segment and the change is only applied once
+ * the record is on disk. Records are written by a single thread, so changes made while a write is
+ * in progress are committed together by the next one and share a single sync.
+ *
+ * <p>Once a segment grows past the compaction threshold, the library is written to a snapshot and
+ * the segments it covers are deleted. On startup the newest snapshot is loaded and the segments
+ * written after it are replayed. Replay stops at the first torn or corrupt record: the segment is
+ * cut back to the records before it and any later segments are dropped, since their changes may
+ * depend on the ones that were lost.
+ */
+public final class LibraryJournal implements LibraryListener, MeterBinder, Closeable {
+
+  /** The segment size past which the journal is compacted into a snapshot. */
+  public static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+
+  private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+  private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+  private static final long COMPACTION_CHECK_SECONDS = 10;
+  private static final Logger logger = LoggerFactory.getLogger(LibraryJournal.class);
+
+  private final Path directory;
+  private final long compactionThreshold;
+  private final Object lock = new Object();
+  private final Object compactionLock = new Object();
+  private final LongAdder compactionFailures = new LongAdder();
+  private Library library;
+  private Thread writer;
+  private ScheduledExecutorService compactor;
+
+  // Guarded by lock.
+  private FileChannel segment;
+  private long segmentNumber;
+  private long segmentSize;
+  private byte[] pending = new byte[8192];
+  private int pendingSize;
+  private long appendedCount;
+  private long durableCount;
+  private IOException failure;
+  private boolean closed;
+
+  /**
+   * Create a journal that keeps its files in the given directory.
+   *
+   * @param directory The journal directory, created if it does not exist.
+   */
+  public LibraryJournal(Path directory) {
+    this(directory, DEFAULT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * Create a journal that keeps its files in the given directory.
+   *
+   * @param directory The journal directory, created if it does not exist.
+   * @param compactionThreshold The segment size in bytes past which the journal is compacted.
+   */
+  public LibraryJournal(Path directory, long compactionThreshold) {
+    this.directory = directory;
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  /**
+   * Restore the library from the journal and start recording its changes.
+   *
+   * <p>If the journal is empty, the library is built with the given loader and written as the
+   * first snapshot.
+   *
+   * @param seedLoader The loader for a journal that has no snapshot yet.
+   * @return The restored library.
+   * @throws IOException if an I/O error occurs.
+   */
+  public Library recover(LibraryDataLoader seedLoader) throws IOException {
+    if (this.library != null) {
+      throw new IllegalStateException("Journal has already been recovered");
+    }
+    Files.createDirectories(directory);
+    OptionalLong snapshotNumber = latest(SNAPSHOT_NAME);
+    Library restored;
+    if (snapshotNumber.isEmpty()) {
+      restored = LibraryFactory.createWithLoader(seedLoader);
+      segmentNumber = 0;
+      writeSnapshot(restored.getInfo(), segmentNumber);
+    } else {
+      Path snapshot = directory.resolve(snapshotName(snapshotNumber.getAsLong()));
+      restored =
+          LibraryFactory.createWithLoader(
+              new LibrarySnapshotDataLoader(new FileSystemResource(snapshot)));
+      segmentNumber = snapshotNumber.getAsLong();
+      List<Long> segments =
+          numbers(SEGMENT_NAME).stream().filter(n -> n >= snapshotNumber.getAsLong()).toList();
+      for (int i = 0; i < segments.size(); i++) {
+        long number = segments.get(i);
+        segmentNumber = number + 1;
+        if (!replay(directory.resolve(segmentName(number)), restored)) {
+          List<Long> later = segments.subList(i + 1, segments.size());
+          if (later.isEmpty()) {
+            logger.warn("Truncated a torn record at the end of journal segment {}", number);
+          } else {
+            logger.error(
+                "Journal segment {} is corrupt; dropping the changes after it in segments {}",
+                number,
+                later);
+            for (long laterNumber : later) {
+              Files.delete(directory.resolve(segmentName(laterNumber)));
+            }
+          }
+          break;
+        }
+      }
+    }
+    // Always start a fresh segment, so nothing is appended after a torn record.
+    segment = openSegment(segmentNumber);
+    library = restored;
+    deleteCoveredFiles(snapshotNumber.orElse(0));
+
+    writer = new Thread(this::writeRecords, "library-journal-writer");
+    writer.setDaemon(true);
+    writer.start();
+    compactor =
+        Executors.newSingleThreadScheduledExecutor(
+            task -> {
+              var thread = new Thread(task, "library-journal-compactor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    compactor.scheduleWithFixedDelay(
+        this::compactIfNeeded,
+        COMPACTION_CHECK_SECONDS,
+        COMPACTION_CHECK_SECONDS,
+        TimeUnit.SECONDS);
+    library.addListener(this);
+    return library;
+  }
+
+  /**
+   * Write the library to a new snapshot and delete the journal segments it replaces.
+   *
+   * <p>Changes are paused only while the current segment is closed and the library info is
+   * captured. The snapshot itself is written while changes continue into a new segment, and the
+   * old segments are deleted only once the snapshot and its directory entry are synced to disk.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  public void compact() throws IOException {
+    synchronized (compactionLock) {
+      Capture capture;
+      try {
+        capture = library.whileChangesPaused(this::rotate);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      writeSnapshot(capture.info(), capture.firstSegment());
+      deleteCoveredFiles(capture.firstSegment());
+    }
+  }
+
+  /**
+   * Get the number of scheduled compactions that failed. The segments are kept and the next check
+   * tries again.
+   *
+   * @return The number of failed compactions.
+   */
+  public long getCompactionFailureCount() {
+    return compactionFailures.sum();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(
+            "library.journal.compaction.failures",
+            this,
+            LibraryJournal::getCompactionFailureCount)
+        .register(registry);
+  }
+
+  /**
+   * Stop recording changes, writing out every record appended so far.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    if (library == null) {
+      return;
+    }
+    compactor.shutdown();
+    synchronized (compactionLock) {
+      library.removeListener(this);
+      synchronized (lock) {
+        closed = true;
+        lock.notifyAll();
+      }
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      synchronized (lock) {
+        segment.close();
+        if (failure != null) {
+          throw failure;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void onMediaItemAdded(MediaItem item) {
+    append(LibraryJournalRecords.addMediaItem(item));
+  }
+
+  @Override
+  public void onMediaItemsAdded(Collection<? extends MediaItem> items) {
+    // Queue the whole batch first so it is written with as few syncs as possible.
+    long count = 0;
+    for (MediaItem item : items) {
+      count = enqueue(LibraryJournalRecords.addMediaItem(item));
+    }
+    awaitDurable(count);
+  }
+
+  @Override
+  public void onMediaItemRemoved(MediaItem item) {
+    append(LibraryJournalRecords.removeMediaItem(item));
+  }
+
+  @Override
+  public void onLibraryGuestAdded(LibraryGuest guest) {
+    append(LibraryJournalRecords.addLibraryGuest(guest));
+  }
+
+  @Override
+  public void onLibraryGuestRemoved(LibraryGuest guest) {
+    append(LibraryJournalRecords.removeLibraryGuest(guest));
+  }
+
+  @Override
+  public void onMediaItemCheckedOut(MediaItem item, LibraryGuest guest, Instant dueDate) {
+    append(LibraryJournalRecords.checkOutMediaItem(item, guest, dueDate));
+  }
+
+  @Override
+  public void onMediaItemCheckedIn(MediaItem item, LibraryGuest guest) {
+    append(LibraryJournalRecords.checkInMediaItem(item, guest));
+  }
+
+  /** Append a record and wait until it is on disk. */
+  private void append(byte[] record) {
+    awaitDurable(enqueue(record));
+  }
+
+  /**
+   * Queue a record for the writer.
+   *
+   * @return The number of records appended so far, which is durable once the record is.
+   */
+  private long enqueue(byte[] record) {
+    synchronized (lock) {
+      checkWritable();
+      if (pending.length - pendingSize < record.length) {
+        pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingSize + record.length));
+      }
+      System.arraycopy(record, 0, pending, pendingSize, record.length);
+      pendingSize += record.length;
+      lock.notifyAll();
+      return ++appendedCount;
+    }
+  }
+
+  private void awaitDurable(long count) {
+    boolean interrupted = false;
+    synchronized (lock) {
+      while (durableCount < count) {
+        checkWritable();
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          // The record is already queued, so give up only once the journal decides its fate.
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void checkWritable() {
+    if (failure != null) {
+      throw new UncheckedIOException("Library journal failed", failure);
+    }
+    if (closed) {
+      throw new IllegalStateException("Library journal is closed");
+    }
+  }
+
+  /** Write pending records in batches until the journal is closed. */
+  private void writeRecords() {
+    byte[] batch = new byte[pending.length];
+    while (true) {
+      FileChannel target;
+      int batchSize;
+      long batchCount;
+      synchronized (lock) {
+        while (pendingSize == 0 && !closed) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            // Only close stops the writer.
+          }
+        }
+        if (pendingSize == 0) {
+          return;
+        }
+        byte[] filled = pending;
+        pending = batch.length >= filled.length ? batch : new byte[filled.length];
+        batch = filled;
+        batchSize = pendingSize;
+        batchCount = appendedCount;
+        pendingSize = 0;
+        target = segment;
+      }
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(batch, 0, batchSize);
+        while (buffer.hasRemaining()) {
+          target.write(buffer);
+        }
+        target.force(false);
+      } catch (IOException e) {
+        synchronized (lock) {
+          failure = e;
+          lock.notifyAll();
+        }
+        return;
+      }
+      synchronized (lock) {
+        durableCount = batchCount;
+        segmentSize += batchSize;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void compactIfNeeded() {
+    boolean needed;
+    synchronized (lock) {
+      needed = segmentSize >= compactionThreshold && failure == null && !closed;
+    }
+    if (needed) {
+      try {
+        compact();
+      } catch (IOException | RuntimeException e) {
+        // Keep the segments; the next check retries.
+        compactionFailures.increment();
+        logger.error("Failed to compact the library journal in {}", directory, e);
+      }
+    }
+  }
+
+  /**
+   * Switch to a new segment and capture the library. Runs while changes are paused, so every
+   * change is either in the closed segments and the capture, or in the new segment.
+   */
+  private Capture rotate() {
+    long count;
+    synchronized (lock) {
+      count = appendedCount;
+    }
+    awaitDurable(count);
+    try {
+      synchronized (lock) {
+        FileChannel next = openSegment(segmentNumber + 1);
+        segment.close();
+        segment = next;
+        segmentNumber++;
+        segmentSize = 0;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Capture(library.getInfo(), segmentNumber);
+  }
+
+  private void writeSnapshot(LibraryInfo info, long firstSegment) throws IOException {
+    var writer = new LibrarySnapshotWriter();
+    writer.addLibraryInfo(info);
+    writer.write(directory.resolve(snapshotName(firstSegment)));
+  }
+
+  private FileChannel openSegment(long number) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            directory.resolve(segmentName(number)),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    try {
+      // Syncing a record does not sync the new file's directory entry, so sync that up front.
+      LibrarySnapshotWriter.syncDirectory(directory);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  /**
+   * Apply the records of a segment to the library, cutting the segment back to its valid records
+   * if it ends in a torn or corrupt one.
+   *
+   * @return True if every record in the segment was valid.
+   */
+  private static boolean replay(Path segment, Library library) throws IOException {
+    long size;
+    long valid;
+    try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      size = channel.size();
+      ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      LibraryJournalRecords.replay(records, library);
+      valid = records.position();
+    }
+    if (valid == size) {
+      return true;
+    }
+    // Otherwise the next recovery would stop here too and drop the segments written after it.
+    try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(valid);
+      channel.force(true);
+    }
+    return false;
+  }
+
+  /** Delete the snapshots and segments older than the given segment number. */
+  private void deleteCoveredFiles(long firstSegment) throws IOException {
+    for (long number : numbers(SNAPSHOT_NAME)) {
+      if (number < firstSegment) {
+        Files.deleteIfExists(directory.resolve(snapshotName(number)));
+      }
+    }
+    for (long number : numbers(SEGMENT_NAME)) {
+      if (number < firstSegment) {
+        Files.deleteIfExists(directory.resolve(segmentName(number)));
+      }
+    }
+  }
+
+  private OptionalLong latest(Pattern pattern) throws IOException {
+    List<Long> numbers = numbers(pattern);
+    return numbers.isEmpty()
+        ? OptionalLong.empty()
+        : OptionalLong.of(numbers.get(numbers.size() - 1));
+  }
+
+  /** List the numbers of the files matching a name pattern, in ascending order. */
+  private List<Long> numbers(Pattern pattern) throws IOException {
+    List<Long> numbers = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(
+          file -> {
+            Matcher matcher = pattern.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+              numbers.add(Long.parseLong(matcher.group(1)));
+            }
+          });
+    }
+    numbers.sort(null);
+    return numbers;
+  }
+
+  private static String snapshotName(long firstSegment) {
+    return "snapshot-" + firstSegment + ".bin";
+  }
+
+  private static String segmentName(long number) {
+    return "journal-" + number + ".log";
+  }
+
+  /** The library as of the start of a segment. */
+  private record Capture(LibraryInfo info, long firstSegment) {}
+}
@@ -0,0 +1,247 @@
+package com.codedifferently.lesson23.factory;
+
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.GUEST_LIBRARIAN;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.GUEST_PATRON;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.NO_DUE_DATE;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Librarian;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.LibraryGuestModel;
+import com.codedifferently.lesson23.models.MediaItemModel;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes library changes as journal records and applies them back to a library.
+ *
+ * <p>A record is its payload length and CRC-32 followed by the payload: an operation code and its
+ * fields. Guests are identified by email address, since guest ids are not kept across restarts.
+ */
+final class LibraryJournalRecords {
+
+  static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+  private static final byte ADD_ITEM = 1;
+  private static final byte REMOVE_ITEM = 2;
+  private static final byte ADD_GUEST = 3;
+  private static final byte REMOVE_GUEST = 4;
+  private static final byte CHECK_OUT = 5;
+  private static final byte CHECK_IN = 6;
+
+  private LibraryJournalRecords() {}
+
+  static byte[] addMediaItem(MediaItem item) {
+    return encode(
+        out -> {
+          out.writeByte(ADD_ITEM);
+          out.writeByte(LibrarySnapshotFormat.encodeType(item.getType()));
+          writeUuid(out, item.getId());
+          writeString(out, item.getTitle());
+          if (item instanceof Book book) {
+            writeString(out, book.getIsbn());
+            out.writeInt(book.getNumberOfPages());
+            out.writeInt(book.getAuthors().size());
+            for (String author : book.getAuthors()) {
+              writeString(out, author);
+            }
+          }
+        });
+  }
+
+  static byte[] removeMediaItem(MediaItem item) {
+    return encode(
+        out -> {
+          out.writeByte(REMOVE_ITEM);
+          writeUuid(out, item.getId());
+        });
+  }
+
+  static byte[] addLibraryGuest(LibraryGuest guest) {
+    return encode(
+        out -> {
+          out.writeByte(ADD_GUEST);
+          out.writeByte(guest instanceof Librarian ? GUEST_LIBRARIAN : GUEST_PATRON);
+          writeString(out, guest.getName());
+          writeString(out, guest.getEmail());
+        });
+  }
+
+  static byte[] removeLibraryGuest(LibraryGuest guest) {
+    return encode(
+        out -> {
+          out.writeByte(REMOVE_GUEST);
+          writeString(out, guest.getEmail());
+        });
+  }
+
+  static byte[] checkOutMediaItem(MediaItem item, LibraryGuest guest, Instant dueDate) {
+    return encode(
+        out -> {
+          out.writeByte(CHECK_OUT);
+          writeUuid(out, item.getId());
+          writeString(out, guest.getEmail());
+          out.writeLong(dueDate == null ? NO_DUE_DATE : dueDate.getEpochSecond());
+        });
+  }
+
+  static byte[] checkInMediaItem(MediaItem item, LibraryGuest guest) {
+    return encode(
+        out -> {
+          out.writeByte(CHECK_IN);
+          writeUuid(out, item.getId());
+          writeString(out, guest.getEmail());
+        });
+  }
+
+  /**
+   * Apply the records in a buffer to a library, stopping at the first incomplete or corrupt
+   * record, which is what a crash in the middle of a write leaves behind.
+   *
+   * @param records The records, from the current position to the limit.
+   * @param library The library to apply them to.
+   * @return The number of records applied.
+   */
+  static int replay(ByteBuffer records, Library library) {
+    int count = 0;
+    var crc = new CRC32();
+    while (records.remaining() >= HEADER_SIZE) {
+      int length = records.getInt(records.position());
+      int checksum = records.getInt(records.position() + Integer.BYTES);
+      if (length <= 0 || length > records.remaining() - HEADER_SIZE) {
+        break;
+      }
+      ByteBuffer payload = records.slice(records.position() + HEADER_SIZE, length);
+      crc.reset();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      apply(payload, library);
+      records.position(records.position() + HEADER_SIZE + length);
+      count++;
+    }
+    return count;
+  }
+
+  private static void apply(ByteBuffer in, Library library) {
+    byte operation = in.get();
+    switch (operation) {
+      case ADD_ITEM -> library.addMediaItem(readMediaItem(in), firstLibrarian(library));
+      case REMOVE_ITEM ->
+          library
+              .findMediaItem(readUuid(in))
+              .ifPresent(item -> library.removeMediaItem(item, firstLibrarian(library)));
+      case ADD_GUEST -> {
+        var guest = new LibraryGuestModel();
+        guest.type = in.get() == GUEST_LIBRARIAN ? "librarian" : "patron";
+        guest.name = readString(in);
+        guest.email = readString(in);
+        library.addLibraryGuest(guest.toLibraryGuest());
+      }
+      case REMOVE_GUEST ->
+          library.findLibraryGuest(readString(in)).ifPresent(library::removeLibraryGuest);
+      case CHECK_OUT, CHECK_IN -> {
+        Optional<MediaItem> item = library.findMediaItem(readUuid(in));
+        Optional<LibraryGuest> guest = library.findLibraryGuest(readString(in));
+        if (item.isPresent() && guest.isPresent()) {
+          if (operation == CHECK_OUT) {
+            // Checkouts journaled before due dates were tracked end after the email.
+            long dueDate = in.hasRemaining() ? in.getLong() : NO_DUE_DATE;
+            library.checkOutMediaItem(
+                item.get(),
+                guest.get(),
+                dueDate == NO_DUE_DATE ? null : Instant.ofEpochSecond(dueDate));
+          } else {
+            library.checkInMediaItem(item.get(), guest.get());
+          }
+        }
+      }
+      default -> throw new IllegalArgumentException("Unknown journal operation: " + operation);
+    }
+  }
+
+  private static MediaItem readMediaItem(ByteBuffer in) {
+    var item = new MediaItemModel();
+    item.type = LibrarySnapshotFormat.decodeType(in.get());
+    item.id = readUuid(in);
+    item.title = readString(in);
+    if (in.hasRemaining()) {
+      item.isbn = readString(in);
+      item.pages = in.getInt();
+      int authorCount = in.getInt();
+      item.authors = new ArrayList<>(authorCount);
+      for (int i = 0; i < authorCount; i++) {
+        item.authors.add(readString(in));
+      }
+    }
+    return item.toMediaItem();
+  }
+
+  private static Librarian firstLibrarian(Library library) {
+    return library.getLibrarians().stream().findFirst().orElse(null);
+  }
+
+  private static byte[] encode(RecordWriter writer) {
+    var bytes = new ByteArrayOutputStream(64);
+    try {
+      var out = new DataOutputStream(bytes);
+      out.writeInt(0);
+      out.writeInt(0);
+      writer.write(out);
+    } catch (IOException e) {
+      // Writing to a byte array cannot fail.
+      throw new UncheckedIOException(e);
+    }
+    byte[] record = bytes.toByteArray();
+    var crc = new CRC32();
+    crc.update(record, HEADER_SIZE, record.length - HEADER_SIZE);
+    ByteBuffer.wrap(record).putInt(record.length - HEADER_SIZE).putInt((int) crc.getValue());
+    return record;
+  }
+
+  private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+    out.writeLong(id.getMostSignificantBits());
+    out.writeLong(id.getLeastSignificantBits());
+  }
+
+  private static UUID readUuid(ByteBuffer in) {
+    return new UUID(in.getLong(), in.getLong());
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    var bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @FunctionalInterface
+  private interface RecordWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+}
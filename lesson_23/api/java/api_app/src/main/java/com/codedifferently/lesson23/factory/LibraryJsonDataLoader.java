@@ -1,29 +1,111 @@
 package com.codedifferently.lesson23.factory;
 
+import com.codedifferently.lesson23.models.CheckoutModel;
 import com.codedifferently.lesson23.models.LibraryDataModel;
+import com.codedifferently.lesson23.models.LibraryGuestModel;
+import com.codedifferently.lesson23.models.MediaItemModel;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
-/** Loads data from a JSON file and returns a LibraryDataModel object. */
+/**
+ * Loads data from a JSON file and returns a LibraryDataModel object.
+ *
+ * <p>When feeding a {@link LibraryDataSink}, the document is read token by token and each media
+ * item and guest is handed over as soon as it is parsed, so only one record is held at a time.
+ */
 @Service
 public final class LibraryJsonDataLoader implements LibraryDataLoader {
 
+  private static final ObjectMapper OBJECT_MAPPER =
+      JsonMapper.builder()
+          .addModule(new JavaTimeModule())
+          .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+          .build();
+  private static final ObjectReader MEDIA_ITEM_READER =
+      OBJECT_MAPPER.readerFor(MediaItemModel.class);
+  private static final ObjectReader GUEST_READER =
+      OBJECT_MAPPER.readerFor(LibraryGuestModel.class);
+
+  private final Resource resource;
+
+  public LibraryJsonDataLoader() {
+    this(new ClassPathResource("json/data.json"));
+  }
+
+  /**
+   * Create a loader that reads the given JSON document.
+   *
+   * @param resource The JSON document, e.g. a classpath, file or jar resource.
+   */
+  public LibraryJsonDataLoader(Resource resource) {
+    this.resource = resource;
+  }
+
   @Override
   public LibraryDataModel loadData() throws IOException {
-    ObjectMapper objectMapper =
-        JsonMapper.builder()
-            .addModule(new JavaTimeModule())
-            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
-            .build();
-
-    // Load data from data.json file
-    File file = new ClassPathResource("json/data.json").getFile();
-    return objectMapper.readValue(file, LibraryDataModel.class);
+    try (InputStream in = resource.getInputStream()) {
+      return OBJECT_MAPPER.readValue(in, LibraryDataModel.class);
+    }
+  }
+
+  @Override
+  public void loadData(LibraryDataSink sink) throws IOException {
+    try (JsonParser parser = OBJECT_MAPPER.createParser(resource.getInputStream())) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "mediaItems" ->
+              readEach(
+                  parser,
+                  MEDIA_ITEM_READER,
+                  (MediaItemModel item) -> sink.addMediaItem(item.toMediaItem()));
+          case "guests" ->
+              readEach(parser, GUEST_READER, (LibraryGuestModel guest) -> addGuest(sink, guest));
+          default -> parser.skipChildren();
+        }
+      }
+    }
+  }
+
+  private static void addGuest(LibraryDataSink sink, LibraryGuestModel guest) {
+    sink.addGuest(guest.toLibraryGuest());
+    if (guest.checkedOutItems != null) {
+      for (CheckoutModel checkout : guest.checkedOutItems) {
+        sink.addCheckout(guest.email, checkout);
+      }
+    }
+  }
+
+  /** Read the elements of the array at the current token one at a time. */
+  private static <T> void readEach(JsonParser parser, ObjectReader reader, Consumer<T> consumer)
+      throws IOException {
+    expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      expect(parser, token, JsonToken.START_OBJECT);
+      T value = reader.readValue(parser);
+      consumer.accept(value);
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken actual, JsonToken expected)
+      throws IOException {
+    if (actual != expected) {
+      throw new IOException(
+          "Expected " + expected + " but found " + actual + " at " + parser.currentLocation());
+    }
   }
 }
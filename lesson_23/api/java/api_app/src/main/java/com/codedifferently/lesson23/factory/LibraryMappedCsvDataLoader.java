@@ -0,0 +1,207 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.MediaType;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import com.codedifferently.lesson23.models.LibraryDataModel;
+import com.codedifferently.lesson23.models.LibraryGuestModel;
+import com.codedifferently.lesson23.models.MediaItemModel;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads data from CSV files by memory-mapping them.
+ *
+ * <p>Rows are scanned directly on the mapped bytes, so only the fields themselves are decoded.
+ * Media types are matched without decoding, and repeated authors are decoded once and shared.
+ * The CSV files must live on the file system. The default loader falls back to {@link
+ * LibraryCsvDataLoader} when its classpath directory does not, e.g. when running from a jar.
+ */
+@Service
+public final class LibraryMappedCsvDataLoader implements LibraryDataLoader {
+
+  private static final String MEDIA_ITEMS_CSV_NAME = "media_items.csv";
+  private static final String GUESTS_CSV_NAME = "guests.csv";
+  private static final String CHECKED_OUT_ITEMS_CSV_NAME = "checked_out_items.csv";
+  private static final MediaType[] MEDIA_TYPES = MediaType.values();
+  private static final byte[][] MEDIA_TYPE_NAMES = new byte[MEDIA_TYPES.length][];
+
+  static {
+    for (int i = 0; i < MEDIA_TYPES.length; i++) {
+      MEDIA_TYPE_NAMES[i] = MEDIA_TYPES[i].getType().getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private final Resource directory;
+  private final LibraryDataLoader fallback;
+
+  public LibraryMappedCsvDataLoader() {
+    this(new ClassPathResource("csv/"), new LibraryCsvDataLoader());
+  }
+
+  /**
+   * Create a loader that maps the CSV files in the given directory.
+   *
+   * @param directory The directory holding the CSV files, which must be on the file system.
+   */
+  public LibraryMappedCsvDataLoader(Resource directory) {
+    this(directory, null);
+  }
+
+  private LibraryMappedCsvDataLoader(Resource directory, LibraryDataLoader fallback) {
+    this.directory = directory;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public LibraryDataModel loadData() throws IOException {
+    if (usesFallback()) {
+      return fallback.loadData();
+    }
+    var model = new LibraryDataModel();
+    model.mediaItems = new ArrayList<>();
+    readMediaItems(row -> model.mediaItems.add(row.toModel()));
+    model.guests = new ArrayList<>();
+    readGuests(model.guests::add);
+    Map<String, List<CheckoutModel>> checkoutsByEmail = new HashMap<>();
+    readCheckouts(
+        (email, checkout) ->
+            checkoutsByEmail.computeIfAbsent(email, e -> new ArrayList<>()).add(checkout));
+    for (LibraryGuestModel guest : model.guests) {
+      guest.checkedOutItems = checkoutsByEmail.getOrDefault(guest.email, new ArrayList<>());
+    }
+    return model;
+  }
+
+  @Override
+  public void loadData(LibraryDataSink sink) throws IOException {
+    if (usesFallback()) {
+      fallback.loadData(sink);
+      return;
+    }
+    readGuests(guest -> sink.addGuest(guest.toLibraryGuest()));
+    readMediaItems(row -> sink.addMediaItem(row.toModel().toMediaItem()));
+    readCheckouts(sink::addCheckout);
+  }
+
+  private boolean usesFallback() {
+    return fallback != null && !directory.isFile();
+  }
+
+  private Path resolve(String fileName) throws IOException {
+    return directory.createRelative(fileName).getFile().toPath();
+  }
+
+  private void readMediaItems(Consumer<MediaItemRow> consumer) throws IOException {
+    try (var reader = new MappedCsvReader(resolve(MEDIA_ITEMS_CSV_NAME))) {
+      var row = new MediaItemRow(reader);
+      while (reader.nextRow()) {
+        consumer.accept(row);
+      }
+    }
+  }
+
+  private void readGuests(Consumer<LibraryGuestModel> consumer) throws IOException {
+    try (var reader = new MappedCsvReader(resolve(GUESTS_CSV_NAME))) {
+      int type = reader.column("type");
+      int name = reader.column("name");
+      int email = reader.column("email");
+      while (reader.nextRow()) {
+        var guest = new LibraryGuestModel();
+        guest.type = reader.getString(type);
+        guest.name = reader.getString(name);
+        guest.email = reader.getString(email);
+        consumer.accept(guest);
+      }
+    }
+  }
+
+  private void readCheckouts(CheckoutConsumer consumer) throws IOException {
+    try (var reader = new MappedCsvReader(resolve(CHECKED_OUT_ITEMS_CSV_NAME))) {
+      int email = reader.column("email");
+      int itemId = reader.column("item_id");
+      int dueDate = reader.column("due_date");
+      while (reader.nextRow()) {
+        var checkout = new CheckoutModel();
+        checkout.itemId = reader.getUuid(itemId);
+        checkout.dueDate = Instant.parse(reader.getString(dueDate));
+        consumer.accept(reader.getString(email), checkout);
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface CheckoutConsumer {
+    void accept(String email, CheckoutModel checkout);
+  }
+
+  /**
+   * A view of the current row of media_items.csv.
+   *
+   * <p>Nothing is decoded until the row is turned into a model, which then builds the item.
+   */
+  private static final class MediaItemRow {
+
+    private final MappedCsvReader reader;
+    private final Map<String, String> authorNames = new HashMap<>();
+    private final MappedCsvReader.Interner<List<String>> authors =
+        new MappedCsvReader.Interner<>(
+            value ->
+                Arrays.stream(value.split(", "))
+                    .map(name -> authorNames.computeIfAbsent(name, n -> n))
+                    .toList());
+    private final int typeColumn;
+    private final int idColumn;
+    private final int titleColumn;
+    private final int isbnColumn;
+    private final int authorsColumn;
+    private final int pagesColumn;
+    private final int runtimeColumn;
+    private final int editionColumn;
+
+    MediaItemRow(MappedCsvReader reader) {
+      this.reader = reader;
+      this.typeColumn = reader.column("type");
+      this.idColumn = reader.column("id");
+      this.titleColumn = reader.column("title");
+      this.isbnColumn = reader.column("isbn");
+      this.authorsColumn = reader.column("authors");
+      this.pagesColumn = reader.column("pages");
+      this.runtimeColumn = reader.column("runtime");
+      this.editionColumn = reader.column("edition");
+    }
+
+    MediaType type() {
+      for (int i = 0; i < MEDIA_TYPES.length; i++) {
+        if (reader.matchesIgnoreCase(typeColumn, MEDIA_TYPE_NAMES[i])) {
+          return MEDIA_TYPES[i];
+        }
+      }
+      // Let MediaType report the unknown value the same way the other loaders do.
+      return MediaType.fromString(reader.getString(typeColumn));
+    }
+
+    MediaItemModel toModel() {
+      var item = new MediaItemModel();
+      item.type = type();
+      item.id = reader.getUuid(idColumn);
+      item.title = reader.getString(titleColumn);
+      item.isbn = reader.getString(isbnColumn);
+      item.authors = reader.intern(authorsColumn, authors);
+      item.pages = reader.getInt(pagesColumn, 0);
+      item.runtime = reader.getInt(runtimeColumn, 0);
+      item.edition = reader.getString(editionColumn);
+      return item;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package com.codedifferently.lesson23.factory;
+
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.GUEST_LIBRARIAN;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.HEADER_SIZE;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.NO_DUE_DATE;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.NO_STRING;
+
+import com.codedifferently.lesson23.library.MediaType;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import com.codedifferently.lesson23.models.LibraryDataModel;
+import com.codedifferently.lesson23.models.LibraryGuestModel;
+import com.codedifferently.lesson23.models.MediaItemModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Loads data from a binary snapshot written by {@link LibrarySnapshotWriter}.
+ *
+ * <p>The snapshot is memory-mapped and every column is located from the header, so loading does no
+ * parsing beyond reading fixed-width values. Each distinct string is decoded once and shared by
+ * every record that refers to it.
+ */
+public final class LibrarySnapshotDataLoader implements LibraryDataLoader {
+
+  private final Resource resource;
+
+  public LibrarySnapshotDataLoader() {
+    this(new FileSystemResource("library.snapshot"));
+  }
+
+  /**
+   * Create a loader that reads the given snapshot file.
+   *
+   * @param resource The snapshot, which must be on the file system.
+   */
+  public LibrarySnapshotDataLoader(Resource resource) {
+    this.resource = resource;
+  }
+
+  @Override
+  public LibraryDataModel loadData() throws IOException {
+    var model = new LibraryDataModel();
+    model.mediaItems = new ArrayList<>();
+    model.guests = new ArrayList<>();
+    Map<String, List<CheckoutModel>> checkoutsByEmail = new HashMap<>();
+    read(
+        model.guests::add,
+        model.mediaItems::add,
+        (email, checkout) ->
+            checkoutsByEmail.computeIfAbsent(email, e -> new ArrayList<>()).add(checkout));
+    for (LibraryGuestModel guest : model.guests) {
+      guest.checkedOutItems = checkoutsByEmail.getOrDefault(guest.email, new ArrayList<>());
+    }
+    return model;
+  }
+
+  @Override
+  public void loadData(LibraryDataSink sink) throws IOException {
+    read(
+        guest -> sink.addGuest(guest.toLibraryGuest()),
+        item -> sink.addMediaItem(item.toMediaItem()),
+        sink::addCheckout);
+  }
+
+  private void read(
+      Consumer<LibraryGuestModel> guests,
+      Consumer<MediaItemModel> items,
+      BiConsumer<String, CheckoutModel> checkouts)
+      throws IOException {
+    try (var channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot is too large to map: " + size + " bytes");
+      }
+      var snapshot = new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+      snapshot.readGuests(guests);
+      snapshot.readItems(items);
+      snapshot.readCheckouts(checkouts);
+    }
+  }
+
+  /** A mapped snapshot with the position of each column worked out from its header. */
+  private static final class Snapshot {
+
+    private final ByteBuffer buffer;
+    private final int itemCount;
+    private final int guestCount;
+    private final int checkoutCount;
+    private final int stringOffsets;
+    private final int stringBlob;
+    private final int itemTypes;
+    private final int itemIdHigh;
+    private final int itemIdLow;
+    private final int itemTitles;
+    private final int itemIsbns;
+    private final int itemPages;
+    private final int itemAuthorStarts;
+    private final int itemAuthors;
+    private final int guestTypes;
+    private final int guestNames;
+    private final int guestEmails;
+    private final int checkoutEmails;
+    private final int checkoutIdHigh;
+    private final int checkoutIdLow;
+    private final int checkoutDueDates;
+    private final String[] strings;
+    private long position;
+
+    Snapshot(ByteBuffer buffer) throws IOException {
+      this.buffer = buffer;
+      if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != LibrarySnapshotFormat.MAGIC) {
+        throw new IOException("Not a library snapshot");
+      }
+      int version = buffer.getInt(4);
+      if (version != LibrarySnapshotFormat.VERSION) {
+        throw new IOException("Unsupported snapshot version: " + version);
+      }
+      int stringCount = buffer.getInt(8);
+      this.itemCount = buffer.getInt(12);
+      int authorCount = buffer.getInt(16);
+      this.guestCount = buffer.getInt(20);
+      this.checkoutCount = buffer.getInt(24);
+      if ((stringCount | itemCount | authorCount | guestCount | checkoutCount) < 0) {
+        throw new IOException("Corrupt snapshot header");
+      }
+
+      this.position = HEADER_SIZE;
+      this.stringOffsets = column(stringCount + 1L, Integer.BYTES);
+      if (position > buffer.limit()) {
+        throw new IOException("Snapshot is truncated");
+      }
+      int blobSize = buffer.getInt(stringOffsets + stringCount * Integer.BYTES);
+      this.stringBlob = column(blobSize, Byte.BYTES);
+      this.itemTypes = column(itemCount, Byte.BYTES);
+      this.itemIdHigh = column(itemCount, Long.BYTES);
+      this.itemIdLow = column(itemCount, Long.BYTES);
+      this.itemTitles = column(itemCount, Integer.BYTES);
+      this.itemIsbns = column(itemCount, Integer.BYTES);
+      this.itemPages = column(itemCount, Integer.BYTES);
+      this.itemAuthorStarts = column(itemCount + 1L, Integer.BYTES);
+      this.itemAuthors = column(authorCount, Integer.BYTES);
+      this.guestTypes = column(guestCount, Byte.BYTES);
+      this.guestNames = column(guestCount, Integer.BYTES);
+      this.guestEmails = column(guestCount, Integer.BYTES);
+      this.checkoutEmails = column(checkoutCount, Integer.BYTES);
+      this.checkoutIdHigh = column(checkoutCount, Long.BYTES);
+      this.checkoutIdLow = column(checkoutCount, Long.BYTES);
+      this.checkoutDueDates = column(checkoutCount, Long.BYTES);
+      // Every column ends inside the mapping only if the sizes add up exactly.
+      if (blobSize < 0 || position != buffer.limit()) {
+        throw new IOException("Snapshot size does not match its header");
+      }
+      this.strings = new String[stringCount];
+    }
+
+    /** Claim the next column of the given length and width and return where it starts. */
+    private int column(long length, int width) {
+      int start = (int) position;
+      position += length * width;
+      return start;
+    }
+
+    void readGuests(Consumer<LibraryGuestModel> consumer) {
+      for (int i = 0; i < guestCount; i++) {
+        var guest = new LibraryGuestModel();
+        guest.type = buffer.get(guestTypes + i) == GUEST_LIBRARIAN ? "librarian" : "patron";
+        guest.name = string(buffer.getInt(guestNames + i * Integer.BYTES));
+        guest.email = string(buffer.getInt(guestEmails + i * Integer.BYTES));
+        consumer.accept(guest);
+      }
+    }
+
+    void readItems(Consumer<MediaItemModel> consumer) {
+      for (int i = 0; i < itemCount; i++) {
+        var item = new MediaItemModel();
+        item.type = LibrarySnapshotFormat.decodeType(buffer.get(itemTypes + i));
+        item.id =
+            new UUID(
+                buffer.getLong(itemIdHigh + i * Long.BYTES),
+                buffer.getLong(itemIdLow + i * Long.BYTES));
+        item.title = string(buffer.getInt(itemTitles + i * Integer.BYTES));
+        if (item.type == MediaType.BOOK) {
+          item.isbn = string(buffer.getInt(itemIsbns + i * Integer.BYTES));
+          item.pages = buffer.getInt(itemPages + i * Integer.BYTES);
+          item.authors = authors(i);
+        }
+        consumer.accept(item);
+      }
+    }
+
+    void readCheckouts(BiConsumer<String, CheckoutModel> consumer) {
+      for (int i = 0; i < checkoutCount; i++) {
+        var checkout = new CheckoutModel();
+        checkout.itemId =
+            new UUID(
+                buffer.getLong(checkoutIdHigh + i * Long.BYTES),
+                buffer.getLong(checkoutIdLow + i * Long.BYTES));
+        long dueDate = buffer.getLong(checkoutDueDates + i * Long.BYTES);
+        checkout.dueDate = dueDate == NO_DUE_DATE ? null : Instant.ofEpochSecond(dueDate);
+        checkout.email = string(buffer.getInt(checkoutEmails + i * Integer.BYTES));
+        consumer.accept(checkout.email, checkout);
+      }
+    }
+
+    private List<String> authors(int item) {
+      int start = buffer.getInt(itemAuthorStarts + item * Integer.BYTES);
+      int end = buffer.getInt(itemAuthorStarts + (item + 1) * Integer.BYTES);
+      var authors = new String[end - start];
+      for (int i = 0; i < authors.length; i++) {
+        authors[i] = string(buffer.getInt(itemAuthors + (start + i) * Integer.BYTES));
+      }
+      return Arrays.asList(authors);
+    }
+
+    private String string(int index) {
+      if (index == NO_STRING) {
+        return null;
+      }
+      String value = strings[index];
+      if (value == null) {
+        int start = buffer.getInt(stringOffsets + index * Integer.BYTES);
+        int end = buffer.getInt(stringOffsets + (index + 1) * Integer.BYTES);
+        var bytes = new byte[end - start];
+        buffer.get(stringBlob + start, bytes);
+        value = new String(bytes, StandardCharsets.UTF_8);
+        strings[index] = value;
+      }
+      return value;
+    }
+  }
+}
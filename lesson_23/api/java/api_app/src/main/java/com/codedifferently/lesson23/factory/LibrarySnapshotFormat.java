@@ -0,0 +1,55 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.MediaType;
+
+/**
+ * The layout of a library snapshot file.
+ *
+ * <p>A snapshot is a header followed by fixed-width columns, so a reader can locate every column
+ * from the counts in the header alone:
+ *
+ * <ol>
+ *   <li>Header: magic, version, then the string, item, author reference, guest and checkout counts.
+ *   <li>String dictionary: {@code stringCount + 1} int offsets into a UTF-8 blob, then the blob.
+ *   <li>Items: type bytes, id high and low longs, title, ISBN and page ints, then {@code
+ *       itemCount + 1} author start offsets and the author string references.
+ *   <li>Guests: type bytes, then name and email string references.
+ *   <li>Checkouts: email string references, item id high and low longs, and due dates in epoch
+ *       seconds.
+ * </ol>
+ *
+ * <p>String references index into the dictionary, with -1 for no string.
+ */
+final class LibrarySnapshotFormat {
+
+  static final int MAGIC = 0x4C42534E; // "LBSN"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 7 * Integer.BYTES;
+  static final int NO_STRING = -1;
+  static final long NO_DUE_DATE = Long.MIN_VALUE;
+  static final byte GUEST_PATRON = 0;
+  static final byte GUEST_LIBRARIAN = 1;
+
+  /** Media types by their code in the file; append new types to keep old snapshots readable. */
+  private static final MediaType[] TYPE_CODES = {
+    MediaType.UNKNOWN, MediaType.BOOK, MediaType.DVD, MediaType.MAGAZINE, MediaType.NEWSPAPER
+  };
+
+  private LibrarySnapshotFormat() {}
+
+  static byte encodeType(MediaType type) {
+    for (byte code = 0; code < TYPE_CODES.length; code++) {
+      if (TYPE_CODES[code] == type) {
+        return code;
+      }
+    }
+    throw new IllegalArgumentException("Media type has no snapshot code: " + type);
+  }
+
+  static MediaType decodeType(byte code) {
+    if (code < 0 || code >= TYPE_CODES.length) {
+      throw new IllegalArgumentException("Unknown media type code: " + code);
+    }
+    return TYPE_CODES[code];
+  }
+}
@@ -0,0 +1,259 @@
+package com.codedifferently.lesson23.factory;
+
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.GUEST_LIBRARIAN;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.GUEST_PATRON;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.NO_DUE_DATE;
+import static com.codedifferently.lesson23.factory.LibrarySnapshotFormat.NO_STRING;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Librarian;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.LibraryInfo;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Collects library data and writes it as a binary snapshot.
+ *
+ * <p>The writer is a {@link LibraryDataSink}, so any loader can be converted into a snapshot by
+ * feeding it to the writer. A running library can be added with {@link #addLibrary}. See {@link
+ * LibrarySnapshotFormat} for the file layout.
+ */
+public final class LibrarySnapshotWriter implements LibraryDataSink {
+
+  private final List<MediaItem> items = new ArrayList<>();
+  private final List<LibraryGuest> guests = new ArrayList<>();
+  private final List<Checkout> checkouts = new ArrayList<>();
+
+  @Override
+  public synchronized void addGuest(LibraryGuest guest) {
+    guests.add(guest);
+  }
+
+  @Override
+  public synchronized void addMediaItem(MediaItem item) {
+    items.add(item);
+  }
+
+  @Override
+  public synchronized void addCheckout(String email, CheckoutModel checkout) {
+    checkouts.add(new Checkout(email, checkout.itemId, checkout.dueDate));
+  }
+
+  /**
+   * Add the items, guests and checkouts of a library.
+   *
+   * @param library The library to add.
+   */
+  public void addLibrary(Library library) {
+    addLibraryInfo(library.getInfo());
+  }
+
+  /**
+   * Add the items, guests and checkouts of a library info snapshot.
+   *
+   * @param info The library info to add.
+   */
+  public void addLibraryInfo(LibraryInfo info) {
+    info.getGuests().forEach(this::addGuest);
+    info.getItems().forEach(this::addMediaItem);
+    Map<UUID, Set<MediaItem>> checkedOutItems = info.getCheckedOutItemsByGuest();
+    for (LibraryGuest guest : info.getGuests()) {
+      for (MediaItem item : checkedOutItems.getOrDefault(guest.getId(), Set.of())) {
+        var checkout = new CheckoutModel();
+        checkout.itemId = item.getId();
+        checkout.dueDate = info.getDueDatesByItemId().get(item.getId());
+        addCheckout(guest.getEmail(), checkout);
+      }
+    }
+  }
+
+  /**
+   * Write the collected data to a snapshot file, replacing it atomically and durably.
+   *
+   * <p>The data is synced to a temporary file before it is renamed over the snapshot, and the
+   * directory is synced after the rename, so once this returns the snapshot survives a power loss
+   * and whatever it replaces can safely be deleted.
+   *
+   * @param path The path of the snapshot file.
+   * @throws IOException if an I/O error occurs.
+   */
+  public synchronized void write(Path path) throws IOException {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel =
+            FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+      write(out);
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    syncDirectory(path.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Sync a directory, so that the files renamed into it survive a power loss.
+   *
+   * @param directory The directory to sync.
+   * @throws IOException if an I/O error occurs.
+   */
+  static void syncDirectory(Path directory) throws IOException {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Write the collected data as a snapshot to a stream.
+   *
+   * @param stream The stream to write to.
+   * @throws IOException if an I/O error occurs.
+   */
+  public synchronized void write(OutputStream stream) throws IOException {
+    var strings = new StringDictionary();
+    int[] titles = new int[items.size()];
+    int[] isbns = new int[items.size()];
+    int[] authorStarts = new int[items.size() + 1];
+    List<Integer> authorRefs = new ArrayList<>();
+    for (int i = 0; i < items.size(); i++) {
+      MediaItem item = items.get(i);
+      titles[i] = strings.add(item.getTitle());
+      isbns[i] = NO_STRING;
+      if (item instanceof Book book) {
+        isbns[i] = strings.add(book.getIsbn());
+        for (String author : book.getAuthors()) {
+          authorRefs.add(strings.add(author));
+        }
+      }
+      authorStarts[i + 1] = authorRefs.size();
+    }
+    int[] names = new int[guests.size()];
+    int[] emails = new int[guests.size()];
+    for (int i = 0; i < guests.size(); i++) {
+      names[i] = strings.add(guests.get(i).getName());
+      emails[i] = strings.add(guests.get(i).getEmail());
+    }
+    int[] checkoutEmails = new int[checkouts.size()];
+    for (int i = 0; i < checkouts.size(); i++) {
+      checkoutEmails[i] = strings.add(checkouts.get(i).email());
+    }
+
+    var out = new DataOutputStream(stream);
+    out.writeInt(LibrarySnapshotFormat.MAGIC);
+    out.writeInt(LibrarySnapshotFormat.VERSION);
+    out.writeInt(strings.size());
+    out.writeInt(items.size());
+    out.writeInt(authorRefs.size());
+    out.writeInt(guests.size());
+    out.writeInt(checkouts.size());
+
+    strings.writeTo(out);
+
+    for (MediaItem item : items) {
+      out.writeByte(LibrarySnapshotFormat.encodeType(item.getType()));
+    }
+    for (MediaItem item : items) {
+      out.writeLong(item.getId().getMostSignificantBits());
+    }
+    for (MediaItem item : items) {
+      out.writeLong(item.getId().getLeastSignificantBits());
+    }
+    writeInts(out, titles);
+    writeInts(out, isbns);
+    for (MediaItem item : items) {
+      out.writeInt(item instanceof Book book ? book.getNumberOfPages() : 0);
+    }
+    writeInts(out, authorStarts);
+    for (int authorRef : authorRefs) {
+      out.writeInt(authorRef);
+    }
+
+    for (LibraryGuest guest : guests) {
+      out.writeByte(guest instanceof Librarian ? GUEST_LIBRARIAN : GUEST_PATRON);
+    }
+    writeInts(out, names);
+    writeInts(out, emails);
+
+    writeInts(out, checkoutEmails);
+    for (Checkout checkout : checkouts) {
+      out.writeLong(checkout.itemId().getMostSignificantBits());
+    }
+    for (Checkout checkout : checkouts) {
+      out.writeLong(checkout.itemId().getLeastSignificantBits());
+    }
+    for (Checkout checkout : checkouts) {
+      out.writeLong(
+          checkout.dueDate() == null ? NO_DUE_DATE : checkout.dueDate().getEpochSecond());
+    }
+    out.flush();
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private record Checkout(String email, UUID itemId, Instant dueDate) {}
+
+  /** Assigns each distinct string an index and lays the strings out as one UTF-8 blob. */
+  private static final class StringDictionary {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<byte[]> encoded = new ArrayList<>();
+
+    int add(String value) {
+      if (value == null) {
+        return NO_STRING;
+      }
+      return indexes.computeIfAbsent(
+          value,
+          v -> {
+            encoded.add(v.getBytes(StandardCharsets.UTF_8));
+            return encoded.size() - 1;
+          });
+    }
+
+    int size() {
+      return encoded.size();
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      int offset = 0;
+      out.writeInt(offset);
+      for (byte[] bytes : encoded) {
+        offset += bytes.length;
+        out.writeInt(offset);
+      }
+      var blob = new ByteArrayOutputStream(offset);
+      for (byte[] bytes : encoded) {
+        blob.write(bytes);
+      }
+      blob.writeTo(out);
+    }
+  }
+}
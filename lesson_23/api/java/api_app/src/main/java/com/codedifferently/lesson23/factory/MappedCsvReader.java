@@ -0,0 +1,418 @@
+package com.codedifferently.lesson23.factory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Reads a CSV file with a header row through a memory mapping.
+ *
+ * <p>Each call to {@link #nextRow} only records where the fields of the row start and end in the
+ * mapped bytes. Fields are decoded when asked for, so columns a caller never reads cost nothing
+ * beyond the scan. Files larger than a single mapping are read through a sliding window.
+ */
+final class MappedCsvReader implements Closeable {
+
+  private static final long MAX_WINDOW_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final Map<String, Integer> columns = new HashMap<>();
+  private MappedByteBuffer window;
+  private long windowStart;
+  private int position;
+  private int fieldCount;
+  private int[] fieldStarts = new int[16];
+  private int[] fieldEnds = new int[16];
+  private boolean[] fieldQuoted = new boolean[16];
+  private byte[] scratch = new byte[256];
+
+  /**
+   * Open a CSV file and read its header row.
+   *
+   * @param path The path of the file.
+   * @throws IOException if an I/O error occurs.
+   */
+  MappedCsvReader(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      this.fileSize = channel.size();
+      mapWindow(0);
+      if (nextRow()) {
+        for (int i = 0; i < fieldCount; i++) {
+          columns.put(getString(i), i);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Get the index of a column by its header name.
+   *
+   * @param name The header name.
+   * @return The index of the column.
+   * @throws IllegalArgumentException if the file has no such column.
+   */
+  int column(String name) {
+    Integer index = columns.get(name);
+    if (index == null) {
+      throw new IllegalArgumentException("Mapping for " + name + " not found");
+    }
+    return index;
+  }
+
+  /**
+   * Advance to the next non-empty row.
+   *
+   * @return True if a row was read, false at the end of the file.
+   * @throws IOException if a row does not fit in a single mapping.
+   */
+  boolean nextRow() throws IOException {
+    while (true) {
+      skipLineBreaks();
+      if (position >= window.limit() && !hasMoreWindows()) {
+        return false;
+      }
+      int rowStart = position;
+      if (scanRow()) {
+        return true;
+      }
+      // The row runs past the end of this window, so remap starting at the row.
+      if (rowStart == 0) {
+        throw new IOException("CSV row at offset " + windowStart + " is too large to map");
+      }
+      mapWindow(windowStart + rowStart);
+    }
+  }
+
+  /**
+   * Decode a field of the current row as a string.
+   *
+   * @param column The index of the column.
+   * @return The field value, or an empty string if the row has no such column.
+   */
+  String getString(int column) {
+    if (column >= fieldCount) {
+      return "";
+    }
+    int length = copyField(column);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decode a field of the current row as a UUID without building an intermediate string.
+   *
+   * @param column The index of the column.
+   * @return The UUID.
+   * @throws IllegalArgumentException if the field is not a valid UUID.
+   */
+  UUID getUuid(int column) {
+    if (column < fieldCount && !fieldQuoted[column] && fieldLength(column) == 36) {
+      int start = fieldStarts[column];
+      long timeLow = parseHex(start, 8);
+      long timeMid = parseHex(start + 9, 4);
+      long timeHigh = parseHex(start + 14, 4);
+      long clockSeq = parseHex(start + 19, 4);
+      long node = parseHex(start + 24, 12);
+      boolean dashed =
+          window.get(start + 8) == '-'
+              && window.get(start + 13) == '-'
+              && window.get(start + 18) == '-'
+              && window.get(start + 23) == '-';
+      if (dashed && (timeLow | timeMid | timeHigh | clockSeq | node) >= 0) {
+        return new UUID(timeLow << 32 | timeMid << 16 | timeHigh, clockSeq << 48 | node);
+      }
+    }
+    // Leave anything unusual to UUID.fromString so errors and edge cases match.
+    return UUID.fromString(getString(column));
+  }
+
+  /**
+   * Decode a field of the current row as an int.
+   *
+   * @param column The index of the column.
+   * @param defaultValue The value to return if the field is not a number.
+   * @return The parsed value, or the default value.
+   */
+  int getInt(int column, int defaultValue) {
+    int length = column < fieldCount ? fieldLength(column) : 0;
+    if (length == 0) {
+      return defaultValue;
+    }
+    if (length <= 9 && !fieldQuoted[column]) {
+      int value = 0;
+      for (int i = fieldStarts[column]; i < fieldEnds[column]; i++) {
+        int digit = window.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return defaultValue;
+        }
+        value = value * 10 + digit;
+      }
+      return value;
+    }
+    try {
+      return Integer.parseInt(getString(column));
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Check whether a field of the current row equals the given ASCII text, ignoring case.
+   *
+   * @param column The index of the column.
+   * @param lowerCaseAscii The text to compare against, in lower case.
+   * @return True if the field matches, false otherwise.
+   */
+  boolean matchesIgnoreCase(int column, byte[] lowerCaseAscii) {
+    if (column >= fieldCount) {
+      return false;
+    }
+    if (fieldQuoted[column]) {
+      return getString(column).equalsIgnoreCase(asString(lowerCaseAscii));
+    }
+    if (fieldLength(column) != lowerCaseAscii.length) {
+      return false;
+    }
+    int start = fieldStarts[column];
+    for (int i = 0; i < lowerCaseAscii.length; i++) {
+      byte b = window.get(start + i);
+      if (b >= 'A' && b <= 'Z') {
+        b += 'a' - 'A';
+      }
+      if (b != lowerCaseAscii[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decode a field of the current row through an interner, so repeated values share one object.
+   *
+   * @param column The index of the column.
+   * @param interner The interner holding previously decoded values.
+   * @return The decoded value.
+   */
+  <T> T intern(int column, Interner<T> interner) {
+    int length = column < fieldCount ? copyField(column) : 0;
+    return interner.intern(scratch, length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+  private void mapWindow(long start) throws IOException {
+    windowStart = start;
+    long size = Math.min(MAX_WINDOW_SIZE, fileSize - start);
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    position = 0;
+  }
+
+  private boolean hasMoreWindows() {
+    return windowStart + window.limit() < fileSize;
+  }
+
+  private void skipLineBreaks() throws IOException {
+    while (true) {
+      while (position < window.limit()) {
+        byte b = window.get(position);
+        if (b != '\n' && b != '\r') {
+          return;
+        }
+        position++;
+      }
+      if (!hasMoreWindows()) {
+        return;
+      }
+      mapWindow(windowStart + position);
+    }
+  }
+
+  /**
+   * Record the field boundaries of the row at the current position.
+   *
+   * @return True if the row was complete, false if it runs past the end of the window.
+   */
+  private boolean scanRow() {
+    int limit = window.limit();
+    boolean lastWindow = !hasMoreWindows();
+    int i = position;
+    fieldCount = 0;
+    while (true) {
+      int start = i;
+      int closingQuote = -1;
+      boolean quoted = i < limit && window.get(i) == '"';
+      if (quoted) {
+        start = ++i;
+        while (true) {
+          if (i >= limit) {
+            return false;
+          }
+          if (window.get(i) == '"') {
+            if (i + 1 < limit && window.get(i + 1) == '"') {
+              i += 2;
+              continue;
+            }
+            if (i + 1 >= limit && !lastWindow) {
+              return false;
+            }
+            break;
+          }
+          i++;
+        }
+        closingQuote = i++;
+      }
+      // Scan to the next delimiter; for quoted fields this skips anything after the closing quote.
+      while (i < limit && !isDelimiter(window.get(i))) {
+        i++;
+      }
+      if (i >= limit && !lastWindow) {
+        return false;
+      }
+      addField(start, quoted ? closingQuote : i, quoted);
+      if (i < limit && window.get(i) == ',') {
+        i++;
+        continue;
+      }
+      position = i;
+      return true;
+    }
+  }
+
+  private static boolean isDelimiter(byte b) {
+    return b == ',' || b == '\n' || b == '\r';
+  }
+
+  private void addField(int start, int end, boolean quoted) {
+    if (fieldCount == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+      fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+    }
+    fieldStarts[fieldCount] = start;
+    fieldEnds[fieldCount] = end;
+    fieldQuoted[fieldCount] = quoted;
+    fieldCount++;
+  }
+
+  private int fieldLength(int column) {
+    return fieldEnds[column] - fieldStarts[column];
+  }
+
+  /** Copy a field into the scratch buffer, unescaping doubled quotes, and return its length. */
+  private int copyField(int column) {
+    int length = fieldLength(column);
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    window.get(fieldStarts[column], scratch, 0, length);
+    if (!fieldQuoted[column]) {
+      return length;
+    }
+    int out = 0;
+    for (int in = 0; in < length; in++) {
+      scratch[out++] = scratch[in];
+      if (scratch[in] == '"' && in + 1 < length && scratch[in + 1] == '"') {
+        in++;
+      }
+    }
+    return out;
+  }
+
+  /** Parse hex digits, returning -1 if any is invalid. */
+  private long parseHex(int start, int digits) {
+    long value = 0;
+    for (int i = start; i < start + digits; i++) {
+      int digit = Character.digit(window.get(i), 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = value << 4 | digit;
+    }
+    return value;
+  }
+
+  private static String asString(byte[] ascii) {
+    return new String(ascii, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Maps the raw bytes of a field to a shared decoded value.
+   *
+   * <p>Lookups hash and compare bytes directly, so a repeated value is decoded only the first time
+   * it is seen.
+   */
+  static final class Interner<T> {
+
+    private final Function<String, T> decoder;
+    private byte[][] keys = new byte[64][];
+    private Object[] values = new Object[64];
+    private int size;
+
+    Interner(Function<String, T> decoder) {
+      this.decoder = decoder;
+    }
+
+    @SuppressWarnings("unchecked")
+    T intern(byte[] bytes, int length) {
+      int mask = keys.length - 1;
+      int slot = hash(bytes, length) & mask;
+      while (keys[slot] != null) {
+        if (Arrays.equals(keys[slot], 0, keys[slot].length, bytes, 0, length)) {
+          return (T) values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      byte[] key = Arrays.copyOf(bytes, length);
+      T value = decoder.apply(new String(key, StandardCharsets.UTF_8));
+      keys[slot] = key;
+      values[slot] = value;
+      if (++size * 2 > keys.length) {
+        resize();
+      }
+      return value;
+    }
+
+    private void resize() {
+      byte[][] oldKeys = keys;
+      Object[] oldValues = values;
+      keys = new byte[oldKeys.length * 2][];
+      values = new Object[oldKeys.length * 2];
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          int slot = hash(oldKeys[i], oldKeys[i].length) & mask;
+          while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+        }
+      }
+    }
+
+    private static int hash(byte[] bytes, int length) {
+      int hash = 1;
+      for (int i = 0; i < length; i++) {
+        hash = 31 * hash + bytes[i];
+      }
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
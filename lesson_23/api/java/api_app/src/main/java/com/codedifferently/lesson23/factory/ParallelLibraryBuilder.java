@@ -0,0 +1,130 @@
+package com.codedifferently.lesson23.factory;
+
+import com.codedifferently.lesson23.library.Librarian;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the data fed to it by a loader and builds a library from all of it at once.
+ *
+ * <p>Unlike {@link LibraryBuilder}, nothing is added to the library until {@link #build} is called.
+ * The library can then be sized for the catalog up front, its items indexed as one batch, and its
+ * checkouts resolved and validated concurrently.
+ */
+public final class ParallelLibraryBuilder implements LibraryDataSink {
+
+  private final Queue<LibraryGuest> guests = new ConcurrentLinkedQueue<>();
+  private final Queue<MediaItem> items = new ConcurrentLinkedQueue<>();
+  private final Queue<PendingCheckout> checkouts = new ConcurrentLinkedQueue<>();
+
+  @Override
+  public void addGuest(LibraryGuest guest) {
+    guests.add(guest);
+  }
+
+  @Override
+  public void addMediaItem(MediaItem item) {
+    items.add(item);
+  }
+
+  @Override
+  public void addCheckout(String email, CheckoutModel checkout) {
+    checkouts.add(new PendingCheckout(email, checkout));
+  }
+
+  /**
+   * Build a library from the collected data.
+   *
+   * @param libraryId The id of the library.
+   * @return The library.
+   * @throws IllegalArgumentException if a checkout refers to an unknown guest or item, or to an
+   *     item that cannot be checked out or is checked out more than once, in which case no checkout
+   *     is applied.
+   * @throws IllegalStateException if the library refuses a checkout that passed those checks.
+   */
+  public Library build(String libraryId) {
+    List<MediaItem> catalog = new ArrayList<>(items);
+    var library = new Library(libraryId, catalog.size());
+    Librarian firstLibrarian = null;
+    for (LibraryGuest guest : guests) {
+      library.addLibraryGuest(guest);
+      if (firstLibrarian == null && guest instanceof Librarian librarian) {
+        firstLibrarian = librarian;
+      }
+    }
+    library.addMediaItems(catalog, firstLibrarian);
+
+    List<ResolvedCheckout> resolved =
+        checkouts.parallelStream().map(pending -> resolve(library, pending)).toList();
+    List<PendingCheckout> unknown =
+        resolved.stream()
+            .filter(checkout -> checkout.guest().isEmpty() || checkout.item().isEmpty())
+            .map(ResolvedCheckout::pending)
+            .toList();
+    if (!unknown.isEmpty()) {
+      throw new IllegalArgumentException(describe(unknown, "refer to an unknown guest or item"));
+    }
+    Set<UUID> seenItemIds = new HashSet<>();
+    List<PendingCheckout> rejected =
+        resolved.stream()
+            .filter(
+                checkout ->
+                    !checkout.item().get().canCheckOut()
+                        || !seenItemIds.add(checkout.item().get().getId()))
+            .map(ResolvedCheckout::pending)
+            .toList();
+    if (!rejected.isEmpty()) {
+      throw new IllegalArgumentException(
+          describe(rejected, "refer to an item that cannot be checked out or appears twice"));
+    }
+    // Every item is now checked out at most once, so a checkout can only fail if the library
+    // itself refuses it.
+    List<PendingCheckout> failed =
+        resolved.parallelStream()
+            .filter(
+                checkout ->
+                    !library.checkOutMediaItem(
+                        checkout.item().get(),
+                        checkout.guest().get(),
+                        checkout.pending().checkout().dueDate))
+            .map(ResolvedCheckout::pending)
+            .toList();
+    if (!failed.isEmpty()) {
+      throw new IllegalStateException(describe(failed, "were refused by the library"));
+    }
+    return library;
+  }
+
+  private static String describe(List<PendingCheckout> checkouts, String reason) {
+    PendingCheckout first = checkouts.get(0);
+    return checkouts.size()
+        + " checkouts "
+        + reason
+        + ", including: "
+        + first.email()
+        + ", "
+        + first.checkout().itemId;
+  }
+
+  private static ResolvedCheckout resolve(Library library, PendingCheckout pending) {
+    return new ResolvedCheckout(
+        pending,
+        library.findLibraryGuest(pending.email()),
+        library.findMediaItem(pending.checkout().itemId));
+  }
+
+  private record PendingCheckout(String email, CheckoutModel checkout) {}
+
+  private record ResolvedCheckout(
+      PendingCheckout pending, Optional<LibraryGuest> guest, Optional<MediaItem> item) {}
+}
@@ -1,5 +1,6 @@
 package com.codedifferently.lesson23.library;
 
+import com.codedifferently.lesson23.library.search.TextNormalizer;
 import java.util.List;
 import java.util.UUID;
 
@@ -8,6 +9,7 @@ public class Book extends MediaItemBase {
 
   private final String isbn;
   private final List<String> authors;
+  private final List<String> normalizedAuthors;
   private final int numberOfPages;
 
   /**
@@ -23,6 +25,8 @@ public class Book extends MediaItemBase {
     super(id, title);
     this.isbn = isbn;
     this.authors = authors;
+    this.normalizedAuthors =
+        authors == null ? List.of() : authors.stream().map(TextNormalizer::normalize).toList();
     this.numberOfPages = numberOfPages;
   }
 
@@ -45,6 +49,7 @@ public class Book extends MediaItemBase {
    *
    * @return The authors of the book.
    */
+  @Override
   public List<String> getAuthors() {
     return this.authors;
   }
@@ -59,16 +64,8 @@ public class Book extends MediaItemBase {
   }
 
   @Override
-  protected boolean matchesAuthor(String authorQuery) {
-    if (authorQuery == null) {
-      return true;
-    }
-    for (String author : this.getAuthors()) {
-      if (author.toLowerCase().contains(authorQuery.toLowerCase())) {
-        return true;
-      }
-    }
-    return false;
+  public List<String> getNormalizedAuthors() {
+    return this.normalizedAuthors;
   }
 
   @Override
@@ -1,25 +1,95 @@
 package com.codedifferently.lesson23.library;
 
 import com.codedifferently.lesson23.library.exceptions.MediaItemCheckedOutException;
-import com.codedifferently.lesson23.library.search.CatalogSearcher;
+import com.codedifferently.lesson23.library.search.CompiledQuery;
+import com.codedifferently.lesson23.library.search.IndexedCatalogSearcher;
 import com.codedifferently.lesson23.library.search.SearchCriteria;
+import com.codedifferently.lesson23.library.search.SearchEngine;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Striped;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-/** Represents a library. */
+/**
+ * Represents a library.
+ *
+ * <p>A library is safe to share between threads. Mutations lock only the stripes of the items and
+ * guests they touch, so operations on different items proceed in parallel.
+ */
 public class Library {
 
-  private final Map<UUID, MediaItem> itemsById = new HashMap<>();
-  private final Set<UUID> checkedOutItemIds = new HashSet<>();
-  private final Map<UUID, Set<MediaItem>> checkedOutItemsByGuest = new HashMap<>();
-  private final Map<UUID, LibraryGuest> guestsById = new HashMap<>();
+  /** How long an item handed to the guest first in line for it is lent for, unless changed. */
+  public static final Duration DEFAULT_LOAN_PERIOD = Duration.ofDays(14);
+
+  private static final int LOCK_STRIPES = 1024;
+  private static final int MAX_PENDING_INFO_CHANGES = 8_192;
+  private static final Logger logger = LoggerFactory.getLogger(Library.class);
+
+  private final Map<UUID, MediaItem> itemsById;
+  private final NavigableMap<UUID, MediaItem> itemsInIdOrder = new ConcurrentSkipListMap<>();
+  // Items keyed by their position in each order other than id, so pages resume in any order.
+  private final Map<MediaItemOrder, NavigableMap<MediaItemOrder.Position, MediaItem>>
+      itemsByOrder = new EnumMap<>(MediaItemOrder.class);
+  private final Set<UUID> checkedOutItemIds = ConcurrentHashMap.newKeySet();
+  private final Map<UUID, Instant> dueDatesByItemId = new ConcurrentHashMap<>();
+  private final NavigableSet<DueDate> dueDates = new ConcurrentSkipListSet<>();
+  private final Map<UUID, Queue<LibraryGuest>> holdsByItemId = new ConcurrentHashMap<>();
+  private final Object overdueSweepLock = new Object();
+  private Instant overdueSweptUntil = Instant.MIN;
+  private final Map<UUID, Set<MediaItem>> checkedOutItemsByGuest = new ConcurrentHashMap<>();
+  private final Map<UUID, LibraryGuest> guestsById = new ConcurrentHashMap<>();
+  private final Map<String, Set<LibraryGuest>> guestsByEmail = new ConcurrentHashMap<>();
+  private final Set<Librarian> librarians = ConcurrentHashMap.newKeySet();
+  private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+  private final LibraryStats stats = new LibraryStats();
+  private final SearchResultCache searchCache = new SearchResultCache(stats);
+  private final List<LibraryListener> listeners = new CopyOnWriteArrayList<>();
+  private final ExecutorService holdNotifier = newHoldNotifier();
+  private volatile Duration loanPeriod = DEFAULT_LOAN_PERIOD;
+  private final Queue<UnaryOperator<InfoView>> infoChanges = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingInfoChanges = new AtomicInteger();
+  private final ReentrantLock infoLock = new ReentrantLock();
+  private InfoView infoView = InfoView.EMPTY;
+  private volatile LibraryInfo info;
   private final String id;
-  private final CatalogSearcher<MediaItem> searcher;
+  private final SearchEngine<MediaItem> searcher;
 
   /**
    * Create a new library with the given id.
@@ -27,8 +97,42 @@ public class Library {
    * @param id The id of the library.
    */
   public Library(String id) {
+    this(id, catalog -> new IndexedCatalogSearcher<>());
+  }
+
+  /**
+   * Create a new library with the given id, sized to hold the given number of items.
+   *
+   * @param id The id of the library.
+   * @param expectedItemCount The number of items the library is expected to hold.
+   */
+  public Library(String id, int expectedItemCount) {
+    this(id, expectedItemCount, catalog -> new IndexedCatalogSearcher<>());
+  }
+
+  /**
+   * Create a new library with the given id and search engine.
+   *
+   * @param id The id of the library.
+   * @param searcherFactory Creates the search engine from a live view of the library's items.
+   */
+  public Library(
+      String id, Function<Collection<MediaItem>, SearchEngine<MediaItem>> searcherFactory) {
+    this(id, 16, searcherFactory);
+  }
+
+  private Library(
+      String id,
+      int expectedItemCount,
+      Function<Collection<MediaItem>, SearchEngine<MediaItem>> searcherFactory) {
     this.id = id;
-    this.searcher = new CatalogSearcher(this.itemsById.values());
+    this.itemsById = new ConcurrentHashMap<>(expectedItemCount);
+    for (MediaItemOrder order : MediaItemOrder.values()) {
+      if (order != MediaItemOrder.ID) {
+        this.itemsByOrder.put(order, new ConcurrentSkipListMap<>());
+      }
+    }
+    this.searcher = searcherFactory.apply(Collections.unmodifiableCollection(itemsById.values()));
   }
 
   /**
@@ -47,10 +151,98 @@ public class Library {
    * @param librarian The librarian adding the item.
    */
   public void addMediaItem(MediaItem item, Librarian librarian) {
-    this.itemsById.put(item.getId(), item);
+    Iterable<Lock> acquired = this.lockAll(item.getId());
+    try {
+      for (LibraryListener listener : this.listeners) {
+        listener.onMediaItemAdded(item);
+      }
+      MediaItem replaced = this.itemsById.put(item.getId(), item);
+      this.itemsInIdOrder.put(item.getId(), item);
+      if (replaced != null) {
+        this.unindexOrders(replaced);
+        this.searcher.remove(replaced);
+        this.stats.itemRemoved(replaced);
+        this.searchCache.invalidate(replaced.getType());
+      }
+      this.indexOrders(item);
+      this.searcher.add(item);
+      this.stats.itemAdded(item);
+      this.searchCache.invalidate(item.getType());
+      this.recordInfoChange(view -> view.withItem(item));
+    } finally {
+      unlockAll(acquired);
+    }
     item.setLibrary(this);
   }
 
+  /**
+   * Add many items to the library at once.
+   *
+   * <p>Changes are paused while the items are added, and the search engine indexes them as one
+   * batch. This is much faster than adding the items one at a time when loading a large catalog.
+   * Listeners are told about the whole batch at once, before any item is added.
+   *
+   * @param items The items to add.
+   * @param librarian The librarian adding the items.
+   * @return For each item in order, true if it was new to the library, or false if it replaced an
+   *     item with the same id.
+   */
+  public List<Boolean> addMediaItems(Collection<? extends MediaItem> items, Librarian librarian) {
+    List<MediaItem> added = new ArrayList<>(items.size());
+    try {
+      return this.whileChangesPaused(() -> this.addMediaItemsWhilePaused(items, added));
+    } finally {
+      added.parallelStream().forEach(item -> item.setLibrary(this));
+    }
+  }
+
+  private List<Boolean> addMediaItemsWhilePaused(
+      Collection<? extends MediaItem> items, List<MediaItem> added) {
+    List<Boolean> results = new ArrayList<>(items.size());
+    List<MediaItem> replacedItems = new ArrayList<>();
+    for (LibraryListener listener : this.listeners) {
+      listener.onMediaItemsAdded(items);
+    }
+    try {
+      for (MediaItem item : items) {
+        MediaItem replaced = this.itemsById.put(item.getId(), item);
+        if (replaced != null) {
+          replacedItems.add(replaced);
+        }
+        added.add(item);
+        results.add(replaced == null);
+      }
+    } finally {
+      // Index whatever was added, even if adding an item failed partway. The skip list is filled
+      // in id order, which is several times faster than inserting at random positions; the sort
+      // is stable, so the last of several items with the same id still wins.
+      MediaItem[] inIdOrder = added.toArray(MediaItem[]::new);
+      Arrays.parallelSort(inIdOrder, Comparator.comparing(MediaItem::getId));
+      for (MediaItem item : inIdOrder) {
+        this.itemsInIdOrder.put(item.getId(), item);
+      }
+      for (MediaItem replaced : replacedItems) {
+        this.unindexOrders(replaced);
+        this.searcher.remove(replaced);
+        this.stats.itemRemoved(replaced);
+      }
+      // Skip items replaced later in the same batch, which the loop above could not unindex.
+      this.indexOrders(
+          Arrays.stream(inIdOrder)
+              .filter(item -> this.itemsById.get(item.getId()) == item)
+              .toArray(MediaItem[]::new));
+      this.searcher.addAll(added);
+      added.forEach(this.stats::itemAdded);
+      Set<MediaType> changedTypes = EnumSet.noneOf(MediaType.class);
+      added.forEach(item -> changedTypes.add(item.getType()));
+      replacedItems.forEach(item -> changedTypes.add(item.getType()));
+      changedTypes.forEach(this.searchCache::invalidate);
+      List<MediaItem> addedItems = List.copyOf(added);
+      this.recordInfoChange(view -> view.withItems(addedItems));
+    }
+    return results;
+  }
+
   /**
    * Remove a item from the library.
    *
@@ -59,10 +251,28 @@ public class Library {
    */
   public void removeMediaItem(MediaItem item, Librarian librarian)
       throws MediaItemCheckedOutException {
-    if (this.isCheckedOut(item)) {
-      throw new MediaItemCheckedOutException("Cannot remove checked out item.");
+    Iterable<Lock> acquired = this.lockAll(item.getId());
+    try {
+      if (this.isCheckedOut(item)) {
+        throw new MediaItemCheckedOutException("Cannot remove checked out item.");
+      }
+      MediaItem removed = this.itemsById.get(item.getId());
+      if (removed != null) {
+        for (LibraryListener listener : this.listeners) {
+          listener.onMediaItemRemoved(removed);
+        }
+        this.itemsById.remove(item.getId());
+        this.itemsInIdOrder.remove(item.getId());
+        this.unindexOrders(removed);
+        this.holdsByItemId.remove(item.getId());
+        this.searcher.remove(removed);
+        this.stats.itemRemoved(removed);
+        this.searchCache.invalidate(removed.getType());
+        this.recordInfoChange(view -> view.withoutItem(removed.getId()));
+      }
+    } finally {
+      unlockAll(acquired);
     }
-    this.itemsById.remove(item.getId());
     item.setLibrary(null);
   }
 
@@ -80,11 +290,104 @@ public class Library {
   /**
    * Search the library for items matching the given query.
    *
+   * <p>Results are cached by query and served until an item of a type the query can match is added
+   * or removed.
+   *
    * @param query The query to search for.
-   * @return The items matching the query.
+   * @return An unmodifiable set of the items matching the query.
    */
   public Set<MediaItem> search(SearchCriteria query) {
-    return new HashSet<>(this.searcher.search(query));
+    return this.searchCache.get(query, q -> Set.copyOf(this.searcher.search(q)));
+  }
+
+  /**
+   * Search the library for the items that best match the given query.
+   *
+   * <p>Items are ranked by how relevant their title and authors are to the query, and only the top
+   * {@code limit} are kept while searching.
+   *
+   * @param query The query to search for.
+   * @param limit The maximum number of items to return.
+   * @return Up to {@code limit} matching items, most relevant first.
+   */
+  public List<MediaItem> searchRanked(SearchCriteria query, int limit) {
+    return this.searcher.searchRanked(query, limit);
+  }
+
+  /**
+   * Search the library for items matching the given query, one page at a time.
+   *
+   * <p>Items are walked in the given order from the end of the previous page, and the walk stops as
+   * soon as the page is full. Only the page is held in memory, and the cost follows the number of
+   * items passed over rather than the number of matches.
+   *
+   * @param query The query to search for.
+   * @param order The order to return items in.
+   * @param after The position of the last item on the previous page, or null for the first page.
+   * @param limit The maximum number of items to return.
+   * @return Up to {@code limit} matching items in the given order.
+   */
+  public List<MediaItem> search(
+      SearchCriteria query, MediaItemOrder order, MediaItemOrder.Position after, int limit) {
+    if (limit <= 0) {
+      return List.of();
+    }
+    Stream<MediaItem> remaining = this.itemsAfter(order, after).stream();
+    if (!isUnfiltered(query)) {
+      CompiledQuery compiled = CompiledQuery.compile(query);
+      remaining = remaining.filter(item -> item.matches(compiled));
+    }
+    return remaining.limit(limit).toList();
+  }
+
+  /**
+   * Search the library for every item matching the given query, in the given order.
+   *
+   * <p>The items are served from a live, weakly consistent view of the library in the given order,
+   * skipping the items that do not match, so nothing is copied or sorted however many match.
+   *
+   * @param query The query to search for.
+   * @param order The order to return items in.
+   * @return The items matching the query.
+   */
+  public Iterable<MediaItem> searchInOrder(SearchCriteria query, MediaItemOrder order) {
+    Collection<MediaItem> inOrder =
+        Collections.unmodifiableCollection(this.itemsAfter(order, null));
+    if (isUnfiltered(query)) {
+      return inOrder;
+    }
+    CompiledQuery compiled = CompiledQuery.compile(query);
+    return Iterables.filter(inOrder, item -> item.matches(compiled));
+  }
+
+  private Collection<MediaItem> itemsAfter(MediaItemOrder order, MediaItemOrder.Position after) {
+    if (order == MediaItemOrder.ID) {
+      return after == null
+          ? this.itemsInIdOrder.values()
+          : this.itemsInIdOrder.tailMap(after.id(), false).values();
+    }
+    NavigableMap<MediaItemOrder.Position, MediaItem> items = this.itemsByOrder.get(order);
+    return after == null ? items.values() : items.tailMap(after, false).values();
+  }
+
+  private void indexOrders(MediaItem... items) {
+    this.itemsByOrder.forEach(
+        (order, positions) -> {
+          // Fill each skip list in its own order, which is much faster than at random positions.
+          MediaItem[] sorted = items.clone();
+          Arrays.parallelSort(sorted, order.comparator());
+          for (MediaItem item : sorted) {
+            positions.put(order.positionOf(item), item);
+          }
+        });
+  }
+
+  private void unindexOrders(MediaItem item) {
+    this.itemsByOrder.forEach((order, positions) -> positions.remove(order.positionOf(item)));
+  }
+
+  private static boolean isUnfiltered(SearchCriteria query) {
+    return query.id == null && query.title == null && query.author == null && query.type == null;
   }
 
   /**
@@ -93,8 +396,23 @@ public class Library {
    * @param guest The guest to add.
    */
   public void addLibraryGuest(LibraryGuest guest) {
-    this.guestsById.put(guest.getId(), guest);
-    this.checkedOutItemsByGuest.put(guest.getId(), new HashSet<>());
+    Iterable<Lock> acquired = this.lockAll(guest.getId());
+    try {
+      for (LibraryListener listener : this.listeners) {
+        listener.onLibraryGuestAdded(guest);
+      }
+      LibraryGuest replaced = this.guestsById.put(guest.getId(), guest);
+      this.checkedOutItemsByGuest.put(guest.getId(), ConcurrentHashMap.newKeySet());
+      if (replaced != null) {
+        this.unindexGuest(replaced);
+        this.stats.guestRemoved(replaced);
+      }
+      this.indexGuest(guest);
+      this.stats.guestAdded(guest);
+      this.recordInfoChange(view -> view.withGuest(guest));
+    } finally {
+      unlockAll(acquired);
+    }
     guest.setLibrary(this);
   }
 
@@ -104,15 +422,27 @@ public class Library {
    * @param id The ID of the guest to remove.
    */
   public void removeLibraryGuest(UUID id) throws MediaItemCheckedOutException {
-    LibraryGuest guest = this.guestsById.get(id);
-    if (guest == null) {
-      return;
-    }
-    if (!this.checkedOutItemsByGuest.get(guest.getId()).isEmpty()) {
-      throw new MediaItemCheckedOutException("Cannot remove guest with checked out items.");
+    LibraryGuest guest;
+    Iterable<Lock> acquired = this.lockAll(id);
+    try {
+      guest = this.guestsById.get(id);
+      if (guest == null) {
+        return;
+      }
+      if (!this.checkedOutItemsByGuest.get(guest.getId()).isEmpty()) {
+        throw new MediaItemCheckedOutException("Cannot remove guest with checked out items.");
+      }
+      for (LibraryListener listener : this.listeners) {
+        listener.onLibraryGuestRemoved(guest);
+      }
+      this.guestsById.remove(guest.getId());
+      this.checkedOutItemsByGuest.remove(guest.getId());
+      this.unindexGuest(guest);
+      this.stats.guestRemoved(guest);
+      this.recordInfoChange(view -> view.withoutGuest(guest.getId()));
+    } finally {
+      unlockAll(acquired);
     }
-    this.guestsById.remove(guest.getId());
-    this.checkedOutItemsByGuest.remove(guest.getId());
     guest.setLibrary(null);
   }
 
@@ -125,16 +455,51 @@ public class Library {
     this.removeLibraryGuest(guest.getId());
   }
 
+  private void indexGuest(LibraryGuest guest) {
+    // Add inside compute so a concurrent removal cannot drop the set this guest is added to.
+    this.guestsByEmail.compute(
+        normalizeEmail(guest.getEmail()),
+        (email, guests) -> {
+          Set<LibraryGuest> updated = guests == null ? ConcurrentHashMap.newKeySet() : guests;
+          updated.add(guest);
+          return updated;
+        });
+    if (guest instanceof Librarian librarian) {
+      this.librarians.add(librarian);
+    }
+  }
+
+  private void unindexGuest(LibraryGuest guest) {
+    this.guestsByEmail.computeIfPresent(
+        normalizeEmail(guest.getEmail()),
+        (email, guests) -> {
+          guests.remove(guest);
+          return guests.isEmpty() ? null : guests;
+        });
+    if (guest instanceof Librarian librarian) {
+      this.librarians.remove(librarian);
+    }
+  }
+
+  /**
+   * Fold an email address so that addresses differing only in case share a key, matching {@link
+   * String#equalsIgnoreCase}.
+   */
+  private static String normalizeEmail(String emailAddress) {
+    StringBuilder normalized = new StringBuilder(emailAddress.length());
+    for (int i = 0; i < emailAddress.length(); i++) {
+      normalized.append(Character.toLowerCase(Character.toUpperCase(emailAddress.charAt(i))));
+    }
+    return normalized.toString();
+  }
+
   /**
    * Returns all librarians registered for this library.
    *
-   * @return A unique set of librarians.
+   * @return A live, read-only set of librarians.
    */
   public Set<Librarian> getLibrarians() {
-    return this.guestsById.values().stream()
-        .filter(g -> g instanceof Librarian)
-        .map(g -> (Librarian) g)
-        .collect(Collectors.toSet());
+    return Collections.unmodifiableSet(this.librarians);
   }
 
   /**
@@ -154,12 +519,99 @@ public class Library {
    * @return True if the item was checked out, false otherwise.
    */
   public boolean checkOutMediaItem(MediaItem item, LibraryGuest guest) {
-    if (!this.canCheckOutMediaItem(item, guest)) {
-      return false;
+    return this.checkOutMediaItem(item, guest, null);
+  }
+
+  /**
+   * Check out a item to a guest until a due date.
+   *
+   * @param item The item to check out.
+   * @param guest The guest to check out the item to.
+   * @param dueDate When the item is due back, or null if it is never overdue.
+   * @return True if the item was checked out, false otherwise.
+   */
+  public boolean checkOutMediaItem(MediaItem item, LibraryGuest guest, Instant dueDate) {
+    Iterable<Lock> acquired = this.lockAll(item.getId(), guest.getId());
+    try {
+      if (!this.canCheckOutMediaItem(item, guest)) {
+        return false;
+      }
+      this.checkOutUnderLock(item, guest, dueDate);
+      this.recordInfoChange(view -> view.withCheckout(guest.getId(), item, dueDate));
+      return true;
+    } finally {
+      unlockAll(acquired);
+    }
+  }
+
+  /**
+   * Check out several items to a guest at once.
+   *
+   * <p>The items are validated together and then checked out as one change, so no other change to
+   * them or the guest can interleave. An item is refused for the same reasons as in {@link
+   * #checkOutMediaItem}, or if it appears earlier in the same call.
+   *
+   * @param guest The guest to check the items out to.
+   * @param items The items to check out.
+   * @return For each item in order, true if it was checked out, false otherwise.
+   */
+  public List<Boolean> checkOutMediaItems(
+      LibraryGuest guest, Collection<? extends MediaItem> items) {
+    return this.checkOutMediaItems(guest, items, null);
+  }
+
+  /**
+   * Check out several items to a guest at once, all due on the same date.
+   *
+   * @param guest The guest to check the items out to.
+   * @param items The items to check out.
+   * @param dueDate When the items are due back, or null if they are never overdue.
+   * @return For each item in order, true if it was checked out, false otherwise.
+   * @see #checkOutMediaItems(LibraryGuest, Collection)
+   */
+  public List<Boolean> checkOutMediaItems(
+      LibraryGuest guest, Collection<? extends MediaItem> items, Instant dueDate) {
+    Iterable<Lock> acquired = this.lockAll(idsOf(guest, items));
+    try {
+      boolean hasGuest = this.hasLibraryGuest(guest);
+      List<Boolean> results = new ArrayList<>(items.size());
+      Map<UUID, MediaItem> accepted = new LinkedHashMap<>();
+      for (MediaItem item : items) {
+        boolean canCheckOut =
+            hasGuest
+                && item.canCheckOut()
+                && this.hasMediaItem(item)
+                && !this.isCheckedOut(item)
+                && this.isNextInLine(item.getId(), guest)
+                && accepted.putIfAbsent(item.getId(), item) == null;
+        results.add(canCheckOut);
+      }
+      for (MediaItem item : accepted.values()) {
+        for (LibraryListener listener : this.listeners) {
+          listener.onMediaItemCheckedOut(item, guest, dueDate);
+        }
+      }
+      if (!accepted.isEmpty()) {
+        this.checkedOutItemIds.addAll(accepted.keySet());
+        this.checkedOutItemsByGuest.get(guest.getId()).addAll(accepted.values());
+        for (UUID itemId : accepted.keySet()) {
+          this.indexDueDate(itemId, dueDate);
+          this.releaseHold(itemId, guest);
+        }
+        this.stats.itemsCheckedOut(guest.getId(), accepted.size());
+        List<MediaItem> checkedOut = List.copyOf(accepted.values());
+        this.recordInfoChange(
+            view -> {
+              for (MediaItem item : checkedOut) {
+                view = view.withCheckout(guest.getId(), item, dueDate);
+              }
+              return view;
+            });
+      }
+      return results;
+    } finally {
+      unlockAll(acquired);
     }
-    this.checkedOutItemIds.add(item.getId());
-    this.checkedOutItemsByGuest.get(guest.getId()).add(item);
-    return true;
   }
 
   private boolean canCheckOutMediaItem(MediaItem item, LibraryGuest guest) {
@@ -172,9 +624,183 @@ public class Library {
     if (this.isCheckedOut(item)) {
       return false;
     }
+    if (!this.isNextInLine(item.getId(), guest)) {
+      return false;
+    }
     return this.hasLibraryGuest(guest);
   }
 
+  /** Apply a validated checkout. Must be called with the stripes of the item and guest held. */
+  private void checkOutUnderLock(MediaItem item, LibraryGuest guest, Instant dueDate) {
+    for (LibraryListener listener : this.listeners) {
+      listener.onMediaItemCheckedOut(item, guest, dueDate);
+    }
+    this.checkedOutItemIds.add(item.getId());
+    this.checkedOutItemsByGuest.get(guest.getId()).add(item);
+    this.indexDueDate(item.getId(), dueDate);
+    this.releaseHold(item.getId(), guest);
+    this.stats.itemCheckedOut(guest.getId());
+  }
+
+  /**
+   * Place a hold on a checked out item, joining the end of its queue.
+   *
+   * <p>When the item is returned it is checked out to the first guest in its queue as part of the
+   * same change, and listeners are told through {@link LibraryListener#onHoldFulfilled}. Until
+   * then, nobody else can check the item out while anyone is waiting for it. Each item has its own
+   * queue, guarded by the item's lock stripe, so holds on different items never contend.
+   *
+   * @param item The item to hold.
+   * @param guest The guest waiting for the item.
+   * @return True if the hold was placed, false if the item is not checked out, cannot be checked
+   *     out, is held by the guest already, or either is not in the library.
+   */
+  public boolean placeHold(MediaItem item, LibraryGuest guest) {
+    Iterable<Lock> acquired = this.lockAll(item.getId(), guest.getId());
+    try {
+      if (!item.canCheckOut()
+          || !this.hasMediaItem(item)
+          || !this.isCheckedOut(item)
+          || !this.hasLibraryGuest(guest)
+          || this.checkedOutItemsByGuest.get(guest.getId()).contains(item)
+          || this.getHolds(item).stream().anyMatch(held -> isSameGuest(held, guest))) {
+        return false;
+      }
+      this.holdsByItemId
+          .computeIfAbsent(item.getId(), id -> new ConcurrentLinkedQueue<>())
+          .add(guest);
+      return true;
+    } finally {
+      unlockAll(acquired);
+    }
+  }
+
+  /**
+   * Cancel a guest's hold on an item.
+   *
+   * @param item The held item.
+   * @param guest The guest waiting for the item.
+   * @return True if the guest was waiting for the item, false otherwise.
+   */
+  public boolean cancelHold(MediaItem item, LibraryGuest guest) {
+    Iterable<Lock> acquired = this.lockAll(item.getId(), guest.getId());
+    try {
+      return this.releaseHold(item.getId(), guest);
+    } finally {
+      unlockAll(acquired);
+    }
+  }
+
+  /**
+   * Get the guests waiting for an item.
+   *
+   * @param item The item.
+   * @return The waiting guests, first in line first.
+   */
+  public List<LibraryGuest> getHolds(MediaItem item) {
+    Queue<LibraryGuest> holds = this.holdsByItemId.get(item.getId());
+    return holds == null ? List.of() : List.copyOf(holds);
+  }
+
+  /** The guest first in line for an item, or null if nobody is waiting. */
+  private LibraryGuest nextInLine(UUID itemId) {
+    Queue<LibraryGuest> holds = this.holdsByItemId.get(itemId);
+    return holds == null ? null : holds.peek();
+  }
+
+  private boolean isNextInLine(UUID itemId, LibraryGuest guest) {
+    LibraryGuest next = this.nextInLine(itemId);
+    return next == null || isSameGuest(next, guest);
+  }
+
+  /** Remove a guest from an item's queue. Must be called with the item's stripe held. */
+  private boolean releaseHold(UUID itemId, LibraryGuest guest) {
+    Queue<LibraryGuest> holds = this.holdsByItemId.get(itemId);
+    if (holds == null || !holds.removeIf(held -> isSameGuest(held, guest))) {
+      return false;
+    }
+    if (holds.isEmpty()) {
+      this.holdsByItemId.remove(itemId);
+    }
+    return true;
+  }
+
+  /**
+   * Check that the guests first in line for some items are the ones seen before their stripes were
+   * locked, dropping any that have since left the library. Must be called with the stripes of the
+   * items and of the expected guests held.
+   *
+   * @param expected The guest seen first in line for each item id, or null if there was none.
+   * @return True if the queues are as expected, false if the caller must look again and retry.
+   */
+  private boolean isNextInLineUnchanged(Map<UUID, LibraryGuest> expected) {
+    boolean unchanged = true;
+    for (Map.Entry<UUID, LibraryGuest> entry : expected.entrySet()) {
+      LibraryGuest next = this.nextInLine(entry.getKey());
+      if (next != entry.getValue()) {
+        unchanged = false;
+      } else if (next != null && !this.hasLibraryGuest(next)) {
+        this.releaseHold(entry.getKey(), next);
+        unchanged = false;
+      }
+    }
+    return unchanged;
+  }
+
+  /**
+   * Check out a returned item to the guest first in line for it, due back after the loan period.
+   * Must be called with the stripes of the item and the guest held, after {@link
+   * #isNextInLineUnchanged} has confirmed the guest.
+   *
+   * @return The date the item is due back.
+   */
+  private Instant handOffUnderLock(MediaItem item, LibraryGuest next) {
+    Instant dueDate = Instant.now().plus(this.loanPeriod);
+    this.checkOutUnderLock(item, next, dueDate);
+    // Tell listeners outside the locks so a slow notification cannot hold up the library.
+    this.holdNotifier.execute(() -> this.notifyHoldFulfilled(item, next));
+    return dueDate;
+  }
+
+  private void notifyHoldFulfilled(MediaItem item, LibraryGuest guest) {
+    for (LibraryListener listener : this.listeners) {
+      try {
+        listener.onHoldFulfilled(item, guest);
+      } catch (RuntimeException e) {
+        logger.warn(
+            "Listener failed to handle the hold on item {} for {}",
+            item.getId(),
+            guest.getEmail(),
+            e);
+      }
+    }
+  }
+
+  /**
+   * Create the single thread that tells listeners about fulfilled holds, in order. The thread only
+   * runs while there are notifications to deliver, so an idle library holds no thread.
+   */
+  private static ExecutorService newHoldNotifier() {
+    var executor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            task -> {
+              var thread = new Thread(task, "library-hold-notifier");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static boolean isSameGuest(LibraryGuest first, LibraryGuest second) {
+    return first.getId().equals(second.getId());
+  }
+
   /**
    * Check if the library has the given item.
    *
@@ -195,6 +821,16 @@ public class Library {
     return this.itemsById.containsKey(id);
   }
 
+  /**
+   * Find an item of the library by id.
+   *
+   * @param id The ID of the item.
+   * @return The item with the given ID, or empty if there is none.
+   */
+  public Optional<MediaItem> findMediaItem(UUID id) {
+    return Optional.ofNullable(this.itemsById.get(id));
+  }
+
   /**
    * Check if the given item is checked out.
    *
@@ -232,8 +868,18 @@ public class Library {
    * @return True if the library has the guest, false otherwise.
    */
   public boolean hasLibraryGuest(String emailAddress) {
-    return this.guestsById.values().stream()
-        .anyMatch(g -> g.getEmail().equalsIgnoreCase(emailAddress));
+    return this.guestsByEmail.containsKey(normalizeEmail(emailAddress));
+  }
+
+  /**
+   * Find a guest of the library by email address, ignoring case.
+   *
+   * @param emailAddress The email address to look up.
+   * @return The guest with the given email address, or empty if there is none.
+   */
+  public Optional<LibraryGuest> findLibraryGuest(String emailAddress) {
+    Set<LibraryGuest> guests = this.guestsByEmail.get(normalizeEmail(emailAddress));
+    return guests == null ? Optional.empty() : guests.stream().findFirst();
   }
 
   /**
@@ -244,12 +890,248 @@ public class Library {
    * @return True if the item was returned, false otherwise.
    */
   public boolean checkInMediaItem(MediaItem item, LibraryGuest guest) {
-    if (!this.hasMediaItem(item)) {
-      return false;
+    while (true) {
+      // Lock the guest first in line too, so the item can be handed to them in the same change.
+      LibraryGuest next = this.nextInLine(item.getId());
+      Iterable<Lock> acquired =
+          next == null
+              ? this.lockAll(item.getId(), guest.getId())
+              : this.lockAll(item.getId(), guest.getId(), next.getId());
+      try {
+        if (!this.isNextInLineUnchanged(Collections.singletonMap(item.getId(), next))) {
+          continue;
+        }
+        if (!this.hasMediaItem(item)) {
+          return false;
+        }
+        // Only the guest holding the item can return it, otherwise it would stay in their set.
+        Set<MediaItem> checkedOut = this.checkedOutItemsByGuest.get(guest.getId());
+        if (checkedOut == null || !checkedOut.contains(item)) {
+          return false;
+        }
+        for (LibraryListener listener : this.listeners) {
+          listener.onMediaItemCheckedIn(item, guest);
+        }
+        checkedOut.remove(item);
+        this.checkedOutItemIds.remove(item.getId());
+        this.unindexDueDate(item.getId());
+        this.stats.itemCheckedIn(guest.getId());
+        Instant handOffDueDate = next != null ? this.handOffUnderLock(item, next) : null;
+        this.recordInfoChange(
+            view -> {
+              view = view.withoutCheckout(guest.getId(), item.getId());
+              return next == null ? view : view.withCheckout(next.getId(), item, handOffDueDate);
+            });
+        return true;
+      } finally {
+        unlockAll(acquired);
+      }
     }
-    this.checkedOutItemIds.remove(item.getId());
-    this.checkedOutItemsByGuest.get(guest.getId()).remove(item);
-    return true;
+  }
+
+  /**
+   * Return several items to the library at once.
+   *
+   * <p>The items are validated together and then returned as one change, which also hands each
+   * held item to the guest first in line for it. An item is refused for the same reasons as in
+   * {@link #checkInMediaItem}, or if it appears earlier in the same call.
+   *
+   * @param guest The guest returning the items.
+   * @param items The items to return.
+   * @return For each item in order, true if it was returned, false otherwise.
+   */
+  public List<Boolean> checkInMediaItems(
+      LibraryGuest guest, Collection<? extends MediaItem> items) {
+    while (true) {
+      Map<UUID, LibraryGuest> nextInLine = new HashMap<>();
+      List<UUID> ids = idsOf(guest, items);
+      for (MediaItem item : items) {
+        LibraryGuest next = this.nextInLine(item.getId());
+        nextInLine.put(item.getId(), next);
+        if (next != null) {
+          ids.add(next.getId());
+        }
+      }
+      Iterable<Lock> acquired = this.lockAll(ids);
+      try {
+        if (!this.isNextInLineUnchanged(nextInLine)) {
+          continue;
+        }
+        return this.checkInUnderLock(guest, items, nextInLine);
+      } finally {
+        unlockAll(acquired);
+      }
+    }
+  }
+
+  private List<Boolean> checkInUnderLock(
+      LibraryGuest guest,
+      Collection<? extends MediaItem> items,
+      Map<UUID, LibraryGuest> nextInLine) {
+    Set<MediaItem> checkedOut = this.checkedOutItemsByGuest.get(guest.getId());
+    List<Boolean> results = new ArrayList<>(items.size());
+    Map<UUID, MediaItem> accepted = new LinkedHashMap<>();
+    for (MediaItem item : items) {
+      boolean canCheckIn =
+          checkedOut != null
+              && this.hasMediaItem(item)
+              && checkedOut.contains(item)
+              && accepted.putIfAbsent(item.getId(), item) == null;
+      results.add(canCheckIn);
+    }
+    for (MediaItem item : accepted.values()) {
+      for (LibraryListener listener : this.listeners) {
+        listener.onMediaItemCheckedIn(item, guest);
+      }
+    }
+    if (!accepted.isEmpty()) {
+      checkedOut.removeAll(accepted.values());
+      this.checkedOutItemIds.removeAll(accepted.keySet());
+      for (UUID itemId : accepted.keySet()) {
+        this.unindexDueDate(itemId);
+      }
+      this.stats.itemsCheckedIn(guest.getId(), accepted.size());
+      List<MediaItem> returned = List.copyOf(accepted.values());
+      Map<MediaItem, HandOff> handOffs = new HashMap<>();
+      for (MediaItem item : returned) {
+        LibraryGuest next = nextInLine.get(item.getId());
+        if (next != null) {
+          handOffs.put(item, new HandOff(next.getId(), this.handOffUnderLock(item, next)));
+        }
+      }
+      this.recordInfoChange(
+          view -> {
+            for (MediaItem item : returned) {
+              view = view.withoutCheckout(guest.getId(), item.getId());
+              HandOff handOff = handOffs.get(item);
+              if (handOff != null) {
+                view = view.withCheckout(handOff.guestId(), item, handOff.dueDate());
+              }
+            }
+            return view;
+          });
+    }
+    return results;
+  }
+
+  private void indexDueDate(UUID itemId, Instant dueDate) {
+    if (dueDate != null) {
+      this.dueDatesByItemId.put(itemId, dueDate);
+      this.dueDates.add(new DueDate(dueDate, itemId));
+    }
+  }
+
+  private void unindexDueDate(UUID itemId) {
+    Instant dueDate = this.dueDatesByItemId.remove(itemId);
+    if (dueDate != null) {
+      this.dueDates.remove(new DueDate(dueDate, itemId));
+    }
+  }
+
+  /**
+   * Get the date a checked out item is due back.
+   *
+   * @param item The item.
+   * @return The due date, or empty if the item is not checked out or has no due date.
+   */
+  public Optional<Instant> getDueDate(MediaItem item) {
+    return Optional.ofNullable(this.dueDatesByItemId.get(item.getId()));
+  }
+
+  /**
+   * Get how long an item handed to the guest first in line for it is lent for.
+   *
+   * @return The loan period.
+   */
+  public Duration getLoanPeriod() {
+    return this.loanPeriod;
+  }
+
+  /**
+   * Set how long an item handed to the guest first in line for it is lent for.
+   *
+   * @param loanPeriod The loan period, which must be positive.
+   */
+  public void setLoanPeriod(Duration loanPeriod) {
+    if (loanPeriod.isNegative() || loanPeriod.isZero()) {
+      throw new IllegalArgumentException("Loan period must be positive");
+    }
+    this.loanPeriod = loanPeriod;
+  }
+
+  /**
+   * Get the checked out items that are overdue.
+   *
+   * @param now The current time.
+   * @return The items due before now, earliest first.
+   */
+  public List<MediaItem> getOverdueItems(Instant now) {
+    return this.getItemsDueBetween(Instant.MIN, now);
+  }
+
+  /**
+   * Get the checked out items due within a time range.
+   *
+   * <p>Items are found through an index ordered by due date, so this costs time proportional to
+   * the logarithm of the number of checkouts plus the number of items returned.
+   *
+   * @param from The start of the range, inclusive.
+   * @param to The end of the range, exclusive.
+   * @return The items due in the range, earliest first.
+   */
+  public List<MediaItem> getItemsDueBetween(Instant from, Instant to) {
+    List<MediaItem> items = new ArrayList<>();
+    for (DueDate dueDate : this.dueDatesBetween(from, to)) {
+      MediaItem item = this.itemsById.get(dueDate.itemId());
+      if (item != null) {
+        items.add(item);
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Report the items that have become overdue since the previous sweep.
+   *
+   * <p>Each overdue item is reported to the listeners once, through {@link
+   * LibraryListener#onMediaItemOverdue}, by the first sweep after its due date passes. Items
+   * checked out with a due date before the previous sweep are not reported. A listener that throws
+   * is logged and skipped, so it neither stops the other listeners nor repeats the sweep.
+   *
+   * @param now The current time.
+   * @return The items that have become overdue, earliest first.
+   */
+  public List<MediaItem> sweepOverdueItems(Instant now) {
+    synchronized (this.overdueSweepLock) {
+      if (!now.isAfter(this.overdueSweptUntil)) {
+        return List.of();
+      }
+      List<MediaItem> overdue = new ArrayList<>();
+      for (DueDate dueDate : this.dueDatesBetween(this.overdueSweptUntil, now)) {
+        MediaItem item = this.itemsById.get(dueDate.itemId());
+        if (item == null) {
+          continue;
+        }
+        overdue.add(item);
+        this.notifyOverdue(item, dueDate.dueDate());
+      }
+      this.overdueSweptUntil = now;
+      return overdue;
+    }
+  }
+
+  private void notifyOverdue(MediaItem item, Instant dueDate) {
+    for (LibraryListener listener : this.listeners) {
+      try {
+        listener.onMediaItemOverdue(item, dueDate);
+      } catch (RuntimeException e) {
+        logger.warn("Listener failed to handle item {} becoming overdue", item.getId(), e);
+      }
+    }
+  }
+
+  private NavigableSet<DueDate> dueDatesBetween(Instant from, Instant to) {
+    return this.dueDates.subSet(DueDate.first(from), true, DueDate.first(to), false);
   }
 
   /**
@@ -262,27 +1144,253 @@ public class Library {
     return this.checkedOutItemsByGuest.get(guest.getId());
   }
 
+  /**
+   * Register a listener to be told about every change made to the library from now on.
+   *
+   * @param listener The listener to add.
+   */
+  public void addListener(LibraryListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Stop telling a listener about changes to the library.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeListener(LibraryListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Run an action while no change to the library is in progress.
+   *
+   * <p>Every change either completes before the action starts or waits until it has finished, so
+   * the action sees a state that no change has partly applied. All other changes are blocked in
+   * the meantime, so the action should be short.
+   *
+   * @param action The action to run.
+   * @return The result of the action.
+   */
+  public <T> T whileChangesPaused(Supplier<T> action) {
+    // Taking every stripe in index order matches the order used by lockAll.
+    List<Lock> acquired = new ArrayList<>(this.locks.size());
+    try {
+      for (int i = 0; i < this.locks.size(); i++) {
+        Lock lock = this.locks.getAt(i);
+        lock.lock();
+        acquired.add(lock);
+      }
+      return action.get();
+    } finally {
+      unlockAll(acquired);
+    }
+  }
+
+  /**
+   * Get the live statistics of the library.
+   *
+   * @return The library statistics.
+   */
+  public LibraryStats getStats() {
+    return this.stats;
+  }
+
   /**
    * Get a snapshot of the library info.
    *
+   * <p>The snapshot is immutable. It is backed by persistent maps that each change updates by
+   * copying only the path to what it touched, so taking a snapshot never copies the library and
+   * repeated calls between changes return the same instance. Each change is reflected entirely or
+   * not at all.
+   *
    * @return The library info.
    */
   public LibraryInfo getInfo() {
-    Map<UUID, Set<MediaItem>> itemsByGuest =
-        this.checkedOutItemsByGuest.entrySet().stream()
-            .collect(
-                HashMap::new,
-                (map, entry) ->
-                    map.put(
-                        entry.getKey(),
-                        Collections.unmodifiableSet(new HashSet<>(entry.getValue()))),
-                HashMap::putAll);
-    return LibraryInfo.builder()
-        .id(this.id)
-        .items(Collections.unmodifiableSet(new HashSet<>(this.itemsById.values())))
-        .guests(Collections.unmodifiableSet(new HashSet<>(this.guestsById.values())))
-        .checkedOutItemsByGuest(Collections.unmodifiableMap(itemsByGuest))
-        .build();
+    this.infoLock.lock();
+    try {
+      if (this.applyInfoChanges() || this.info == null) {
+        this.info = this.infoView.toInfo(this.id);
+      }
+      return this.info;
+    } finally {
+      this.infoLock.unlock();
+    }
+  }
+
+  /**
+   * Queue a change to the persistent view behind {@link #getInfo}. Must be called with the stripes
+   * of everything the change touches held, so changes to the same item or guest queue in the order
+   * they are applied. Each change is queued as one update, so a snapshot never sees part of one.
+   */
+  private void recordInfoChange(UnaryOperator<InfoView> change) {
+    this.infoChanges.add(change);
+    // Fold the queue in now and then, so it stays short even if nobody asks for the info.
+    if (this.pendingInfoChanges.incrementAndGet() > MAX_PENDING_INFO_CHANGES
+        && this.infoLock.tryLock()) {
+      try {
+        this.applyInfoChanges();
+      } finally {
+        this.infoLock.unlock();
+      }
+    }
+  }
+
+  /** Apply the queued changes to the view. Must be called holding the info lock. */
+  private boolean applyInfoChanges() {
+    boolean changed = false;
+    for (UnaryOperator<InfoView> change = this.infoChanges.poll();
+        change != null;
+        change = this.infoChanges.poll()) {
+      this.pendingInfoChanges.decrementAndGet();
+      this.infoView = change.apply(this.infoView);
+      changed = true;
+    }
+    return changed;
+  }
+
+  /** Where a returned item was handed on to, and when it is due back from there. */
+  private record HandOff(UUID guestId, Instant dueDate) {}
+
+  /** The contents of the library as persistent maps, which {@link LibraryInfo} is a view of. */
+  private record InfoView(
+      PersistentHashMap<UUID, MediaItem> items,
+      PersistentHashMap<UUID, LibraryGuest> guests,
+      PersistentHashMap<UUID, PersistentHashMap<UUID, MediaItem>> checkedOutItemsByGuest,
+      PersistentHashMap<UUID, Instant> dueDatesByItemId) {
+
+    static final InfoView EMPTY =
+        new InfoView(
+            PersistentHashMap.empty(),
+            PersistentHashMap.empty(),
+            PersistentHashMap.empty(),
+            PersistentHashMap.empty());
+
+    InfoView withItem(MediaItem item) {
+      return new InfoView(
+          items.with(item.getId(), item), guests, checkedOutItemsByGuest, dueDatesByItemId);
+    }
+
+    InfoView withItems(Collection<MediaItem> added) {
+      return new InfoView(
+          items.withAll(added, MediaItem::getId), guests, checkedOutItemsByGuest, dueDatesByItemId);
+    }
+
+    InfoView withoutItem(UUID itemId) {
+      return new InfoView(items.without(itemId), guests, checkedOutItemsByGuest, dueDatesByItemId);
+    }
+
+    /** Add or replace a guest, who starts with nothing checked out. */
+    InfoView withGuest(LibraryGuest guest) {
+      return new InfoView(
+          items,
+          guests.with(guest.getId(), guest),
+          checkedOutItemsByGuest.with(guest.getId(), PersistentHashMap.empty()),
+          dueDatesByItemId);
+    }
+
+    InfoView withoutGuest(UUID guestId) {
+      return new InfoView(
+          items,
+          guests.without(guestId),
+          checkedOutItemsByGuest.without(guestId),
+          dueDatesByItemId);
+    }
+
+    InfoView withCheckout(UUID guestId, MediaItem item, Instant dueDate) {
+      PersistentHashMap<UUID, MediaItem> checkedOut = checkedOutBy(guestId);
+      return new InfoView(
+          items,
+          guests,
+          checkedOutItemsByGuest.with(guestId, checkedOut.with(item.getId(), item)),
+          dueDate != null ? dueDatesByItemId.with(item.getId(), dueDate) : dueDatesByItemId);
+    }
+
+    InfoView withoutCheckout(UUID guestId, UUID itemId) {
+      PersistentHashMap<UUID, MediaItem> checkedOut = checkedOutBy(guestId);
+      return new InfoView(
+          items,
+          guests,
+          checkedOutItemsByGuest.with(guestId, checkedOut.without(itemId)),
+          dueDatesByItemId.without(itemId));
+    }
+
+    private PersistentHashMap<UUID, MediaItem> checkedOutBy(UUID guestId) {
+      PersistentHashMap<UUID, MediaItem> checkedOut = checkedOutItemsByGuest.get(guestId);
+      return checkedOut != null ? checkedOut : PersistentHashMap.empty();
+    }
+
+    LibraryInfo toInfo(String id) {
+      return LibraryInfo.builder()
+          .id(id)
+          .items(items.valueSet(value -> value instanceof MediaItem item ? item.getId() : null))
+          .guests(
+              guests.valueSet(value -> value instanceof LibraryGuest guest ? guest.getId() : null))
+          .checkedOutItemsByGuest(
+              checkedOutItemsByGuest.asMap(
+                  checkedOut ->
+                      checkedOut.valueSet(
+                          value -> value instanceof MediaItem item ? item.getId() : null)))
+          .dueDatesByItemId(dueDatesByItemId.asMap())
+          .build();
+    }
+  }
+
+  /** The due date of a checked out item, ordered by date and then by item id. */
+  private record DueDate(Instant dueDate, UUID itemId) implements Comparable<DueDate> {
+
+    private static final UUID FIRST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    /** The key ordered before every item due at the given instant. */
+    static DueDate first(Instant dueDate) {
+      return new DueDate(dueDate, FIRST_ID);
+    }
+
+    @Override
+    public int compareTo(DueDate other) {
+      int byDate = this.dueDate.compareTo(other.dueDate);
+      return byDate != 0 ? byDate : this.itemId.compareTo(other.itemId);
+    }
+  }
+
+  /**
+   * Acquire the locks guarding the given item or guest ids.
+   *
+   * <p>Locks are always taken in stripe order, so callers locking several ids cannot deadlock.
+   *
+   * @param ids The ids to lock.
+   * @return The acquired locks, to be passed to {@link #unlockAll}.
+   */
+  private Iterable<Lock> lockAll(UUID... ids) {
+    Iterable<Lock> acquired = this.locks.bulkGet(Arrays.asList(ids));
+    acquired.forEach(Lock::lock);
+    return acquired;
+  }
+
+  /**
+   * Acquire the locks guarding many ids, taking each stripe only once.
+   *
+   * @param ids The ids to lock.
+   * @return The acquired locks, to be passed to {@link #unlockAll}.
+   */
+  private Iterable<Lock> lockAll(Collection<UUID> ids) {
+    // bulkGet returns the stripes in order, so dropping repeats keeps the order deadlock-free.
+    Iterable<Lock> acquired = ImmutableSet.copyOf(this.locks.bulkGet(ids));
+    acquired.forEach(Lock::lock);
+    return acquired;
+  }
+
+  private static List<UUID> idsOf(LibraryGuest guest, Collection<? extends MediaItem> items) {
+    List<UUID> ids = new ArrayList<>(items.size() + 1);
+    ids.add(guest.getId());
+    for (MediaItem item : items) {
+      ids.add(item.getId());
+    }
+    return ids;
+  }
+
+  private static void unlockAll(Iterable<Lock> acquired) {
+    acquired.forEach(Lock::unlock);
   }
 
   @Override
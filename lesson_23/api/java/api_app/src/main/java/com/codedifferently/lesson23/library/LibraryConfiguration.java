@@ -1,8 +1,17 @@
 package com.codedifferently.lesson23.library;
 
+import com.codedifferently.lesson23.factory.LibraryCheckoutPersister;
 import com.codedifferently.lesson23.factory.LibraryDbDataLoader;
 import com.codedifferently.lesson23.factory.LibraryFactory;
+import com.codedifferently.lesson23.factory.LibraryJournal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,7 +19,41 @@ import org.springframework.context.annotation.Configuration;
 public class LibraryConfiguration {
 
   @Bean
-  public Library getDefaultLibrary(LibraryDbDataLoader loader) throws IOException {
-    return LibraryFactory.createWithLoader(loader);
+  @ConditionalOnProperty("library.journal.directory")
+  public LibraryJournal getLibraryJournal(@Value("${library.journal.directory}") Path directory) {
+    return new LibraryJournal(directory);
+  }
+
+  @Bean
+  public Library getDefaultLibrary(
+      LibraryDbDataLoader loader,
+      ObjectProvider<LibraryJournal> journal,
+      ObjectProvider<LibraryCheckoutPersister> persister)
+      throws IOException {
+    LibraryJournal libraryJournal = journal.getIfAvailable();
+    // The database only seeds the first snapshot; after that the journal is the source of truth.
+    Library library =
+        libraryJournal != null
+            ? libraryJournal.recover(loader)
+            : LibraryFactory.createWithLoader(loader);
+    persister.ifAvailable(writer -> writer.attach(library));
+    return library;
+  }
+
+  @Bean
+  public MeterBinder getLibrarySearchCacheMetrics(Library library) {
+    LibraryStats stats = library.getStats();
+    return registry -> {
+      FunctionCounter.builder(
+              "library.search.cache.requests", stats, LibraryStats::getSearchCacheHitCount)
+          .tag("result", "hit")
+          .register(registry);
+      FunctionCounter.builder(
+              "library.search.cache.requests", stats, LibraryStats::getSearchCacheMissCount)
+          .tag("result", "miss")
+          .register(registry);
+      Gauge.builder("library.search.cache.hit.ratio", stats, LibraryStats::getSearchCacheHitRatio)
+          .register(registry);
+    };
   }
 }
@@ -1,5 +1,6 @@
 package com.codedifferently.lesson23.library;
 
+import java.time.Instant;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -18,4 +19,5 @@ public class LibraryInfo {
   public Set<MediaItem> items;
   public Set<LibraryGuest> guests;
   public Map<UUID, Set<MediaItem>> checkedOutItemsByGuest;
+  public Map<UUID, Instant> dueDatesByItemId;
 }
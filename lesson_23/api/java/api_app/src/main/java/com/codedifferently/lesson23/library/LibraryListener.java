@@ -0,0 +1,94 @@
+package com.codedifferently.lesson23.library;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Observes the changes made to a library.
+ *
+ * <p>Each method is called after the change has been validated but before it is applied, while
+ * the library holds the locks of the items and guests involved. Changes to the same item or guest
+ * are therefore reported in the order they are applied. If a method throws, the change is not
+ * applied and the exception propagates to the caller.
+ */
+public interface LibraryListener {
+
+  /**
+   * Called when an item is about to be added.
+   *
+   * @param item The item being added.
+   */
+  public default void onMediaItemAdded(MediaItem item) {}
+
+  /**
+   * Called when a batch of items is about to be added by {@link Library#addMediaItems}. If this
+   * throws, none of the items are added. By default, reports each item to {@link
+   * #onMediaItemAdded}.
+   *
+   * @param items The items being added, in order.
+   */
+  public default void onMediaItemsAdded(Collection<? extends MediaItem> items) {
+    for (MediaItem item : items) {
+      onMediaItemAdded(item);
+    }
+  }
+
+  /**
+   * Called when an item is about to be removed.
+   *
+   * @param item The item being removed.
+   */
+  public default void onMediaItemRemoved(MediaItem item) {}
+
+  /**
+   * Called when a guest is about to be added.
+   *
+   * @param guest The guest being added.
+   */
+  public default void onLibraryGuestAdded(LibraryGuest guest) {}
+
+  /**
+   * Called when a guest is about to be removed.
+   *
+   * @param guest The guest being removed.
+   */
+  public default void onLibraryGuestRemoved(LibraryGuest guest) {}
+
+  /**
+   * Called when an item is about to be checked out.
+   *
+   * @param item The item being checked out.
+   * @param guest The guest checking out the item.
+   * @param dueDate When the item is due back, or null if it is never overdue.
+   */
+  public default void onMediaItemCheckedOut(MediaItem item, LibraryGuest guest, Instant dueDate) {}
+
+  /**
+   * Called when an item is about to be checked in.
+   *
+   * @param item The item being checked in.
+   * @param guest The guest returning the item.
+   */
+  public default void onMediaItemCheckedIn(MediaItem item, LibraryGuest guest) {}
+
+  /**
+   * Called after a returned item has been checked out to the guest first in line for it. Unlike
+   * the other methods, this reports a change already applied and is called asynchronously, without
+   * holding any locks; the checkout itself was reported through {@link #onMediaItemCheckedOut}.
+   * Notifications are delivered one at a time on a thread owned by the library, and an exception
+   * thrown here is logged rather than propagated.
+   *
+   * @param item The item that was held.
+   * @param guest The guest the item is now checked out to.
+   */
+  public default void onHoldFulfilled(MediaItem item, LibraryGuest guest) {}
+
+  /**
+   * Called by {@link Library#sweepOverdueItems} when a checked out item has become overdue. Unlike
+   * the other methods, this reports no change and is called without holding any locks.
+   *
+   * @param item The overdue item.
+   * @param dueDate When the item was due back.
+   */
+  public default void onMediaItemOverdue(MediaItem item, Instant dueDate) {}
+}
@@ -0,0 +1,65 @@
+package com.codedifferently.lesson23.library;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Periodically sweeps the library for items that have become overdue, so that its listeners hear
+ * about each one shortly after its due date passes.
+ */
+@Service
+@ConditionalOnProperty(
+    name = "library.overdue-sweep.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public final class LibraryOverdueSweeper {
+
+  private static final Logger logger = LoggerFactory.getLogger(LibraryOverdueSweeper.class);
+
+  static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+
+  @Autowired private Library library;
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          task -> {
+            var thread = new Thread(task, "library-overdue-sweeper");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @PostConstruct
+  void start() {
+    scheduler.scheduleWithFixedDelay(
+        this::sweep, 0, SWEEP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    scheduler.shutdown();
+  }
+
+  private void sweep() {
+    Instant now = Instant.now();
+    try {
+      library.sweepOverdueItems(now);
+    } catch (RuntimeException e) {
+      // A failed sweep must not cancel the schedule; the next sweep retries the same items.
+      logger.warn(
+          "Failed to sweep overdue items with {} items overdue; retrying in {}",
+          library.getOverdueItems(now).size(),
+          SWEEP_INTERVAL,
+          e);
+    }
+  }
+}
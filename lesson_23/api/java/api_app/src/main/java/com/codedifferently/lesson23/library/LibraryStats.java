@@ -0,0 +1,250 @@
+package com.codedifferently.lesson23.library;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters describing a library.
+ *
+ * <p>The library updates the counters as items and guests are added, removed, checked out and
+ * checked in, so reading them never scans the library.
+ */
+public class LibraryStats {
+
+  private final Map<MediaType, LongAdder> itemCountsByType = new EnumMap<>(MediaType.class);
+  private final LongAdder checkedOutCount = new LongAdder();
+  private final LongAdder guestCount = new LongAdder();
+  private final LongAdder librarianCount = new LongAdder();
+  private final Map<UUID, Integer> checkoutsByGuest = new ConcurrentHashMap<>();
+  private final LongAdder searchCacheHits = new LongAdder();
+  private final LongAdder searchCacheMisses = new LongAdder();
+
+  LibraryStats() {
+    for (MediaType type : MediaType.values()) {
+      this.itemCountsByType.put(type, new LongAdder());
+    }
+  }
+
+  /**
+   * Get the number of items in the library.
+   *
+   * @return The number of items.
+   */
+  public long getItemCount() {
+    return this.itemCountsByType.values().stream().mapToLong(LongAdder::sum).sum();
+  }
+
+  /**
+   * Get the number of items of the given type in the library.
+   *
+   * @param type The type of item to count.
+   * @return The number of items of the given type.
+   */
+  public long getItemCount(MediaType type) {
+    return this.itemCountsByType.get(type).sum();
+  }
+
+  /**
+   * Get the number of items of each type in the library.
+   *
+   * @return The number of items keyed by type.
+   */
+  public Map<MediaType, Long> getItemCountsByType() {
+    Map<MediaType, Long> counts = new EnumMap<>(MediaType.class);
+    this.itemCountsByType.forEach((type, count) -> counts.put(type, count.sum()));
+    return Collections.unmodifiableMap(counts);
+  }
+
+  /**
+   * Get the number of items currently checked out.
+   *
+   * @return The number of checked out items.
+   */
+  public long getCheckedOutCount() {
+    return this.checkedOutCount.sum();
+  }
+
+  /**
+   * Get the number of guests registered with the library, including librarians.
+   *
+   * @return The number of guests.
+   */
+  public long getGuestCount() {
+    return this.guestCount.sum();
+  }
+
+  /**
+   * Get the number of librarians registered with the library.
+   *
+   * @return The number of librarians.
+   */
+  public long getLibrarianCount() {
+    return this.librarianCount.sum();
+  }
+
+  /**
+   * Get the number of items the given guest has checked out.
+   *
+   * @param guestId The id of the guest.
+   * @return The number of items checked out by the guest.
+   */
+  public int getCheckoutCount(UUID guestId) {
+    return this.checkoutsByGuest.getOrDefault(guestId, 0);
+  }
+
+  /**
+   * Get the number of items checked out by each guest with at least one checkout.
+   *
+   * @return A live, read-only view of the checkout counts keyed by guest id.
+   */
+  public Map<UUID, Integer> getCheckoutsByGuest() {
+    return Collections.unmodifiableMap(this.checkoutsByGuest);
+  }
+
+  /**
+   * Get the number of guests with at least one item checked out.
+   *
+   * @return The number of borrowers.
+   */
+  public int getBorrowerCount() {
+    return this.checkoutsByGuest.size();
+  }
+
+  /**
+   * Get the guests with the most items checked out.
+   *
+   * <p>Only the given number of guests is kept while walking the counts, so this costs time
+   * proportional to the number of borrowers and memory proportional to the limit.
+   *
+   * @param limit The most guests to return.
+   * @return The checkout counts of the top guests keyed by guest id, highest count first and ties
+   *     broken by id.
+   */
+  public Map<UUID, Integer> getTopBorrowers(int limit) {
+    if (limit <= 0) {
+      return Map.of();
+    }
+    Comparator<Map.Entry<UUID, Integer>> byCount =
+        Map.Entry.<UUID, Integer>comparingByValue()
+            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+    // A min-heap of the best entries so far, whose head is the first to be displaced.
+    PriorityQueue<Map.Entry<UUID, Integer>> top = new PriorityQueue<>(limit + 1, byCount);
+    for (Map.Entry<UUID, Integer> entry : this.checkoutsByGuest.entrySet()) {
+      if (top.size() < limit) {
+        top.add(Map.entry(entry.getKey(), entry.getValue()));
+      } else if (byCount.compare(entry, top.peek()) > 0) {
+        top.poll();
+        top.add(Map.entry(entry.getKey(), entry.getValue()));
+      }
+    }
+    List<Map.Entry<UUID, Integer>> sorted = new ArrayList<>(top);
+    sorted.sort(byCount.reversed());
+    Map<UUID, Integer> borrowers = new LinkedHashMap<>();
+    for (Map.Entry<UUID, Integer> entry : sorted) {
+      borrowers.put(entry.getKey(), entry.getValue());
+    }
+    return Collections.unmodifiableMap(borrowers);
+  }
+
+  /**
+   * Get the number of searches answered from the search result cache.
+   *
+   * @return The number of cache hits.
+   */
+  public long getSearchCacheHitCount() {
+    return this.searchCacheHits.sum();
+  }
+
+  /**
+   * Get the number of searches that had to run because no current results were cached.
+   *
+   * @return The number of cache misses.
+   */
+  public long getSearchCacheMissCount() {
+    return this.searchCacheMisses.sum();
+  }
+
+  /**
+   * Get the share of searches answered from the search result cache.
+   *
+   * @return The hit ratio between 0 and 1, or 0 if nothing has been searched yet.
+   */
+  public double getSearchCacheHitRatio() {
+    long hits = this.getSearchCacheHitCount();
+    long total = hits + this.getSearchCacheMissCount();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  void itemAdded(MediaItem item) {
+    this.itemCountsByType.get(item.getType()).increment();
+  }
+
+  void itemRemoved(MediaItem item) {
+    this.itemCountsByType.get(item.getType()).decrement();
+  }
+
+  void guestAdded(LibraryGuest guest) {
+    this.guestCount.increment();
+    if (guest instanceof Librarian) {
+      this.librarianCount.increment();
+    }
+  }
+
+  void guestRemoved(LibraryGuest guest) {
+    this.guestCount.decrement();
+    if (guest instanceof Librarian) {
+      this.librarianCount.decrement();
+    }
+  }
+
+  void itemCheckedOut(UUID guestId) {
+    this.itemsCheckedOut(guestId, 1);
+  }
+
+  void itemsCheckedOut(UUID guestId, int count) {
+    this.checkedOutCount.add(count);
+    this.checkoutsByGuest.merge(guestId, count, Integer::sum);
+  }
+
+  void itemCheckedIn(UUID guestId) {
+    this.itemsCheckedIn(guestId, 1);
+  }
+
+  void itemsCheckedIn(UUID guestId, int count) {
+    this.checkedOutCount.add(-count);
+    // Drop guests whose count reaches zero so the map only holds active borrowers.
+    this.checkoutsByGuest.merge(
+        guestId, -count, (current, delta) -> current + delta == 0 ? null : current + delta);
+  }
+
+  void searchCacheHit() {
+    this.searchCacheHits.increment();
+  }
+
+  void searchCacheMiss() {
+    this.searchCacheMisses.increment();
+  }
+
+  @Override
+  public String toString() {
+    return "LibraryStats{"
+        + "itemCountsByType="
+        + getItemCountsByType()
+        + ", checkedOutCount="
+        + getCheckedOutCount()
+        + ", guestCount="
+        + getGuestCount()
+        + ", librarianCount="
+        + getLibrarianCount()
+        + '}';
+  }
+}
@@ -2,11 +2,11 @@ package com.codedifferently.lesson23.library;
 
 import com.codedifferently.lesson23.library.exceptions.LibraryNotSetException;
 import com.codedifferently.lesson23.library.exceptions.WrongLibraryException;
-import com.codedifferently.lesson23.library.search.Searchable;
+import com.codedifferently.lesson23.library.search.Indexable;
 import java.util.UUID;
 
 /** Represents a media item. */
-public interface MediaItem extends Searchable {
+public interface MediaItem extends Indexable {
 
   /**
    * Get the type of the media item.
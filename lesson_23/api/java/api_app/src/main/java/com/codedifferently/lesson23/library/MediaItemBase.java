@@ -2,7 +2,10 @@ package com.codedifferently.lesson23.library;
 
 import com.codedifferently.lesson23.library.exceptions.LibraryNotSetException;
 import com.codedifferently.lesson23.library.exceptions.WrongLibraryException;
+import com.codedifferently.lesson23.library.search.CompiledQuery;
 import com.codedifferently.lesson23.library.search.SearchCriteria;
+import com.codedifferently.lesson23.library.search.TextNormalizer;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -12,10 +15,12 @@ public abstract class MediaItemBase implements MediaItem {
   private Library library;
   private final UUID id;
   private final String title;
+  private final String normalizedTitle;
 
   public MediaItemBase(UUID id, String title) {
     this.id = id;
     this.title = title;
+    this.normalizedTitle = TextNormalizer.normalize(title);
   }
 
   @Override
@@ -28,6 +33,17 @@ public abstract class MediaItemBase implements MediaItem {
     return title;
   }
 
+  @Override
+  public String getNormalizedTitle() {
+    return normalizedTitle;
+  }
+
+  @Override
+  public List<String> getNormalizedAuthors() {
+    // Items have no authors unless a subclass says otherwise, as Book does.
+    return List.of();
+  }
+
   @Override
   public void setLibrary(Library library) throws WrongLibraryException {
     if (library != null && !library.hasMediaItem(this)) {
@@ -50,28 +66,14 @@ public abstract class MediaItemBase implements MediaItem {
     return true;
   }
 
-  /**
-   * Check if the media item matches the given author.
-   *
-   * @param author The author to check.
-   * @return True if the media item matches the author, false otherwise.
-   */
-  protected boolean matchesAuthor(String author) {
-    return false;
+  @Override
+  public boolean matches(SearchCriteria query) {
+    return matches(CompiledQuery.compile(query));
   }
 
   @Override
-  public boolean matches(SearchCriteria query) {
-    if (query.id != null && !this.getId().toString().equalsIgnoreCase(query.id)) {
-      return false;
-    }
-    if (query.title != null && !this.getTitle().toLowerCase().contains(query.title.toLowerCase())) {
-      return false;
-    }
-    if (query.type != null && !this.getType().toString().equalsIgnoreCase(query.type)) {
-      return false;
-    }
-    return query.author == null || this.matchesAuthor(query.author);
+  public boolean matches(CompiledQuery query) {
+    return query.matches(this);
   }
 
   @Override
@@ -0,0 +1,82 @@
+package com.codedifferently.lesson23.library;
+
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.function.Function;
+
+/** The orders in which library items can be paged through. Ties are broken by item id. */
+public enum MediaItemOrder {
+  ID("id", item -> ""),
+  TITLE("title", MediaItem::getNormalizedTitle),
+  TYPE("type", item -> item.getType().getType());
+
+  private final String name;
+  private final Function<MediaItem, String> sortKey;
+  private final Comparator<MediaItem> comparator;
+
+  MediaItemOrder(String name, Function<MediaItem, String> sortKey) {
+    this.name = name;
+    this.sortKey = sortKey;
+    this.comparator = Comparator.comparing(sortKey).thenComparing(MediaItem::getId);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get a comparator that sorts items in this order.
+   *
+   * @return The comparator.
+   */
+  public Comparator<MediaItem> comparator() {
+    return comparator;
+  }
+
+  /**
+   * Get the position of an item in this order.
+   *
+   * @param item The item.
+   * @return The position of the item.
+   */
+  public Position positionOf(MediaItem item) {
+    return new Position(sortKey.apply(item), item.getId());
+  }
+
+  /**
+   * Check whether an item sorts after the given position.
+   *
+   * @param item The item to check.
+   * @param position The position to compare against.
+   * @return True if the item comes after the position, false otherwise.
+   */
+  public boolean isAfter(MediaItem item, Position position) {
+    int byKey = sortKey.apply(item).compareTo(position.key());
+    return byKey != 0 ? byKey > 0 : item.getId().compareTo(position.id()) > 0;
+  }
+
+  public static MediaItemOrder fromString(String order) {
+    for (MediaItemOrder mediaItemOrder : MediaItemOrder.values()) {
+      if (mediaItemOrder.name.equalsIgnoreCase(order)) {
+        return mediaItemOrder;
+      }
+    }
+    throw new IllegalArgumentException("Invalid sort order: " + order);
+  }
+
+  /**
+   * The position of an item within an order, used to resume paging after it. Positions compare in
+   * the same order as the items they were taken from.
+   *
+   * @param key The sort key of the item.
+   * @param id The id of the item.
+   */
+  public record Position(String key, UUID id) implements Comparable<Position> {
+
+    @Override
+    public int compareTo(Position other) {
+      int byKey = key.compareTo(other.key);
+      return byKey != 0 ? byKey : id.compareTo(other.id);
+    }
+  }
+}
@@ -0,0 +1,589 @@
+package com.codedifferently.lesson23.library;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An immutable hash map whose updates return a new map sharing most of its structure.
+ *
+ * <p>Entries live in a hash array mapped trie: each level of the tree is indexed by five bits of
+ * the key's hash, and a node stores only the slots in use, behind a bitmap. An update copies just
+ * the nodes on the path to the changed entry, so it costs time and memory logarithmic in the size
+ * of the map while every earlier version stays intact and safe to read from any thread.
+ *
+ * @param <K> The type of key, which must not be null.
+ * @param <V> The type of value.
+ */
+final class PersistentHashMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  private static final int MAX_DEPTH = 8;
+  private static final PersistentHashMap<?, ?> EMPTY =
+      new PersistentHashMap<>(new BitmapNode(0, new Object[0]), 0);
+
+  private final Node root;
+  private final int size;
+
+  private PersistentHashMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Get the empty map.
+   *
+   * @return The empty map.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Get the value of a key.
+   *
+   * @param key The key.
+   * @return The value, or null if the key is not in the map.
+   */
+  @SuppressWarnings("unchecked")
+  V get(Object key) {
+    return key == null ? null : (V) root.find(0, key.hashCode(), key);
+  }
+
+  boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Get a map with a key set to a value.
+   *
+   * @param key The key.
+   * @param value The value, which must not be null.
+   * @return The updated map, or this map if the key already had the value.
+   */
+  PersistentHashMap<K, V> with(K key, V value) {
+    Objects.requireNonNull(value);
+    boolean[] added = new boolean[1];
+    Node updated = root.put(0, key.hashCode(), key, value, added);
+    return updated == root ? this : new PersistentHashMap<>(updated, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Get a map with many values added, each under the key it knows itself by. Later values win over
+   * earlier ones with the same key, and over the values already in the map.
+   *
+   * <p>A batch that is large next to the map is not added one entry at a time: the whole trie is
+   * rebuilt bottom up instead, which copies each node once.
+   *
+   * @param values The values to add, none of them null.
+   * @param keyOf Gets the key of a value.
+   * @return The updated map.
+   */
+  PersistentHashMap<K, V> withAll(
+      Collection<? extends V> values, Function<? super V, ? extends K> keyOf) {
+    if (values.size() < size / 8 + 16) {
+      PersistentHashMap<K, V> updated = this;
+      for (V value : values) {
+        updated = updated.with(keyOf.apply(value), value);
+      }
+      return updated;
+    }
+    int count = size + values.size();
+    Object[] keys = new Object[count];
+    Object[] stored = new Object[count];
+    int next = 0;
+    for (var iterator = new EntryIterator<K, V, V>(root, Function.identity());
+        iterator.hasNext(); ) {
+      Map.Entry<K, V> entry = iterator.next();
+      keys[next] = entry.getKey();
+      stored[next++] = entry.getValue();
+    }
+    for (V value : values) {
+      keys[next] = Objects.requireNonNull(keyOf.apply(value));
+      stored[next++] = Objects.requireNonNull(value);
+    }
+    // Ordering by the bit-reversed hash puts the entries under every node of the trie next to one
+    // another; ties keep their order, so later entries come after earlier ones.
+    int[] hashes = new int[count];
+    long[] order = new long[count];
+    for (int i = 0; i < count; i++) {
+      hashes[i] = keys[i].hashCode();
+      order[i] = (Integer.toUnsignedLong(Integer.reverse(hashes[i])) << 32) | i;
+    }
+    Arrays.parallelSort(order);
+    int[] sizeOut = new int[1];
+    Node built = build(order, 0, count, 0, hashes, keys, stored, sizeOut);
+    return new PersistentHashMap<>(built, sizeOut[0]);
+  }
+
+  /** Build the node for a run of entries that share the bits of the hash below the shift. */
+  private static Node build(
+      long[] order,
+      int from,
+      int to,
+      int shift,
+      int[] hashes,
+      Object[] keys,
+      Object[] values,
+      int[] size) {
+    // Runs come out in bit-reversed slot order, so gather them by slot before laying them out.
+    Object[] slotEntries = new Object[2 << BITS];
+    int bitmap = 0;
+    int start = from;
+    while (start < to) {
+      int slot = (hashes[(int) order[start]] >>> shift) & MASK;
+      int end = start + 1;
+      while (end < to && ((hashes[(int) order[end]] >>> shift) & MASK) == slot) {
+        end++;
+      }
+      bitmap |= 1 << slot;
+      int hash = hashes[(int) order[start]];
+      if (hashes[(int) order[end - 1]] != hash) {
+        slotEntries[2 * slot + 1] =
+            build(order, start, end, shift + BITS, hashes, keys, values, size);
+      } else {
+        Object[] sameHash = distinctEntries(order, start, end, keys, values);
+        size[0] += sameHash.length / 2;
+        if (sameHash.length == 2) {
+          // A lone entry sits in its parent's slot rather than in a node of its own.
+          slotEntries[2 * slot] = sameHash[0];
+          slotEntries[2 * slot + 1] = sameHash[1];
+        } else {
+          slotEntries[2 * slot + 1] = new CollisionNode(hash, sameHash);
+        }
+      }
+      start = end;
+    }
+    Object[] entries = new Object[2 * Integer.bitCount(bitmap)];
+    int next = 0;
+    for (int slot = 0; slot < 1 << BITS; slot++) {
+      if ((bitmap & (1 << slot)) != 0) {
+        entries[next++] = slotEntries[2 * slot];
+        entries[next++] = slotEntries[2 * slot + 1];
+      }
+    }
+    return new BitmapNode(bitmap, entries);
+  }
+
+  /** Get the entries of a run whose keys have the same hash, keeping the last of equal keys. */
+  private static Object[] distinctEntries(
+      long[] order, int from, int to, Object[] keys, Object[] values) {
+    Object[] entries = new Object[2 * (to - from)];
+    int length = 0;
+    for (int i = from; i < to; i++) {
+      int index = (int) order[i];
+      int existing = 0;
+      while (existing < length && !keys[index].equals(entries[existing])) {
+        existing += 2;
+      }
+      entries[existing] = keys[index];
+      entries[existing + 1] = values[index];
+      length = Math.max(length, existing + 2);
+    }
+    return length == entries.length ? entries : Arrays.copyOf(entries, length);
+  }
+
+  /**
+   * Get a map without a key.
+   *
+   * @param key The key.
+   * @return The updated map, or this map if the key was not in it.
+   */
+  PersistentHashMap<K, V> without(Object key) {
+    if (key == null) {
+      return this;
+    }
+    Node updated = root.remove(0, key.hashCode(), key);
+    if (updated == root) {
+      return this;
+    }
+    return updated == null ? empty() : new PersistentHashMap<>(updated, size - 1);
+  }
+
+  /**
+   * Get a read-only view of the map.
+   *
+   * @return A {@link Map} backed by this map.
+   */
+  Map<K, V> asMap() {
+    return asMap(Function.identity());
+  }
+
+  /**
+   * Get a read-only view of the map with each value seen through a function.
+   *
+   * @param view Converts a stored value into the value seen through the map.
+   * @return A {@link Map} backed by this map.
+   */
+  <W> Map<K, W> asMap(Function<? super V, ? extends W> view) {
+    return new MapView<>(this, view);
+  }
+
+  /**
+   * Get a read-only view of the values of the map, for values that know their own key.
+   *
+   * @param keyOf Gets the key an object would be stored under, or null if it cannot be a value.
+   * @return A {@link Set} backed by this map.
+   */
+  Set<V> valueSet(Function<Object, K> keyOf) {
+    return new ValueSetView<>(this, keyOf);
+  }
+
+  /**
+   * A node of the trie. Entries are stored in an array of key and value pairs, where a null key
+   * marks a value that is a child node.
+   */
+  private interface Node {
+
+    Object find(int shift, int hash, Object key);
+
+    Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+    /** Returns null when the node is left empty. */
+    Node remove(int shift, int hash, Object key);
+
+    Object[] entries();
+  }
+
+  /** A node holding the slots in use of 32, behind a bitmap of which ones those are. */
+  private static final class BitmapNode implements Node {
+
+    private final int bitmap;
+    private final Object[] entries;
+
+    BitmapNode(int bitmap, Object[] entries) {
+      this.bitmap = bitmap;
+      this.entries = entries;
+    }
+
+    @Override
+    public Object find(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int index = index(bit);
+      Object storedKey = entries[index];
+      Object stored = entries[index + 1];
+      if (storedKey == null) {
+        return ((Node) stored).find(shift + BITS, hash, key);
+      }
+      return key.equals(storedKey) ? stored : null;
+    }
+
+    @Override
+    public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+      int bit = bit(hash, shift);
+      int index = index(bit);
+      if ((bitmap & bit) == 0) {
+        added[0] = true;
+        Object[] copy = new Object[entries.length + 2];
+        System.arraycopy(entries, 0, copy, 0, index);
+        copy[index] = key;
+        copy[index + 1] = value;
+        System.arraycopy(entries, index, copy, index + 2, entries.length - index);
+        return new BitmapNode(bitmap | bit, copy);
+      }
+      Object storedKey = entries[index];
+      Object stored = entries[index + 1];
+      if (storedKey == null) {
+        Node child = ((Node) stored).put(shift + BITS, hash, key, value, added);
+        return child == stored ? this : withSlot(index, null, child);
+      }
+      if (key.equals(storedKey)) {
+        return stored == value ? this : withSlot(index, storedKey, value);
+      }
+      added[0] = true;
+      Node child = pair(shift + BITS, storedKey, stored, hash, key, value);
+      return withSlot(index, null, child);
+    }
+
+    @Override
+    public Node remove(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = index(bit);
+      Object storedKey = entries[index];
+      Object stored = entries[index + 1];
+      if (storedKey == null) {
+        Node child = ((Node) stored).remove(shift + BITS, hash, key);
+        if (child == stored) {
+          return this;
+        }
+        return child != null ? withSlot(index, null, child) : withoutSlot(bit, index);
+      }
+      return key.equals(storedKey) ? withoutSlot(bit, index) : this;
+    }
+
+    @Override
+    public Object[] entries() {
+      return entries;
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private Node withSlot(int index, Object key, Object value) {
+      Object[] copy = entries.clone();
+      copy[index] = key;
+      copy[index + 1] = value;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    private Node withoutSlot(int bit, int index) {
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] copy = new Object[entries.length - 2];
+      System.arraycopy(entries, 0, copy, 0, index);
+      System.arraycopy(entries, index + 2, copy, index, entries.length - index - 2);
+      return new BitmapNode(bitmap ^ bit, copy);
+    }
+
+    private static int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /** Build the node holding two entries whose keys share the bits of the hash used so far. */
+    private static Node pair(
+        int shift, Object firstKey, Object firstValue, int hash, Object key, Object value) {
+      int firstHash = firstKey.hashCode();
+      if (firstHash == hash) {
+        return new CollisionNode(hash, new Object[] {firstKey, firstValue, key, value});
+      }
+      boolean[] added = new boolean[1];
+      return new BitmapNode(0, new Object[0])
+          .put(shift, firstHash, firstKey, firstValue, added)
+          .put(shift, hash, key, value, added);
+    }
+  }
+
+  /** A node holding the entries whose keys have exactly the same hash. */
+  private static final class CollisionNode implements Node {
+
+    private final int hash;
+    private final Object[] entries;
+
+    CollisionNode(int hash, Object[] entries) {
+      this.hash = hash;
+      this.entries = entries;
+    }
+
+    @Override
+    public Object find(int shift, int hash, Object key) {
+      int index = indexOf(hash, key);
+      return index < 0 ? null : entries[index + 1];
+    }
+
+    @Override
+    public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+      if (hash != this.hash) {
+        // Push this node one level down, next to the new entry.
+        Node parent =
+            new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[] {null, this});
+        return parent.put(shift, hash, key, value, added);
+      }
+      int index = indexOf(hash, key);
+      if (index >= 0) {
+        if (entries[index + 1] == value) {
+          return this;
+        }
+        Object[] copy = entries.clone();
+        copy[index + 1] = value;
+        return new CollisionNode(hash, copy);
+      }
+      added[0] = true;
+      Object[] copy = new Object[entries.length + 2];
+      System.arraycopy(entries, 0, copy, 0, entries.length);
+      copy[entries.length] = key;
+      copy[entries.length + 1] = value;
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    public Node remove(int shift, int hash, Object key) {
+      int index = indexOf(hash, key);
+      if (index < 0) {
+        return this;
+      }
+      if (entries.length == 2) {
+        return null;
+      }
+      Object[] copy = new Object[entries.length - 2];
+      System.arraycopy(entries, 0, copy, 0, index);
+      System.arraycopy(entries, index + 2, copy, index, entries.length - index - 2);
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    public Object[] entries() {
+      return entries;
+    }
+
+    private int indexOf(int hash, Object key) {
+      if (hash != this.hash) {
+        return -1;
+      }
+      for (int i = 0; i < entries.length; i += 2) {
+        if (key.equals(entries[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /** Walks the entries of a trie depth first. */
+  private static final class EntryIterator<K, V, W> implements Iterator<Map.Entry<K, W>> {
+
+    private final Function<? super V, ? extends W> view;
+    private final Object[][] stack = new Object[MAX_DEPTH][];
+    private final int[] positions = new int[MAX_DEPTH];
+    private int depth;
+
+    EntryIterator(Node root, Function<? super V, ? extends W> view) {
+      this.view = view;
+      stack[0] = root.entries();
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return depth >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, W> next() {
+      if (depth < 0) {
+        throw new NoSuchElementException();
+      }
+      Object[] entries = stack[depth];
+      int position = positions[depth];
+      positions[depth] += 2;
+      var entry =
+          new AbstractMap.SimpleImmutableEntry<K, W>(
+              (K) entries[position], view.apply((V) entries[position + 1]));
+      advance();
+      return entry;
+    }
+
+    /** Move to the next entry that is not a child node, or past the end. */
+    private void advance() {
+      while (depth >= 0) {
+        Object[] entries = stack[depth];
+        int position = positions[depth];
+        if (position == entries.length) {
+          depth--;
+        } else if (entries[position] == null) {
+          positions[depth] += 2;
+          depth++;
+          stack[depth] = ((Node) entries[position + 1]).entries();
+          positions[depth] = 0;
+        } else {
+          return;
+        }
+      }
+    }
+  }
+
+  private static final class MapView<K, V, W> extends AbstractMap<K, W> {
+
+    private final PersistentHashMap<K, V> map;
+    private final Function<? super V, ? extends W> view;
+
+    MapView(PersistentHashMap<K, V> map, Function<? super V, ? extends W> view) {
+      this.map = map;
+      this.view = view;
+    }
+
+    @Override
+    public W get(Object key) {
+      V value = map.get(key);
+      return value == null ? null : view.apply(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return map.size;
+    }
+
+    @Override
+    public Set<Entry<K, W>> entrySet() {
+      return new AbstractSet<>() {
+        @Override
+        public Iterator<Entry<K, W>> iterator() {
+          return new EntryIterator<>(map.root, view);
+        }
+
+        @Override
+        public int size() {
+          return map.size;
+        }
+      };
+    }
+  }
+
+  private static final class ValueSetView<K, V> extends AbstractSet<V> {
+
+    private final PersistentHashMap<K, V> map;
+    private final Function<Object, K> keyOf;
+
+    ValueSetView(PersistentHashMap<K, V> map, Function<Object, K> keyOf) {
+      this.map = map;
+      this.keyOf = keyOf;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+      K key = keyOf.apply(value);
+      return key != null && value.equals(map.get(key));
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      Iterator<Map.Entry<K, V>> entries = new EntryIterator<>(map.root, Function.<V>identity());
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return entries.hasNext();
+        }
+
+        @Override
+        public V next() {
+          return entries.next().getValue();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return map.size;
+    }
+  }
+}
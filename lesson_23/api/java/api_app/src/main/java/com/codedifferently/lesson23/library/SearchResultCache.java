@@ -0,0 +1,105 @@
+package com.codedifferently.lesson23.library;
+
+import com.codedifferently.lesson23.library.search.SearchCriteria;
+import com.codedifferently.lesson23.library.search.TextNormalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Caches the results of library searches, keyed by the normalized search criteria.
+ *
+ * <p>Every media type has a generation that moves whenever an item of that type is added or
+ * removed. An entry remembers the generations of the types its query can match, read before the
+ * search ran, and is only served while none of them has moved. A change to books therefore leaves
+ * cached searches for DVDs alone, and a search that raced with a change is never served afterwards.
+ *
+ * <p>Entries are weighed by their number of results and evicted by Caffeine's frequency-aware
+ * policy, so popular queries stay cached while one-off broad queries do not push them out.
+ */
+final class SearchResultCache {
+
+  /** The total number of results kept across all cached searches. */
+  static final long MAX_CACHED_RESULTS = 1_000_000;
+
+  private static final MediaType[] TYPES = MediaType.values();
+
+  private final Cache<SearchKey, Entry> entries =
+      Caffeine.newBuilder()
+          .maximumWeight(MAX_CACHED_RESULTS)
+          .weigher((SearchKey key, Entry entry) -> entry.results().size() + 1)
+          .build();
+  private final AtomicLongArray generations = new AtomicLongArray(TYPES.length);
+  private final LibraryStats stats;
+
+  SearchResultCache(LibraryStats stats) {
+    this.stats = stats;
+  }
+
+  /**
+   * Get the results of a search, running it if there are no current results for the query.
+   *
+   * @param query The query to search for.
+   * @param search Runs the search.
+   * @return The results of the search, which must not be modified.
+   */
+  Set<MediaItem> get(SearchCriteria query, Function<SearchCriteria, Set<MediaItem>> search) {
+    SearchKey key = SearchKey.of(query);
+    // Read the generations first, so that a change made during the search makes the entry stale.
+    long stamp = stampOf(key);
+    Entry entry = entries.getIfPresent(key);
+    if (entry != null && entry.stamp() == stamp) {
+      stats.searchCacheHit();
+      return entry.results();
+    }
+    stats.searchCacheMiss();
+    Set<MediaItem> results = search.apply(query);
+    entries.put(key, new Entry(stamp, results));
+    return results;
+  }
+
+  /**
+   * Make stale every cached search that could match items of the given type.
+   *
+   * <p>This must be called after the search engine reflects the change.
+   *
+   * @param type The type of item that was added or removed.
+   */
+  void invalidate(MediaType type) {
+    generations.incrementAndGet(type.ordinal());
+  }
+
+  /**
+   * Compute a stamp that changes whenever a type the query can match changes.
+   *
+   * <p>Generations only grow, so their sum changes whenever any of them does.
+   */
+  private long stampOf(SearchKey key) {
+    long stamp = 0;
+    for (MediaType type : TYPES) {
+      if (key.type() == null || type.toString().equalsIgnoreCase(key.type())) {
+        stamp += generations.get(type.ordinal());
+      }
+    }
+    return stamp;
+  }
+
+  /** Search criteria reduced to what decides the results, so equivalent queries share entries. */
+  private record SearchKey(String id, String title, String author, String type, int maxEdits) {
+
+    static SearchKey of(SearchCriteria query) {
+      return new SearchKey(
+          query.id != null ? query.id.toLowerCase(Locale.ROOT) : null,
+          query.title != null ? TextNormalizer.normalize(query.title) : null,
+          query.author != null ? TextNormalizer.normalize(query.author) : null,
+          query.type != null ? query.type.toLowerCase(Locale.ROOT) : null,
+          query.maxEdits != null ? query.maxEdits : 0);
+    }
+  }
+
+  /** The results of a search and the stamp of the generations they were computed from. */
+  private record Entry(long stamp, Set<MediaItem> results) {}
+}
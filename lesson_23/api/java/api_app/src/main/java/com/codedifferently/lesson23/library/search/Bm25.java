@@ -0,0 +1,75 @@
+package com.codedifferently.lesson23.library.search;
+
+/**
+ * The Okapi BM25 relevance formula.
+ *
+ * <p>A document scores the sum, over the query terms, of the term's inverse document frequency
+ * times its saturated frequency in the document. Frequencies are damped by {@link #K1} and
+ * normalized against the average field length by {@link #B}, so a term in a short title counts for
+ * more than the same term in a long one.
+ */
+final class Bm25 {
+
+  /** How quickly repeated occurrences of a term stop adding to the score. */
+  static final double K1 = 1.2;
+
+  /** How strongly the score is normalized by field length, from 0 (not at all) to 1 (fully). */
+  static final double B = 0.75;
+
+  private Bm25() {}
+
+  /**
+   * Compute the inverse document frequency of a term.
+   *
+   * @param documentCount The number of documents in the catalog.
+   * @param documentFrequency The number of documents containing the term.
+   * @return The weight of the term, which is always positive.
+   */
+  static double idf(int documentCount, int documentFrequency) {
+    return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+  }
+
+  /**
+   * Compute the saturated, length-normalized frequency of a term in a field.
+   *
+   * @param termFrequency The number of times the term occurs in the field.
+   * @param fieldLength The number of tokens in the field.
+   * @param averageFieldLength The average number of tokens in the field across the catalog.
+   * @return The weight to multiply the term's inverse document frequency by.
+   */
+  static double termWeight(int termFrequency, int fieldLength, double averageFieldLength) {
+    if (termFrequency == 0) {
+      return 0;
+    }
+    double norm = 1 - B + B * fieldLength / Math.max(averageFieldLength, 1);
+    return termFrequency * (K1 + 1) / (termFrequency + K1 * norm);
+  }
+
+  /**
+   * Count the tokens of normalized text that contain a term, the same way a search matches it.
+   * Field lengths are measured in tokens, so a token counts once however often the term repeats
+   * inside it.
+   *
+   * @param normalized The normalized text.
+   * @param term A normalized query term, made of letters and digits only.
+   * @return The number of tokens containing the term.
+   */
+  static int occurrences(String normalized, String term) {
+    int count = 0;
+    int at = normalized.indexOf(term);
+    while (at >= 0) {
+      count++;
+      // The term holds no separators, so this occurrence lies inside one token; skip past it.
+      int end = at + term.length();
+      while (end < normalized.length()) {
+        int codePoint = normalized.codePointAt(end);
+        if (!Character.isLetterOrDigit(codePoint)) {
+          break;
+        }
+        end += Character.charCount(codePoint);
+      }
+      at = normalized.indexOf(term, end);
+    }
+    return count;
+  }
+}
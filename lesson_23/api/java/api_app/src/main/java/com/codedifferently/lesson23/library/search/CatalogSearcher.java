@@ -3,21 +3,47 @@ package com.codedifferently.lesson23.library.search;
 import java.util.Collection;
 
 /**
- * Searches a catalog for items that match a query.
+ * Searches a catalog for items that match a query by scanning every item.
+ *
+ * <p>How the scan runs is decided by a {@link ScanStrategy}; by default large catalogs are scanned
+ * in parallel on the common pool. See {@link ColumnarCatalogSearcher} for a scan over a columnar
+ * copy of the catalog.
  *
  * @param <T>
  */
-public class CatalogSearcher<T extends Searchable> {
+public class CatalogSearcher<T extends Searchable> implements SearchEngine<T> {
 
   private final Collection<T> catalog;
+  private final ScanStrategy strategy;
 
   /**
    * Constructor for CatalogSearcher
    *
-   * @param catalog
+   * @param catalog A live view of the catalog to search.
    */
   public CatalogSearcher(Collection<T> catalog) {
+    this(catalog, ScanStrategy.adaptive());
+  }
+
+  /**
+   * Constructor for CatalogSearcher
+   *
+   * @param catalog A live view of the catalog to search.
+   * @param strategy How to execute scans.
+   */
+  public CatalogSearcher(Collection<T> catalog, ScanStrategy strategy) {
     this.catalog = catalog;
+    this.strategy = strategy;
+  }
+
+  @Override
+  public void add(T item) {
+    // The catalog is a live view, so there is nothing to maintain.
+  }
+
+  @Override
+  public void remove(T item) {
+    // The catalog is a live view, so there is nothing to maintain.
   }
 
   /**
@@ -26,7 +52,20 @@ public class CatalogSearcher<T extends Searchable> {
    * @param query The query to search for.
    * @return The items that match the query.
    */
+  @Override
   public Collection<T> search(SearchCriteria query) {
-    return catalog.stream().filter(item -> item.matches(query)).toList();
+    CompiledQuery compiled = CompiledQuery.compile(query);
+    if (!strategy.isParallel(catalog.size())) {
+      return catalog.stream().filter(item -> item.matches(compiled)).toList();
+    }
+    // Chunks need random access, so scan a snapshot of the live view.
+    Object[] snapshot = catalog.toArray();
+    return strategy.filter(
+        snapshot.length, i -> item(snapshot, i), i -> item(snapshot, i).matches(compiled));
+  }
+
+  @SuppressWarnings("unchecked")
+  private T item(Object[] snapshot, int index) {
+    return (T) snapshot[index];
   }
 }
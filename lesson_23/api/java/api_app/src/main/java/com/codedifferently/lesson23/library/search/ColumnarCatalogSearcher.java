@@ -0,0 +1,187 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Searches a catalog by scanning a columnar copy of it.
+ *
+ * <p>Ids, types and normalized titles are kept in parallel arrays, so a scan walks a few contiguous
+ * primitive columns instead of following a pointer to every item. Ids are split into two {@code
+ * long} columns and types are encoded as small integers, which lets those checks run as plain array
+ * comparisons; titles are matched with {@link String#contains}, which the JVM implements with
+ * vector instructions where it can. Items are only dereferenced to check authors and to return the
+ * results. Removing an item moves the last item into its place, so the columns stay dense.
+ *
+ * <p>Searches share a read lock and may run concurrently; updates take the write lock.
+ *
+ * @param <T> The type of item in the catalog.
+ */
+public class ColumnarCatalogSearcher<T extends Indexable> implements SearchEngine<T> {
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ScanStrategy strategy;
+  private final Map<UUID, Integer> positionsById = new HashMap<>();
+  private final List<Enum<?>> typesByCode = new ArrayList<>();
+  private final Map<Enum<?>, Short> codesByType = new HashMap<>();
+  private Object[] items = new Object[16];
+  private long[] idHighBits = new long[16];
+  private long[] idLowBits = new long[16];
+  private short[] typeCodes = new short[16];
+  private String[] titles = new String[16];
+  private int size;
+
+  /** Create a searcher that scans large catalogs in parallel on the common pool. */
+  public ColumnarCatalogSearcher() {
+    this(ScanStrategy.adaptive());
+  }
+
+  /**
+   * Create a searcher.
+   *
+   * @param strategy How to execute scans.
+   */
+  public ColumnarCatalogSearcher(ScanStrategy strategy) {
+    this.strategy = strategy;
+  }
+
+  @Override
+  public void add(T item) {
+    lock.writeLock().lock();
+    try {
+      addUnderLock(item);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void addAll(Collection<? extends T> items) {
+    lock.writeLock().lock();
+    try {
+      ensureCapacity(size + items.size());
+      for (T item : items) {
+        addUnderLock(item);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(T item) {
+    lock.writeLock().lock();
+    try {
+      Integer position = positionsById.remove(item.getId());
+      if (position == null) {
+        return;
+      }
+      int last = --size;
+      if (position != last) {
+        moveUnderLock(last, position);
+      }
+      items[last] = null;
+      titles[last] = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Collection<T> search(SearchCriteria query) {
+    CompiledQuery compiled = CompiledQuery.compile(query);
+    if (compiled.hasId() && compiled.getId() == null) {
+      // The id is not one any item could have.
+      return List.of();
+    }
+    lock.readLock().lock();
+    try {
+      boolean[] types = compiled.getType() != null ? acceptedTypes(compiled.getType()) : null;
+      boolean hasId = compiled.hasId();
+      long high = hasId ? compiled.getId().getMostSignificantBits() : 0;
+      long low = hasId ? compiled.getId().getLeastSignificantBits() : 0;
+      boolean hasTitle = compiled.getNormalizedTitle() != null;
+      boolean hasAuthor = compiled.getNormalizedAuthor() != null;
+      return strategy.filter(
+          size,
+          this::itemAt,
+          i ->
+              (types == null || types[typeCodes[i]])
+                  && (!hasId || (idHighBits[i] == high && idLowBits[i] == low))
+                  && (!hasTitle || compiled.matchesTitle(titles[i]))
+                  && (!hasAuthor || compiled.matchesAuthors(itemAt(i).getNormalizedAuthors())));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void addUnderLock(T item) {
+    Integer position = positionsById.get(item.getId());
+    if (position == null) {
+      ensureCapacity(size + 1);
+      position = size++;
+      positionsById.put(item.getId(), position);
+    }
+    items[position] = item;
+    idHighBits[position] = item.getId().getMostSignificantBits();
+    idLowBits[position] = item.getId().getLeastSignificantBits();
+    typeCodes[position] = codeOf(item.getType());
+    titles[position] = item.getNormalizedTitle();
+  }
+
+  private void moveUnderLock(int from, int to) {
+    items[to] = items[from];
+    idHighBits[to] = idHighBits[from];
+    idLowBits[to] = idLowBits[from];
+    typeCodes[to] = typeCodes[from];
+    titles[to] = titles[from];
+    positionsById.put(itemAt(to).getId(), to);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= items.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, items.length * 2);
+    items = Arrays.copyOf(items, newCapacity);
+    idHighBits = Arrays.copyOf(idHighBits, newCapacity);
+    idLowBits = Arrays.copyOf(idLowBits, newCapacity);
+    typeCodes = Arrays.copyOf(typeCodes, newCapacity);
+    titles = Arrays.copyOf(titles, newCapacity);
+  }
+
+  private short codeOf(Enum<?> type) {
+    Short code = codesByType.get(type);
+    if (code != null) {
+      return code;
+    }
+    if (typesByCode.size() > Short.MAX_VALUE) {
+      throw new IllegalStateException("Too many item types to encode in a column");
+    }
+    code = (short) typesByCode.size();
+    typesByCode.add(type);
+    codesByType.put(type, code);
+    return code;
+  }
+
+  /** Mark the codes of the types whose name matches the query, ignoring case. */
+  private boolean[] acceptedTypes(String type) {
+    boolean[] accepted = new boolean[typesByCode.size()];
+    for (int code = 0; code < accepted.length; code++) {
+      accepted[code] = typesByCode.get(code).toString().equalsIgnoreCase(type);
+    }
+    return accepted;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T itemAt(int position) {
+    return (T) items[position];
+  }
+}
@@ -0,0 +1,207 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A {@link SearchCriteria} prepared once so that it can be matched against many items.
+ *
+ * <p>The title and author needles are normalized and the id is parsed when the query is compiled,
+ * and items hand over text they normalized when they were created, so matching an item allocates
+ * nothing.
+ *
+ * <p>When edits are allowed, a title or author that does not contain its needle still matches if
+ * every word of the needle is within that many edits of one of its words. Only this comparison
+ * allocates, and only for items that fail the exact match.
+ */
+public final class CompiledQuery {
+
+  /** The most edits a query may tolerate per word. */
+  public static final int MAX_EDITS = 2;
+
+  private static final String[] NO_TERMS = new String[0];
+
+  private final SearchCriteria criteria;
+  private final boolean hasId;
+  private final UUID id;
+  private final String title;
+  private final String author;
+  private final String type;
+  private final int maxEdits;
+  private final String[] titleTerms;
+  private final String[] authorTerms;
+
+  private CompiledQuery(SearchCriteria criteria) {
+    this.criteria = criteria;
+    this.hasId = criteria.id != null;
+    this.id = hasId ? parseId(criteria.id) : null;
+    this.title = criteria.title != null ? TextNormalizer.normalize(criteria.title) : null;
+    this.author = criteria.author != null ? TextNormalizer.normalize(criteria.author) : null;
+    this.type = criteria.type;
+    this.maxEdits = criteria.maxEdits != null ? criteria.maxEdits : 0;
+    if (maxEdits < 0 || maxEdits > MAX_EDITS) {
+      throw new IllegalArgumentException("Max edits must be between 0 and " + MAX_EDITS);
+    }
+    this.titleTerms = termsOf(title);
+    this.authorTerms = termsOf(author);
+  }
+
+  /**
+   * Compile the given search criteria.
+   *
+   * @param criteria The criteria to compile.
+   * @return The compiled query.
+   * @throws IllegalArgumentException If the criteria allow fewer than 0 or more than {@link
+   *     #MAX_EDITS} edits.
+   */
+  public static CompiledQuery compile(SearchCriteria criteria) {
+    return new CompiledQuery(criteria);
+  }
+
+  /**
+   * Get the criteria this query was compiled from.
+   *
+   * @return The criteria.
+   */
+  public SearchCriteria getCriteria() {
+    return criteria;
+  }
+
+  /**
+   * Indicates whether an item matches the query.
+   *
+   * @param item The item to check.
+   * @return True if the item matches every criterion that was given, false otherwise.
+   */
+  public boolean matches(Indexable item) {
+    if (hasId && !item.getId().equals(id)) {
+      return false;
+    }
+    if (title != null && !matchesTitle(item.getNormalizedTitle())) {
+      return false;
+    }
+    if (type != null && !item.getType().toString().equalsIgnoreCase(type)) {
+      return false;
+    }
+    return author == null || matchesAuthors(item.getNormalizedAuthors());
+  }
+
+  /**
+   * Indicates whether a title matches the title needle.
+   *
+   * @param normalizedTitle The normalized title of an item.
+   * @return True if the title contains the needle or is within the allowed edits of it.
+   */
+  boolean matchesTitle(String normalizedTitle) {
+    if (normalizedTitle.contains(title)) {
+      return true;
+    }
+    if (maxEdits == 0 || titleTerms.length == 0) {
+      return false;
+    }
+    for (String term : titleTerms) {
+      if (!EditDistance.anyTokenWithin(normalizedTitle, term, maxEdits)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Indicates whether the given authors match the author needle.
+   *
+   * @param normalizedAuthors The normalized authors of an item.
+   * @return True if an author contains the needle, or every word of the needle is within the
+   *     allowed edits of a word of some author, false otherwise.
+   */
+  boolean matchesAuthors(List<String> normalizedAuthors) {
+    // Index rather than iterate so that no iterator is created per item.
+    for (int i = 0; i < normalizedAuthors.size(); i++) {
+      if (normalizedAuthors.get(i).contains(author)) {
+        return true;
+      }
+    }
+    if (maxEdits == 0 || authorTerms.length == 0) {
+      return false;
+    }
+    for (String term : authorTerms) {
+      if (!anyAuthorTokenWithin(normalizedAuthors, term)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean hasId() {
+    return hasId;
+  }
+
+  /**
+   * Get the id to match.
+   *
+   * @return The id, or null if no id was given or it is not the canonical form of a UUID.
+   */
+  UUID getId() {
+    return id;
+  }
+
+  String getNormalizedTitle() {
+    return title;
+  }
+
+  String getNormalizedAuthor() {
+    return author;
+  }
+
+  String getType() {
+    return type;
+  }
+
+  int getMaxEdits() {
+    return maxEdits;
+  }
+
+  /**
+   * Get the distinct words of the title needle.
+   *
+   * @return The words, which must not be modified.
+   */
+  String[] getTitleTerms() {
+    return titleTerms;
+  }
+
+  /**
+   * Get the distinct words of the author needle.
+   *
+   * @return The words, which must not be modified.
+   */
+  String[] getAuthorTerms() {
+    return authorTerms;
+  }
+
+  private boolean anyAuthorTokenWithin(List<String> normalizedAuthors, String term) {
+    for (int i = 0; i < normalizedAuthors.size(); i++) {
+      if (EditDistance.anyTokenWithin(normalizedAuthors.get(i), term, maxEdits)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String[] termsOf(String needle) {
+    return needle != null
+        ? TextNormalizer.tokenize(needle).stream().distinct().toArray(String[]::new)
+        : NO_TERMS;
+  }
+
+  /** Parse an id, keeping the case-insensitive comparison with the canonical text of an id. */
+  private static UUID parseId(String id) {
+    try {
+      UUID parsed = UUID.fromString(id);
+      // fromString also accepts shortened groups, which never equal an item's id as text.
+      return parsed.toString().equalsIgnoreCase(id) ? parsed : null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.codedifferently.lesson23.library.search;
+
+/** Compares words by Levenshtein distance: the insertions, deletions and substitutions apart. */
+final class EditDistance {
+
+  private EditDistance() {}
+
+  /**
+   * Indicates whether a region of text is within the given number of edits of a term.
+   *
+   * @param text The text holding the region.
+   * @param from The start of the region, inclusive.
+   * @param to The end of the region, exclusive.
+   * @param term The term to compare with.
+   * @param maxEdits The largest distance allowed.
+   * @return True if the region can be turned into the term with at most {@code maxEdits} edits.
+   */
+  static boolean isWithin(String text, int from, int to, String term, int maxEdits) {
+    int length = to - from;
+    if (Math.abs(length - term.length()) > maxEdits) {
+      return false;
+    }
+    int[] previous = new int[term.length() + 1];
+    int[] current = new int[term.length() + 1];
+    for (int j = 0; j <= term.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= length; i++) {
+      current[0] = i;
+      int rowMin = i;
+      char c = text.charAt(from + i - 1);
+      for (int j = 1; j <= term.length(); j++) {
+        int substitution = previous[j - 1] + (c == term.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > maxEdits) {
+        // Every later row is at least as large, so the term is out of reach.
+        return false;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[term.length()] <= maxEdits;
+  }
+
+  /**
+   * Indicates whether any token of normalized text is within the given number of edits of a term.
+   * Tokens are split the same way as {@link TextNormalizer#tokenize}, without creating them.
+   *
+   * @param normalized The normalized text.
+   * @param term The normalized term.
+   * @param maxEdits The largest distance allowed.
+   * @return True if some token is close enough to the term.
+   */
+  static boolean anyTokenWithin(String normalized, String term, int maxEdits) {
+    int start = -1;
+    int i = 0;
+    while (i < normalized.length()) {
+      int codePoint = normalized.codePointAt(i);
+      if (Character.isLetterOrDigit(codePoint)) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        if (isWithin(normalized, start, i, term, maxEdits)) {
+          return true;
+        }
+        start = -1;
+      }
+      i += Character.charCount(codePoint);
+    }
+    return start >= 0 && isWithin(normalized, start, normalized.length(), term, maxEdits);
+  }
+}
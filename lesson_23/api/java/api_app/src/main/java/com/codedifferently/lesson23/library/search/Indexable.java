@@ -0,0 +1,61 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.List;
+import java.util.UUID;
+
+/** A searchable item that exposes the fields an index is built from. */
+public interface Indexable extends Searchable {
+
+  /**
+   * Get the id of the item.
+   *
+   * @return The id of the item.
+   */
+  UUID getId();
+
+  /**
+   * Get the title of the item.
+   *
+   * @return The title of the item.
+   */
+  String getTitle();
+
+  /**
+   * Get the type of the item.
+   *
+   * @return The type of the item.
+   */
+  Enum<?> getType();
+
+  /**
+   * Get the authors of the item.
+   *
+   * @return The authors of the item, or an empty list if it has none.
+   */
+  default List<String> getAuthors() {
+    return List.of();
+  }
+
+  /**
+   * Get the title of the item normalized for case-insensitive matching.
+   *
+   * <p>Implementations should compute this once rather than on every call.
+   *
+   * @return The normalized title of the item.
+   */
+  default String getNormalizedTitle() {
+    return TextNormalizer.normalize(getTitle());
+  }
+
+  /**
+   * Get the authors of the item normalized for case-insensitive matching.
+   *
+   * <p>Implementations should compute this once rather than on every call.
+   *
+   * @return The normalized authors of the item, in the same order as {@link #getAuthors()}.
+   */
+  default List<String> getNormalizedAuthors() {
+    List<String> authors = getAuthors();
+    return authors == null ? List.of() : authors.stream().map(TextNormalizer::normalize).toList();
+  }
+}
@@ -0,0 +1,407 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Searches a catalog through inverted indexes instead of scanning every item.
+ *
+ * <p>Each item is assigned a dense document id. Titles are indexed by trigram so that any infix can
+ * be looked up, authors are split into tokens in a {@link TokenIndex}, ids are kept in an
+ * exact-match map, and each type has a bitmap of its documents. A query is compiled once, narrows
+ * the candidates with these structures and then verifies each candidate with {@link
+ * Searchable#matches(CompiledQuery)}, so results are identical to a full scan.
+ *
+ * <p>Titles are also split into tokens with their own posting lists, and the number of tokens in
+ * each document's title and authors is kept, so that ranked searches can score matches with {@link
+ * Bm25}. Only the best matches are kept while scanning, in a heap bounded by the requested limit.
+ *
+ * <p>The distinct title and author tokens are also kept in {@link TermDictionary dictionaries}, so
+ * that a query allowing edits can find the tokens within reach of each of its words without
+ * comparing it with every token, and indexed by trigram, so that the tokens containing a word are
+ * found the same way.
+ *
+ * <p>Searches share a read lock and may run concurrently; index updates take the write lock.
+ *
+ * @param <T> The type of item in the catalog.
+ */
+public class IndexedCatalogSearcher<T extends Indexable> implements SearchEngine<T> {
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ArrayList<T> docs = new ArrayList<>();
+  private final Deque<Integer> freeDocIds = new ArrayDeque<>();
+  private final BitSet liveDocs = new BitSet();
+  private final Map<UUID, Integer> docIdsById = new HashMap<>();
+  private final TrigramIndex titleGrams = new TrigramIndex();
+  private final TokenIndex titleTokenIndex = new TokenIndex();
+  private final TokenIndex authorTokenIndex = new TokenIndex();
+  private final Map<Enum<?>, BitSet> docsByType = new HashMap<>();
+  private int[] titleLengths = new int[16];
+  private int[] authorLengths = new int[16];
+  private long titleLengthTotal;
+  private long authorLengthTotal;
+
+  @Override
+  public void add(T item) {
+    lock.writeLock().lock();
+    try {
+      addUnderLock(IndexedText.of(item));
+      compactDictionaries();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The text of every item is normalized and split concurrently before the write lock is taken,
+   * so searches are only blocked while the postings are appended.
+   */
+  @Override
+  public void addAll(Collection<? extends T> items) {
+    List<IndexedText<T>> texts = items.parallelStream().map(IndexedText::of).toList();
+    lock.writeLock().lock();
+    try {
+      docs.ensureCapacity(docs.size() + texts.size());
+      for (IndexedText<T> text : texts) {
+        addUnderLock(text);
+      }
+      compactDictionaries();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(T item) {
+    lock.writeLock().lock();
+    try {
+      removeUnderLock(item);
+      compactDictionaries();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Collection<T> search(SearchCriteria query) {
+    lock.readLock().lock();
+    try {
+      List<T> results = new ArrayList<>();
+      forEachMatch(CompiledQuery.compile(query), docId -> results.add(docs.get(docId)));
+      return results;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Matches are scored with BM25 on the tokens of the title and author in the query, summed
+   * across the two fields. Matches are never collected; each is offered to a heap holding the best
+   * {@code limit} so far, so broad queries cost memory in proportion to the limit only.
+   */
+  @Override
+  public List<T> searchRanked(SearchCriteria query, int limit) {
+    if (limit <= 0) {
+      return List.of();
+    }
+    lock.readLock().lock();
+    try {
+      CompiledQuery compiled = CompiledQuery.compile(query);
+      var scorer = new Scorer(compiled);
+      // The worst of the best matches so far sits at the head, ready to be evicted.
+      PriorityQueue<Ranked<T>> best = new PriorityQueue<>(limit + 1, Ranked.BEST_FIRST.reversed());
+      forEachMatch(
+          compiled,
+          docId -> {
+            T item = docs.get(docId);
+            double score = scorer.score(docId, item);
+            if (best.size() < limit) {
+              best.offer(new Ranked<>(item, score));
+            } else if (Ranked.isBetter(item, score, best.peek())) {
+              best.poll();
+              best.offer(new Ranked<>(item, score));
+            }
+          });
+      List<Ranked<T>> ranked = new ArrayList<>(best);
+      ranked.sort(Ranked.BEST_FIRST);
+      return ranked.stream().map(Ranked::item).toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void addUnderLock(IndexedText<T> text) {
+    T item = text.item();
+    if (docIdsById.containsKey(item.getId())) {
+      removeUnderLock(item);
+    }
+    int docId = allocateDocId(item);
+    docIdsById.put(item.getId(), docId);
+    liveDocs.set(docId);
+    docsByType.computeIfAbsent(item.getType(), t -> new BitSet()).set(docId);
+    titleGrams.add(docId, text.titleGrams());
+    for (String token : new LinkedHashSet<>(text.titleTokens())) {
+      titleTokenIndex.add(token, docId);
+    }
+    for (String token : new LinkedHashSet<>(text.authorTokens())) {
+      authorTokenIndex.add(token, docId);
+    }
+    if (docId >= titleLengths.length) {
+      titleLengths = Arrays.copyOf(titleLengths, Math.max(docId + 1, titleLengths.length * 2));
+      authorLengths = Arrays.copyOf(authorLengths, titleLengths.length);
+    }
+    titleLengths[docId] = text.titleTokens().size();
+    authorLengths[docId] = text.authorTokens().size();
+    titleLengthTotal += titleLengths[docId];
+    authorLengthTotal += authorLengths[docId];
+  }
+
+  private void removeUnderLock(T item) {
+    Integer docId = docIdsById.remove(item.getId());
+    if (docId == null) {
+      return;
+    }
+    // Use the indexed instance since it is what the postings were built from.
+    T indexed = docs.get(docId);
+    titleGrams.remove(docId, indexed.getNormalizedTitle());
+    for (String token : TextNormalizer.tokenize(indexed.getNormalizedTitle())) {
+      titleTokenIndex.remove(token, docId);
+    }
+    for (String token : authorTokens(indexed)) {
+      authorTokenIndex.remove(token, docId);
+    }
+    titleLengthTotal -= titleLengths[docId];
+    authorLengthTotal -= authorLengths[docId];
+    BitSet typeDocs = docsByType.get(indexed.getType());
+    if (typeDocs != null) {
+      typeDocs.clear(docId);
+    }
+    liveDocs.clear(docId);
+    docs.set(docId, null);
+    freeDocIds.push(docId);
+  }
+
+  /** Call the action with every document matching the query, narrowed through the indexes. */
+  private void forEachMatch(CompiledQuery query, IntConsumer action) {
+    int[] candidates = null;
+    if (query.hasId()) {
+      candidates = matchId(query.getId());
+    }
+    if (query.getNormalizedTitle() != null) {
+      int[] titleDocs = titleGrams.candidates(query.getNormalizedTitle());
+      if (query.getMaxEdits() > 0) {
+        int[] nearDocs =
+            matchNearTokens(titleTokenIndex, query.getTitleTerms(), query.getMaxEdits());
+        titleDocs = PostingList.union(titleDocs, nearDocs);
+      }
+      candidates = PostingList.intersect(candidates, titleDocs);
+    }
+    if (query.getNormalizedAuthor() != null) {
+      int[] authorDocs = matchTokens(authorTokenIndex, query.getNormalizedAuthor());
+      if (query.getMaxEdits() > 0) {
+        int[] nearDocs =
+            matchNearTokens(authorTokenIndex, query.getAuthorTerms(), query.getMaxEdits());
+        authorDocs = PostingList.union(authorDocs, nearDocs);
+      }
+      candidates = PostingList.intersect(candidates, authorDocs);
+    }
+    BitSet typeDocs = query.getType() != null ? matchType(query.getType()) : null;
+
+    if (candidates == null) {
+      BitSet scope = typeDocs != null ? typeDocs : liveDocs;
+      for (int docId = scope.nextSetBit(0); docId >= 0; docId = scope.nextSetBit(docId + 1)) {
+        acceptIfMatches(docId, query, action);
+      }
+      return;
+    }
+    for (int docId : candidates) {
+      if (typeDocs == null || typeDocs.get(docId)) {
+        acceptIfMatches(docId, query, action);
+      }
+    }
+  }
+
+  private void acceptIfMatches(int docId, CompiledQuery query, IntConsumer action) {
+    if (docs.get(docId).matches(query)) {
+      action.accept(docId);
+    }
+  }
+
+  private int[] matchId(UUID id) {
+    Integer docId = id != null ? docIdsById.get(id) : null;
+    return docId == null ? PostingList.EMPTY : new int[] {docId};
+  }
+
+  private BitSet matchType(String type) {
+    BitSet result = new BitSet();
+    for (var entry : docsByType.entrySet()) {
+      if (entry.getKey().toString().equalsIgnoreCase(type)) {
+        result.or(entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find the documents that could contain the given normalized text in an indexed field.
+   *
+   * <p>Every token of the query must appear inside some token of the field for the field to contain
+   * the query, so each query token is resolved to the tokens containing it through their trigrams.
+   * This costs time proportional to the tokens sharing its trigrams and the postings that match,
+   * not to the dictionary or the catalog.
+   *
+   * @return The sorted candidate document ids, or null if the text cannot narrow the search.
+   */
+  private static int[] matchTokens(TokenIndex tokens, String normalized) {
+    List<String> queryTokens = TextNormalizer.tokenize(normalized);
+    if (queryTokens.isEmpty()) {
+      return null;
+    }
+    int[] candidates = null;
+    for (String queryToken : new LinkedHashSet<>(queryTokens)) {
+      candidates = PostingList.intersect(candidates, tokens.containing(queryToken));
+      if (candidates.length == 0) {
+        break;
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Find the documents with a token within the allowed edits of every query term.
+   *
+   * @return The sorted candidate document ids.
+   */
+  private static int[] matchNearTokens(TokenIndex tokens, String[] terms, int maxEdits) {
+    if (terms.length == 0) {
+      return PostingList.EMPTY;
+    }
+    int[] candidates = null;
+    for (String term : terms) {
+      candidates = PostingList.intersect(candidates, tokens.near(term, maxEdits));
+      if (candidates.length == 0) {
+        break;
+      }
+    }
+    return candidates;
+  }
+
+  private void compactDictionaries() {
+    titleTokenIndex.compact();
+    authorTokenIndex.compact();
+  }
+
+  private int allocateDocId(T item) {
+    if (!freeDocIds.isEmpty()) {
+      int docId = freeDocIds.pop();
+      docs.set(docId, item);
+      return docId;
+    }
+    docs.add(item);
+    return docs.size() - 1;
+  }
+
+  /** Get every token of every author of an item, repeats included. */
+  private static List<String> authorTokens(Indexable item) {
+    List<String> tokens = new ArrayList<>();
+    for (String author : item.getNormalizedAuthors()) {
+      tokens.addAll(TextNormalizer.tokenize(author));
+    }
+    return tokens;
+  }
+
+  /** The indexed text of an item, computed without touching the index. */
+  private record IndexedText<T extends Indexable>(
+      T item, long[] titleGrams, List<String> titleTokens, List<String> authorTokens) {
+
+    static <T extends Indexable> IndexedText<T> of(T item) {
+      return new IndexedText<>(
+          item,
+          TrigramIndex.gramsOf(item.getNormalizedTitle()),
+          TextNormalizer.tokenize(item.getNormalizedTitle()),
+          IndexedCatalogSearcher.authorTokens(item));
+    }
+  }
+
+  /** Scores documents against the title and author of a query. Must be used under the lock. */
+  private final class Scorer {
+
+    private final String[] titleTerms;
+    private final double[] titleIdfs;
+    private final String[] authorTerms;
+    private final double[] authorIdfs;
+    private final double averageTitleLength;
+    private final double averageAuthorLength;
+
+    Scorer(CompiledQuery query) {
+      int documentCount = docIdsById.size();
+      titleTerms = query.getTitleTerms();
+      titleIdfs = idfs(titleTokenIndex, titleTerms, documentCount);
+      authorTerms = query.getAuthorTerms();
+      authorIdfs = idfs(authorTokenIndex, authorTerms, documentCount);
+      averageTitleLength = documentCount == 0 ? 0 : (double) titleLengthTotal / documentCount;
+      averageAuthorLength = documentCount == 0 ? 0 : (double) authorLengthTotal / documentCount;
+    }
+
+    double score(int docId, T item) {
+      double score = 0;
+      for (int i = 0; i < titleTerms.length; i++) {
+        int frequency = Bm25.occurrences(item.getNormalizedTitle(), titleTerms[i]);
+        score +=
+            titleIdfs[i] * Bm25.termWeight(frequency, titleLengths[docId], averageTitleLength);
+      }
+      for (int i = 0; i < authorTerms.length; i++) {
+        List<String> authors = item.getNormalizedAuthors();
+        int frequency = 0;
+        for (int j = 0; j < authors.size(); j++) {
+          frequency += Bm25.occurrences(authors.get(j), authorTerms[i]);
+        }
+        score +=
+            authorIdfs[i] * Bm25.termWeight(frequency, authorLengths[docId], averageAuthorLength);
+      }
+      return score;
+    }
+
+    private static double[] idfs(TokenIndex tokens, String[] terms, int documentCount) {
+      double[] idfs = new double[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        // A term can occur inside any token, so count the documents with a token containing it.
+        int documentFrequency = tokens.documentFrequency(terms[i]);
+        idfs[i] = Bm25.idf(documentCount, documentFrequency);
+      }
+      return idfs;
+    }
+  }
+
+  /** A matching item and its score. Ties are broken by item id, like every other order. */
+  private record Ranked<T extends Indexable>(T item, double score) {
+
+    static final Comparator<Ranked<?>> BEST_FIRST =
+        Comparator.<Ranked<?>>comparingDouble(Ranked::score)
+            .reversed()
+            .thenComparing(ranked -> ranked.item().getId());
+
+    static boolean isBetter(Indexable item, double score, Ranked<?> other) {
+      return score > other.score()
+          || (score == other.score() && item.getId().compareTo(other.item().getId()) < 0);
+    }
+  }
+}
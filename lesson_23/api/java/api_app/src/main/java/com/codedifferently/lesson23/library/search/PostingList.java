@@ -0,0 +1,159 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.Arrays;
+
+/** A sorted, duplicate-free list of document ids. */
+final class PostingList {
+
+  static final int[] EMPTY = new int[0];
+
+  private int[] docIds = new int[4];
+  private int size;
+
+  /**
+   * Add a document id to the list.
+   *
+   * @param docId The document id to add.
+   */
+  void add(int docId) {
+    // Ids are usually handed out in increasing order, so check the tail first.
+    if (size == 0 || docIds[size - 1] < docId) {
+      ensureCapacity();
+      docIds[size++] = docId;
+      return;
+    }
+    int index = Arrays.binarySearch(docIds, 0, size, docId);
+    if (index >= 0) {
+      return;
+    }
+    int insertAt = -index - 1;
+    ensureCapacity();
+    System.arraycopy(docIds, insertAt, docIds, insertAt + 1, size - insertAt);
+    docIds[insertAt] = docId;
+    size++;
+  }
+
+  /**
+   * Remove a document id from the list.
+   *
+   * @param docId The document id to remove.
+   */
+  void remove(int docId) {
+    int index = Arrays.binarySearch(docIds, 0, size, docId);
+    if (index < 0) {
+      return;
+    }
+    System.arraycopy(docIds, index + 1, docIds, index, size - index - 1);
+    size--;
+  }
+
+  boolean contains(int docId) {
+    return Arrays.binarySearch(docIds, 0, size, docId) >= 0;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(int index) {
+    return docIds[index];
+  }
+
+  /**
+   * Copy the document ids into a new sorted array.
+   *
+   * @return The document ids.
+   */
+  int[] toArray() {
+    return Arrays.copyOf(docIds, size);
+  }
+
+  private void ensureCapacity() {
+    if (size == docIds.length) {
+      docIds = Arrays.copyOf(docIds, docIds.length * 2);
+    }
+  }
+
+  /**
+   * Intersect two sorted arrays of document ids.
+   *
+   * @param left The first sorted array, or null if unconstrained.
+   * @param right The second sorted array, or null if unconstrained.
+   * @return The sorted intersection, or null if both inputs are unconstrained.
+   */
+  static int[] intersect(int[] left, int[] right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    int[] result = new int[Math.min(left.length, right.length)];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < left.length && j < right.length) {
+      if (left[i] < right[j]) {
+        i++;
+      } else if (left[i] > right[j]) {
+        j++;
+      } else {
+        result[size++] = left[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Unite two sorted arrays of document ids.
+   *
+   * @param left The first sorted array, or null if unconstrained.
+   * @param right The second sorted array, or null if unconstrained.
+   * @return The sorted union, or null if either input is unconstrained.
+   */
+  static int[] union(int[] left, int[] right) {
+    if (left == null || right == null) {
+      return null;
+    }
+    int[] result = new int[left.length + right.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < left.length || j < right.length) {
+      if (j == right.length || (i < left.length && left[i] < right[j])) {
+        result[size++] = left[i++];
+      } else if (i == left.length || right[j] < left[i]) {
+        result[size++] = right[j++];
+      } else {
+        result[size++] = left[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Sort and remove duplicates from an array of document ids.
+   *
+   * @param docIds The document ids.
+   * @param size The number of valid entries in the array.
+   * @return A sorted, duplicate-free copy.
+   */
+  static int[] sortedUnique(int[] docIds, int size) {
+    Arrays.sort(docIds, 0, size);
+    int unique = 0;
+    for (int i = 0; i < size; i++) {
+      if (unique == 0 || docIds[unique - 1] != docIds[i]) {
+        docIds[unique++] = docIds[i];
+      }
+    }
+    return Arrays.copyOf(docIds, unique);
+  }
+}
@@ -0,0 +1,147 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Decides how a scan over every item of a catalog is executed.
+ *
+ * <p>Catalogs smaller than the parallel threshold are scanned on the calling thread, since
+ * splitting the work costs more than it saves. Larger catalogs are split into chunks that are
+ * filtered on a fork-join pool and joined back in order.
+ */
+public final class ScanStrategy {
+
+  /** The catalog size from which the adaptive strategy scans in parallel. */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 16_384;
+
+  /** The smallest chunk worth handing to another worker. */
+  static final int MIN_CHUNK_SIZE = 1_024;
+
+  private static final ScanStrategy SEQUENTIAL =
+      new ScanStrategy(Integer.MAX_VALUE, ForkJoinPool.commonPool());
+
+  private final int parallelThreshold;
+  private final ForkJoinPool pool;
+
+  private ScanStrategy(int parallelThreshold, ForkJoinPool pool) {
+    if (parallelThreshold < 0) {
+      throw new IllegalArgumentException("Parallel threshold must not be negative");
+    }
+    this.parallelThreshold = parallelThreshold;
+    this.pool = pool;
+  }
+
+  /**
+   * Scan every catalog on the calling thread.
+   *
+   * @return The strategy.
+   */
+  public static ScanStrategy sequential() {
+    return SEQUENTIAL;
+  }
+
+  /**
+   * Scan every catalog in parallel on the given pool, whatever its size.
+   *
+   * @param pool The pool to scan on.
+   * @return The strategy.
+   */
+  public static ScanStrategy parallel(ForkJoinPool pool) {
+    return new ScanStrategy(0, pool);
+  }
+
+  /**
+   * Scan catalogs of at least {@link #DEFAULT_PARALLEL_THRESHOLD} items in parallel on the common
+   * pool.
+   *
+   * @return The strategy.
+   */
+  public static ScanStrategy adaptive() {
+    return adaptive(DEFAULT_PARALLEL_THRESHOLD, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Scan catalogs of at least the given size in parallel on the given pool.
+   *
+   * @param parallelThreshold The smallest catalog that is scanned in parallel.
+   * @param pool The pool to scan on.
+   * @return The strategy.
+   */
+  public static ScanStrategy adaptive(int parallelThreshold, ForkJoinPool pool) {
+    return new ScanStrategy(parallelThreshold, pool);
+  }
+
+  /**
+   * Indicates whether a catalog of the given size is scanned in parallel.
+   *
+   * @param size The number of items in the catalog.
+   * @return True if the scan is split across the pool, false otherwise.
+   */
+  public boolean isParallel(int size) {
+    return size >= parallelThreshold && size > MIN_CHUNK_SIZE && pool.getParallelism() > 1;
+  }
+
+  /**
+   * Collect the elements at the positions that match, in position order.
+   *
+   * @param size The number of positions to scan.
+   * @param element Gets the element at a position.
+   * @param matches Tests the position.
+   * @return The matching elements.
+   */
+  <T> List<T> filter(int size, IntFunction<T> element, IntPredicate matches) {
+    if (!isParallel(size)) {
+      return filterRange(0, size, element, matches);
+    }
+    // A few chunks per worker lets the pool balance chunks that match more than others.
+    int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4));
+    return pool.invoke(new FilterTask<>(0, size, chunkSize, element, matches));
+  }
+
+  private static <T> List<T> filterRange(
+      int from, int to, IntFunction<T> element, IntPredicate matches) {
+    List<T> results = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      if (matches.test(i)) {
+        results.add(element.apply(i));
+      }
+    }
+    return results;
+  }
+
+  /** Filters a range of positions, splitting it in half until it fits in a chunk. */
+  private static final class FilterTask<T> extends RecursiveTask<List<T>> {
+
+    private final int from;
+    private final int to;
+    private final int chunkSize;
+    private final IntFunction<T> element;
+    private final IntPredicate matches;
+
+    FilterTask(int from, int to, int chunkSize, IntFunction<T> element, IntPredicate matches) {
+      this.from = from;
+      this.to = to;
+      this.chunkSize = chunkSize;
+      this.element = element;
+      this.matches = matches;
+    }
+
+    @Override
+    protected List<T> compute() {
+      if (to - from <= chunkSize) {
+        return filterRange(from, to, element, matches);
+      }
+      int middle = (from + to) >>> 1;
+      var right = new FilterTask<>(middle, to, chunkSize, element, matches);
+      right.fork();
+      List<T> results = new FilterTask<>(from, middle, chunkSize, element, matches).compute();
+      results.addAll(right.join());
+      return results;
+    }
+  }
+}
@@ -22,4 +22,7 @@ public class SearchCriteria {
 
   /** The type to search for (exact match). */
   public String type;
+
+  /** The number of typos to tolerate in each word of the title and author, from 0 to 2. */
+  public Integer maxEdits;
 }
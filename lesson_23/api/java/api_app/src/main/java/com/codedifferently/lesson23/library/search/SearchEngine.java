@@ -0,0 +1,59 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Executes searches over a catalog and is kept informed as items enter and leave it.
+ *
+ * @param <T> The type of item in the catalog.
+ */
+public interface SearchEngine<T extends Searchable> {
+
+  /**
+   * Notifies the engine that an item was added to the catalog.
+   *
+   * @param item The item that was added.
+   */
+  void add(T item);
+
+  /**
+   * Notifies the engine that several items were added to the catalog.
+   *
+   * <p>Engines that can index a batch faster than one item at a time should override this.
+   *
+   * @param items The items that were added, in the order they were added.
+   */
+  default void addAll(Collection<? extends T> items) {
+    items.forEach(this::add);
+  }
+
+  /**
+   * Notifies the engine that an item was removed from the catalog.
+   *
+   * @param item The item that was removed.
+   */
+  void remove(T item);
+
+  /**
+   * Searches the catalog for items that match the given query.
+   *
+   * @param query The query to search for.
+   * @return The items that match the query.
+   */
+  Collection<T> search(SearchCriteria query);
+
+  /**
+   * Searches the catalog for the items that best match the given query.
+   *
+   * <p>Engines that can score matches should override this. The default does not rank and returns
+   * the first matches it finds.
+   *
+   * @param query The query to search for.
+   * @param limit The maximum number of items to return.
+   * @return Up to {@code limit} matching items, most relevant first.
+   */
+  default List<T> searchRanked(SearchCriteria query, int limit) {
+    return search(query).stream().limit(Math.max(limit, 0)).toList();
+  }
+}
@@ -9,4 +9,16 @@ public interface Searchable {
    * @return The items that match the query.
    */
   boolean matches(SearchCriteria query);
+
+  /**
+   * Indicates whether an item matches a compiled query.
+   *
+   * <p>Items that can match without allocating should override this.
+   *
+   * @param query The compiled query to match.
+   * @return True if the item matches the query, false otherwise.
+   */
+  default boolean matches(CompiledQuery query) {
+    return matches(query.getCriteria());
+  }
 }
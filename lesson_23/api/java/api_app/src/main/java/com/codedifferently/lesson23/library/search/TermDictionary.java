@@ -0,0 +1,431 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The distinct terms of an indexed field, searchable by edit distance.
+ *
+ * <p>Terms are stored in tries laid out as flat arrays, with the children of each node next to one
+ * another. A lookup walks a trie carrying one row of the Levenshtein matrix per character of
+ * prefix, which is the state of a Levenshtein automaton for the query term, and abandons a prefix
+ * as soon as every entry of its row exceeds the allowed distance. Only the prefixes close to the
+ * query are ever visited, so lookups cost far less than comparing the query with every term.
+ *
+ * <p>Near the root almost every prefix is within a couple of edits of the query, so a plain walk
+ * fans out widely there. Each batch of terms is therefore kept in two tries, one over the terms and
+ * one over the terms spelled backwards, and the query is split into parts of which some must match
+ * closely: with one edit, the first or the second half exactly; with two, the first or the last
+ * third exactly, or else the first two thirds with one edit. Each case is a walk of one trie that
+ * abandons a prefix as soon as it strays too far from its part, so none fans out near the root.
+ *
+ * <p>New terms wait in a short list that lookups scan directly, until there are enough of them to
+ * build a segment of tries. Segments are merged whenever one is no larger than the next older one,
+ * so there are only logarithmically many and each term is rebuilt a logarithmic number of times.
+ * Removed terms stay hidden by the liveness check until a quarter of their segment is gone, and
+ * then only that segment is rebuilt. Otherwise adding or removing a term just notes it.
+ */
+final class TermDictionary {
+
+  /** The most terms left waiting outside the tries. */
+  static final int MAX_PENDING_TERMS = 1_024;
+
+  private final Predicate<String> isLive;
+  private final List<Segment> segments = new ArrayList<>();
+  private final List<String> pending = new ArrayList<>();
+  private boolean hasWornSegments;
+
+  /**
+   * Create a dictionary.
+   *
+   * @param isLive Indicates whether a term is still in the field, checked before reporting it.
+   */
+  TermDictionary(Predicate<String> isLive) {
+    this.isLive = isLive;
+  }
+
+  /**
+   * Add a term that was not in the field before.
+   *
+   * @param term The normalized term.
+   */
+  void add(String term) {
+    pending.add(term);
+  }
+
+  /**
+   * Note that a term is no longer in the field.
+   *
+   * @param term The normalized term.
+   */
+  void remove(String term) {
+    for (Segment segment : segments) {
+      if (Arrays.binarySearch(segment.terms, term) >= 0) {
+        segment.removedCount++;
+        hasWornSegments |= segment.isWorn();
+      }
+    }
+  }
+
+  /**
+   * Build the waiting terms into a segment and rebuild segments that lost many terms, if either is
+   * due. Costs nothing otherwise, so it may be called after every change.
+   */
+  void compact() {
+    if (hasWornSegments) {
+      hasWornSegments = false;
+      for (int i = segments.size() - 1; i >= 0; i--) {
+        if (segments.get(i).isWorn()) {
+          String[] live = withoutDeadOrRepeated(segments.get(i).terms.clone());
+          if (live.length == 0) {
+            segments.remove(i);
+          } else {
+            segments.set(i, Segment.of(live));
+          }
+        }
+      }
+    }
+    if (pending.size() > MAX_PENDING_TERMS) {
+      String[] terms = pending.toArray(String[]::new);
+      Arrays.parallelSort(terms);
+      pending.clear();
+      push(terms);
+    }
+  }
+
+  /**
+   * Call the action once with every live term within the given number of edits of a term.
+   *
+   * @param term The normalized term to look up.
+   * @param maxEdits The largest distance allowed.
+   * @param action Receives the matching terms.
+   */
+  void forEachWithin(String term, int maxEdits, Consumer<String> action) {
+    Set<String> found = new HashSet<>();
+    if (!segments.isEmpty()) {
+      for (Lookup lookup : lookupsFor(term, maxEdits)) {
+        for (Segment segment : segments) {
+          Trie trie = lookup.reversed ? segment.backward : segment.forward;
+          trie.walk(0, 0, lookup, found::add);
+        }
+      }
+    }
+    for (String candidate : pending) {
+      if (EditDistance.isWithin(candidate, 0, candidate.length(), term, maxEdits)) {
+        found.add(candidate);
+      }
+    }
+    for (String candidate : found) {
+      if (isLive.test(candidate)) {
+        action.accept(candidate);
+      }
+    }
+  }
+
+  /**
+   * Plan the walks that together find every term within the given number of edits of a term.
+   *
+   * <p>Splitting the term into parts, the edits that turn a match into the term are shared among
+   * the parts, so whenever there are too few edits to go around some part is matched closely.
+   */
+  private static List<Lookup> lookupsFor(String term, int maxEdits) {
+    int length = term.length();
+    String reversed = reverse(term);
+    if (maxEdits == 2) {
+      // Unless the first or last third is exact, both take an edit and the middle none.
+      int third = (length + 1) / 3;
+      return List.of(
+          new Lookup(term, false, maxEdits, new int[] {third}, new int[] {0}),
+          new Lookup(term, false, maxEdits, new int[] {third, length - third}, new int[] {1, 1}),
+          new Lookup(reversed, true, maxEdits, new int[] {third}, new int[] {0}));
+    }
+    // One half or the other takes no more than half the edits.
+    int half = length / 2;
+    int[] halfEdits = {maxEdits / 2};
+    return List.of(
+        new Lookup(term, false, maxEdits, new int[] {half}, halfEdits),
+        new Lookup(reversed, true, maxEdits, new int[] {length - half}, halfEdits));
+  }
+
+  /** Add a segment of the given sorted terms, merging it with older segments that are no larger. */
+  private void push(String[] terms) {
+    while (!segments.isEmpty() && segments.get(segments.size() - 1).terms.length <= terms.length) {
+      terms = merge(terms, segments.remove(segments.size() - 1).terms);
+    }
+    terms = withoutDeadOrRepeated(terms);
+    if (terms.length > 0) {
+      segments.add(Segment.of(terms));
+    }
+  }
+
+  /** Merge two sorted arrays of terms. */
+  private static String[] merge(String[] left, String[] right) {
+    String[] merged = new String[left.length + right.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < left.length || j < right.length) {
+      boolean takeLeft =
+          j == right.length || (i < left.length && left[i].compareTo(right[j]) <= 0);
+      merged[size++] = takeLeft ? left[i++] : right[j++];
+    }
+    return merged;
+  }
+
+  /** Drop removed terms from a sorted array, and copies of a term that was removed and re-added. */
+  private String[] withoutDeadOrRepeated(String[] sorted) {
+    int size = 0;
+    for (String term : sorted) {
+      if (isLive.test(term) && (size == 0 || !sorted[size - 1].equals(term))) {
+        sorted[size++] = term;
+      }
+    }
+    return Arrays.copyOf(sorted, size);
+  }
+
+  /** Spell a term backwards, char by char, which keeps the distance between any two terms. */
+  private static String reverse(String term) {
+    char[] chars = term.toCharArray();
+    for (int i = 0, j = chars.length - 1; i < j; i++, j--) {
+      char swap = chars[i];
+      chars[i] = chars[j];
+      chars[j] = swap;
+    }
+    return new String(chars);
+  }
+
+  /** A batch of sorted terms, with a trie over them and another over them spelled backwards. */
+  private static final class Segment {
+
+    private final String[] terms;
+    private final Trie forward;
+    private final Trie backward;
+    private int removedCount;
+
+    private Segment(String[] terms, Trie forward, Trie backward) {
+      this.terms = terms;
+      this.forward = forward;
+      this.backward = backward;
+    }
+
+    /** Build the tries over sorted, duplicate-free terms. */
+    static Segment of(String[] terms) {
+      String[] reversed = new String[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        reversed[i] = reverse(terms[i]);
+      }
+      Arrays.parallelSort(reversed);
+      return new Segment(terms, Trie.of(terms), Trie.of(reversed));
+    }
+
+    boolean isWorn() {
+      return removedCount > terms.length / 4;
+    }
+  }
+
+  /**
+   * The state of a walk looking up one term: the rows of the Levenshtein matrix and the characters
+   * of the prefix at each depth, and the leading parts of the term that the terms it finds must
+   * start close to.
+   */
+  private static final class Lookup {
+
+    private final String term;
+    private final boolean reversed;
+    private final int maxEdits;
+    private final int[] partLengths;
+    private final int[] partEdits;
+    private final int[][] rows;
+    private final char[] prefix;
+
+    /**
+     * Prepare a walk.
+     *
+     * @param term The term to look up, as spelled in the tries to be walked.
+     * @param reversed Whether those tries hold the terms spelled backwards.
+     * @param maxEdits The largest distance allowed.
+     * @param partLengths The lengths of leading parts of the term.
+     * @param partEdits For each part, the most edits allowed between it and the start of a match.
+     */
+    Lookup(String term, boolean reversed, int maxEdits, int[] partLengths, int[] partEdits) {
+      this.term = term;
+      this.reversed = reversed;
+      this.maxEdits = maxEdits;
+      this.partLengths = partLengths;
+      this.partEdits = partEdits;
+      // No prefix deeper than this can come back within range, so these rows are all a walk needs.
+      this.rows = new int[term.length() + maxEdits + 2][term.length() + 1];
+      this.prefix = new char[rows.length];
+      for (int j = 0; j <= term.length(); j++) {
+        rows[0][j] = j;
+      }
+    }
+
+    /**
+     * Check whether a prefix can still start a term close enough to every part. A matching term
+     * starting within e edits of a part of length n is itself at least n - e long, so each prefix
+     * up to that depth is within e edits of some prefix of the part.
+     *
+     * @param row The row of the prefix, computed from {@code from} to {@code to}.
+     * @param depth The length of the prefix.
+     */
+    boolean allows(int[] row, int depth, int from, int to) {
+      for (int part = 0; part < partLengths.length; part++) {
+        if (depth > partLengths[part] - partEdits[part]) {
+          continue;
+        }
+        int min = row[0];
+        for (int j = from; j <= Math.min(to, partLengths[part]); j++) {
+          min = Math.min(min, row[j]);
+        }
+        if (min > partEdits[part]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Spell out the term ending at the given depth of the current prefix. */
+    String termAt(int depth) {
+      String spelled = new String(prefix, 0, depth);
+      return reversed ? reverse(spelled) : spelled;
+    }
+  }
+
+  /**
+   * A trie over a sorted array of keys, in breadth-first order: the children of node {@code i} are
+   * the nodes from {@code firstChild[i]} up to {@code firstChild[i + 1]}. Keys are not kept; a walk
+   * spells out the keys it reports from the labels along its path.
+   */
+  private static final class Trie {
+
+    private final char[] labels;
+    private final int[] firstChild;
+    private final BitSet keyEnds;
+
+    private Trie(char[] labels, int[] firstChild, BitSet keyEnds) {
+      this.labels = labels;
+      this.firstChild = firstChild;
+      this.keyEnds = keyEnds;
+    }
+
+    /** Build a trie over sorted, duplicate-free keys. */
+    static Trie of(String[] keys) {
+      // Copy the keys end to end, and note the prefix each shares with the key before it, which
+      // says where the children of a node split. The keys are then read in order, once each.
+      int[] offsets = new int[keys.length + 1];
+      for (int i = 0; i < keys.length; i++) {
+        offsets[i + 1] = offsets[i] + keys[i].length();
+      }
+      char[] text = new char[offsets[keys.length]];
+      int[] shared = new int[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i].getChars(0, keys[i].length(), text, offsets[i]);
+        if (i > 0) {
+          shared[i] = sharedPrefixLength(text, offsets[i - 1], offsets[i], offsets[i + 1]);
+        }
+      }
+      int capacity = keys.length * 2 + 1;
+      char[] labels = new char[capacity];
+      int[] firstChild = new int[capacity + 1];
+      BitSet keyEnds = new BitSet();
+      // The range of keys under each node, needed only while building.
+      int[] from = new int[capacity];
+      int[] to = new int[capacity];
+      to[0] = keys.length;
+      int count = 1;
+      int depth = 0;
+      int levelEnd = 1;
+      for (int node = 0; node < count; node++) {
+        if (node == levelEnd) {
+          depth++;
+          levelEnd = count;
+        }
+        firstChild[node] = count;
+        int i = from[node];
+        // Only the prefix itself can end at this node, and it sorts first.
+        if (i < to[node] && offsets[i + 1] - offsets[i] == depth) {
+          keyEnds.set(node);
+          i++;
+        }
+        while (i < to[node]) {
+          char c = text[offsets[i] + depth];
+          int end = i + 1;
+          while (end < to[node] && shared[end] > depth) {
+            end++;
+          }
+          if (count == labels.length) {
+            capacity = labels.length * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity + 1);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+          }
+          labels[count] = c;
+          from[count] = i;
+          to[count] = end;
+          count++;
+          i = end;
+        }
+      }
+      firstChild[count] = count;
+      return new Trie(
+          Arrays.copyOf(labels, count), Arrays.copyOf(firstChild, count + 1), keyEnds);
+    }
+
+    /** Count the characters the key at {@code start} shares with the key before it. */
+    private static int sharedPrefixLength(char[] text, int previous, int start, int end) {
+      int length = Math.min(start - previous, end - start);
+      int i = 0;
+      while (i < length && text[previous + i] == text[start + i]) {
+        i++;
+      }
+      return i;
+    }
+
+    /** Report the keys under a node that are within range, given the row of its prefix. */
+    void walk(int node, int depth, Lookup lookup, Consumer<String> action) {
+      String term = lookup.term;
+      int maxEdits = lookup.maxEdits;
+      int[][] rows = lookup.rows;
+      int[] row = rows[depth];
+      if (keyEnds.get(node)
+          && Math.abs(term.length() - depth) <= maxEdits
+          && row[term.length()] <= maxEdits) {
+        action.accept(lookup.termAt(depth));
+      }
+      if (depth + 1 == rows.length) {
+        return;
+      }
+      // Cells further than maxEdits from the diagonal are always out of range, so only the band
+      // around it is computed, with a cell past each end standing in for everything beyond.
+      int from = Math.max(1, depth + 1 - maxEdits);
+      int to = Math.min(term.length(), depth + 1 + maxEdits);
+      int[] next = rows[depth + 1];
+      next[0] = depth + 1;
+      next[from - 1] = Math.min(next[0], maxEdits + 1);
+      if (to < term.length()) {
+        next[to + 1] = maxEdits + 1;
+      }
+      for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+        char c = labels[child];
+        int rowMin = next[0];
+        for (int j = from; j <= to; j++) {
+          int substitution = row[j - 1] + (c == term.charAt(j - 1) ? 0 : 1);
+          next[j] = Math.min(substitution, Math.min(row[j], next[j - 1]) + 1);
+          rowMin = Math.min(rowMin, next[j]);
+        }
+        if (rowMin <= maxEdits && lookup.allows(next, depth + 1, from, to)) {
+          lookup.prefix[depth] = c;
+          walk(child, depth + 1, lookup, action);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Normalizes and tokenizes text the same way for indexing and querying. */
+public final class TextNormalizer {
+
+  private TextNormalizer() {}
+
+  /**
+   * Normalize text for case-insensitive comparison.
+   *
+   * <p>Indexes, compiled queries and the normalized text cached by items all go through this, so
+   * the index cannot miss items that a scan would find.
+   *
+   * @param text The text to normalize.
+   * @return The normalized text.
+   */
+  public static String normalize(String text) {
+    return text.toLowerCase();
+  }
+
+  /**
+   * Split normalized text into tokens made of letters and digits.
+   *
+   * @param normalized The normalized text.
+   * @return The tokens in the order they appear.
+   */
+  static List<String> tokenize(String normalized) {
+    List<String> tokens = new ArrayList<>();
+    int start = -1;
+    int i = 0;
+    while (i < normalized.length()) {
+      int codePoint = normalized.codePointAt(i);
+      if (Character.isLetterOrDigit(codePoint)) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        tokens.add(normalized.substring(start, i));
+        start = -1;
+      }
+      i += Character.charCount(codePoint);
+    }
+    if (start >= 0) {
+      tokens.add(normalized.substring(start));
+    }
+    return tokens;
+  }
+}
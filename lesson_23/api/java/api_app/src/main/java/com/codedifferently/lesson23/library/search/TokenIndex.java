@@ -0,0 +1,165 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the tokens of an indexed field to the documents containing them.
+ *
+ * <p>The distinct tokens are themselves indexed by trigram, each under a token id, so the tokens
+ * containing a query token are found from the postings of its trigrams rather than by comparing it
+ * with every token. They are also kept in a {@link TermDictionary} for lookups by edit distance.
+ *
+ * <p>Lookups may run concurrently with each other, but not with changes.
+ */
+final class TokenIndex {
+
+  /** The most document frequencies remembered between changes. */
+  static final int MAX_CACHED_FREQUENCIES = 4_096;
+
+  private final Map<String, PostingList> postings = new HashMap<>();
+  private final Map<String, Integer> tokenIds = new HashMap<>();
+  private final ArrayList<String> tokens = new ArrayList<>();
+  private final Deque<Integer> freeTokenIds = new ArrayDeque<>();
+  private final TrigramIndex tokenGrams = new TrigramIndex();
+  private final TermDictionary dictionary = new TermDictionary(postings::containsKey);
+  private final Map<String, Integer> documentFrequencies = new ConcurrentHashMap<>();
+
+  /**
+   * Record that a document contains a token.
+   *
+   * @param token The normalized token.
+   * @param docId The document id.
+   */
+  void add(String token, int docId) {
+    documentFrequencies.clear();
+    PostingList list = postings.get(token);
+    if (list == null) {
+      list = new PostingList();
+      postings.put(token, list);
+      int tokenId = allocateTokenId(token);
+      tokenIds.put(token, tokenId);
+      tokenGrams.add(tokenId, token);
+      dictionary.add(token);
+    }
+    list.add(docId);
+  }
+
+  /**
+   * Record that a document no longer contains a token.
+   *
+   * @param token The normalized token.
+   * @param docId The document id.
+   */
+  void remove(String token, int docId) {
+    PostingList list = postings.get(token);
+    if (list == null) {
+      return;
+    }
+    documentFrequencies.clear();
+    list.remove(docId);
+    if (list.isEmpty()) {
+      postings.remove(token);
+      int tokenId = tokenIds.remove(token);
+      tokenGrams.remove(tokenId, token);
+      tokens.set(tokenId, null);
+      freeTokenIds.push(tokenId);
+      dictionary.remove(token);
+    }
+  }
+
+  /** Tidy the edit-distance dictionary after a batch of changes. */
+  void compact() {
+    dictionary.compact();
+  }
+
+  /**
+   * Find the documents with a token containing the given query token.
+   *
+   * @param queryToken A normalized query token.
+   * @return The sorted document ids.
+   */
+  int[] containing(String queryToken) {
+    List<PostingList> lists = new ArrayList<>();
+    forEachContaining(queryToken, lists);
+    return union(lists);
+  }
+
+  /**
+   * Count the documents with a token containing the given query token, without listing them when
+   * only one token does. Counts are remembered until the index next changes.
+   *
+   * @param queryToken A normalized query token.
+   * @return The number of documents.
+   */
+  int documentFrequency(String queryToken) {
+    Integer cached = documentFrequencies.get(queryToken);
+    if (cached != null) {
+      return cached;
+    }
+    List<PostingList> lists = new ArrayList<>();
+    forEachContaining(queryToken, lists);
+    int frequency = lists.size() == 1 ? lists.get(0).size() : union(lists).length;
+    if (documentFrequencies.size() < MAX_CACHED_FREQUENCIES) {
+      documentFrequencies.put(queryToken, frequency);
+    }
+    return frequency;
+  }
+
+  /**
+   * Find the documents with a token within the given number of edits of a term.
+   *
+   * @param term A normalized query term.
+   * @param maxEdits The largest distance allowed.
+   * @return The sorted document ids.
+   */
+  int[] near(String term, int maxEdits) {
+    List<PostingList> lists = new ArrayList<>();
+    dictionary.forEachWithin(term, maxEdits, token -> lists.add(postings.get(token)));
+    return union(lists);
+  }
+
+  private void forEachContaining(String queryToken, List<PostingList> lists) {
+    int[] candidates = tokenGrams.candidates(queryToken);
+    if (candidates == null) {
+      lists.addAll(postings.values());
+      return;
+    }
+    // Trigrams only narrow the tokens down, so check each candidate actually contains the query.
+    for (int tokenId : candidates) {
+      String token = tokens.get(tokenId);
+      if (token.contains(queryToken)) {
+        lists.add(postings.get(token));
+      }
+    }
+  }
+
+  private int allocateTokenId(String token) {
+    if (!freeTokenIds.isEmpty()) {
+      int tokenId = freeTokenIds.pop();
+      tokens.set(tokenId, token);
+      return tokenId;
+    }
+    tokens.add(token);
+    return tokens.size() - 1;
+  }
+
+  private static int[] union(List<PostingList> lists) {
+    if (lists.size() == 1) {
+      return lists.get(0).toArray();
+    }
+    int[] buffer = new int[lists.stream().mapToInt(PostingList::size).sum()];
+    int size = 0;
+    for (PostingList list : lists) {
+      for (int i = 0; i < list.size(); i++) {
+        buffer[size++] = list.get(i);
+      }
+    }
+    return PostingList.sortedUnique(buffer, size);
+  }
+}
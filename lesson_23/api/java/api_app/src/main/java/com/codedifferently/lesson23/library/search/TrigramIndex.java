@@ -0,0 +1,216 @@
+package com.codedifferently.lesson23.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Maps every three-character window of a normalized string to the documents containing it.
+ *
+ * <p>Any string that contains a needle of three or more characters also contains each of the
+ * needle's trigrams, so intersecting their postings yields a superset of the matches. Strings are
+ * padded with a sentinel on both ends so that needles of one or two characters can be served by the
+ * trigrams that contain them. Those trigrams are looked up through a second map keyed by every
+ * character and character pair that occurs inside an indexed trigram.
+ */
+final class TrigramIndex {
+
+  private static final char PAD = '\0';
+
+  private final Map<Long, PostingList> postings = new HashMap<>();
+  private final Map<Long, Set<Long>> gramsByShortKey = new HashMap<>();
+
+  /**
+   * Index a normalized string for a document.
+   *
+   * @param docId The document id.
+   * @param normalized The normalized string.
+   */
+  void add(int docId, String normalized) {
+    add(docId, gramsOf(normalized));
+  }
+
+  /**
+   * Index the trigrams of a document computed earlier by {@link #gramsOf}.
+   *
+   * @param docId The document id.
+   * @param grams The trigrams of the document's normalized string.
+   */
+  void add(int docId, long[] grams) {
+    for (long gram : grams) {
+      PostingList list = postings.get(gram);
+      if (list == null) {
+        list = new PostingList();
+        postings.put(gram, list);
+        forEachShortKey(
+            gram, key -> gramsByShortKey.computeIfAbsent(key, k -> new HashSet<>()).add(gram));
+      }
+      list.add(docId);
+    }
+  }
+
+  /**
+   * Compute the trigrams a normalized string is indexed under. This touches no shared state, so
+   * callers can compute trigrams for many documents concurrently before indexing them.
+   *
+   * @param normalized The normalized string.
+   * @return The distinct trigrams.
+   */
+  static long[] gramsOf(String normalized) {
+    String text = PAD + normalized + PAD;
+    long[] grams = new long[Math.max(text.length() - 2, 0)];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = encode(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+    }
+    Arrays.sort(grams);
+    int distinct = 0;
+    for (int i = 0; i < grams.length; i++) {
+      if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+        grams[distinct++] = grams[i];
+      }
+    }
+    return Arrays.copyOf(grams, distinct);
+  }
+
+  /**
+   * Remove a document that was indexed with the given normalized string.
+   *
+   * @param docId The document id.
+   * @param normalized The normalized string the document was indexed with.
+   */
+  void remove(int docId, String normalized) {
+    for (long gram : paddedGrams(normalized)) {
+      PostingList list = postings.get(gram);
+      if (list == null) {
+        continue;
+      }
+      list.remove(docId);
+      if (list.isEmpty()) {
+        postings.remove(gram);
+        forEachShortKey(gram, key -> removeShortKey(key, gram));
+      }
+    }
+  }
+
+  /**
+   * Find the documents whose string could contain the given needle.
+   *
+   * @param needle The normalized needle.
+   * @return The sorted candidate document ids, or null if every document is a candidate.
+   */
+  int[] candidates(String needle) {
+    if (needle.isEmpty()) {
+      return null;
+    }
+    if (needle.length() < 3) {
+      return unionOfGramsContaining(needle);
+    }
+    List<PostingList> lists = new ArrayList<>();
+    for (long gram : grams(needle)) {
+      PostingList list = postings.get(gram);
+      if (list == null) {
+        return PostingList.EMPTY;
+      }
+      lists.add(list);
+    }
+    // Walk the rarest trigram and probe the others, so the cost follows the smallest list.
+    lists.sort((left, right) -> Integer.compare(left.size(), right.size()));
+    PostingList rarest = lists.get(0);
+    int[] result = new int[rarest.size()];
+    int size = 0;
+    for (int i = 0; i < rarest.size(); i++) {
+      int docId = rarest.get(i);
+      if (containedInAll(lists, docId)) {
+        result[size++] = docId;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private static boolean containedInAll(List<PostingList> lists, int docId) {
+    for (int i = 1; i < lists.size(); i++) {
+      if (!lists.get(i).contains(docId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int[] unionOfGramsContaining(String needle) {
+    long key =
+        needle.length() == 1
+            ? shortKey(needle.charAt(0))
+            : shortKey(needle.charAt(0), needle.charAt(1));
+    Set<Long> grams = gramsByShortKey.get(key);
+    if (grams == null) {
+      return PostingList.EMPTY;
+    }
+    int[] buffer = new int[16];
+    int size = 0;
+    for (long gram : grams) {
+      PostingList list = postings.get(gram);
+      if (buffer.length < size + list.size()) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + list.size()));
+      }
+      for (int i = 0; i < list.size(); i++) {
+        buffer[size++] = list.get(i);
+      }
+    }
+    return PostingList.sortedUnique(buffer, size);
+  }
+
+  private static Set<Long> paddedGrams(String normalized) {
+    return grams(PAD + normalized + PAD);
+  }
+
+  private static Set<Long> grams(String text) {
+    Set<Long> grams = new HashSet<>();
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      grams.add(encode(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2)));
+    }
+    return grams;
+  }
+
+  private static long encode(char first, char second, char third) {
+    return ((long) first << 32) | ((long) second << 16) | third;
+  }
+
+  private void removeShortKey(long key, long gram) {
+    Set<Long> grams = gramsByShortKey.get(key);
+    if (grams != null && grams.remove(gram) && grams.isEmpty()) {
+      gramsByShortKey.remove(key);
+    }
+  }
+
+  /** Report the keys of every character and character pair inside a trigram, skipping padding. */
+  private static void forEachShortKey(long gram, LongConsumer action) {
+    char first = (char) (gram >>> 32);
+    char second = (char) ((gram >>> 16) & 0xFFFF);
+    char third = (char) (gram & 0xFFFF);
+    for (char c : new char[] {first, second, third}) {
+      if (c != PAD) {
+        action.accept(shortKey(c));
+      }
+    }
+    if (first != PAD && second != PAD) {
+      action.accept(shortKey(first, second));
+    }
+    if (second != PAD && third != PAD) {
+      action.accept(shortKey(second, third));
+    }
+  }
+
+  // Single characters and pairs get distinct tags above the 32 bits a pair occupies.
+  private static long shortKey(char only) {
+    return (1L << 32) | only;
+  }
+
+  private static long shortKey(char first, char second) {
+    return (2L << 32) | ((long) first << 16) | second;
+  }
+}
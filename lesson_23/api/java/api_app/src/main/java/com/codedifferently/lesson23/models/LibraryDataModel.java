@@ -1,13 +1,7 @@
 package com.codedifferently.lesson23.models;
 
-import com.codedifferently.lesson23.library.Book;
-import com.codedifferently.lesson23.library.Dvd;
-import com.codedifferently.lesson23.library.Librarian;
 import com.codedifferently.lesson23.library.LibraryGuest;
-import com.codedifferently.lesson23.library.Magazine;
 import com.codedifferently.lesson23.library.MediaItem;
-import com.codedifferently.lesson23.library.Newspaper;
-import com.codedifferently.lesson23.library.Patron;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,21 +15,7 @@ public class LibraryDataModel {
   public List<MediaItem> getMediaItems() {
     List<MediaItem> results = new ArrayList<>();
     for (MediaItemModel mediaItemModel : mediaItems) {
-      switch (mediaItemModel.type) {
-        case BOOK ->
-            results.add(
-                new Book(
-                    mediaItemModel.id,
-                    mediaItemModel.title,
-                    mediaItemModel.isbn,
-                    mediaItemModel.authors,
-                    mediaItemModel.pages));
-        case DVD -> results.add(new Dvd(mediaItemModel.id, mediaItemModel.title));
-        case MAGAZINE -> results.add(new Magazine(mediaItemModel.id, mediaItemModel.title));
-        case NEWSPAPER -> results.add(new Newspaper(mediaItemModel.id, mediaItemModel.title));
-        default ->
-            throw new IllegalArgumentException("Unknown media item type: " + mediaItemModel.type);
-      }
+      results.add(mediaItemModel.toMediaItem());
     }
     return results;
   }
@@ -43,11 +23,7 @@ public class LibraryDataModel {
   public List<LibraryGuest> getGuests() {
     List<LibraryGuest> results = new ArrayList<>();
     for (LibraryGuestModel guestModel : this.guests) {
-      switch (guestModel.type) {
-        case "librarian" -> results.add(new Librarian(guestModel.name, guestModel.email));
-        case "patron" -> results.add(new Patron(guestModel.name, guestModel.email));
-        default -> throw new AssertionError();
-      }
+      results.add(guestModel.toLibraryGuest());
     }
     return results;
   }
@@ -1,5 +1,8 @@
 package com.codedifferently.lesson23.models;
 
+import com.codedifferently.lesson23.library.Librarian;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.Patron;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
@@ -15,6 +18,14 @@ public class LibraryGuestModel {
   public String name;
   @Id public String email;
 
-  @OneToMany(mappedBy = "email", fetch = FetchType.EAGER)
+  @OneToMany(mappedBy = "email", fetch = FetchType.LAZY)
   public List<CheckoutModel> checkedOutItems;
+
+  public LibraryGuest toLibraryGuest() {
+    return switch (type) {
+      case "librarian" -> new Librarian(name, email);
+      case "patron" -> new Patron(name, email);
+      default -> throw new AssertionError();
+    };
+  }
 }
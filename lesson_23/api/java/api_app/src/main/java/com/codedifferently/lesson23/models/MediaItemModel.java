@@ -1,6 +1,11 @@
 package com.codedifferently.lesson23.models;
 
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Magazine;
+import com.codedifferently.lesson23.library.MediaItem;
 import com.codedifferently.lesson23.library.MediaType;
+import com.codedifferently.lesson23.library.Newspaper;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -27,4 +32,14 @@ public class MediaItemModel {
   public String edition;
   public Integer pages = 0;
   public Integer runtime = 0;
+
+  public MediaItem toMediaItem() {
+    return switch (type) {
+      case BOOK -> new Book(id, title, isbn, authors, pages);
+      case DVD -> new Dvd(id, title);
+      case MAGAZINE -> new Magazine(id, title);
+      case NEWSPAPER -> new Newspaper(id, title);
+      default -> throw new IllegalArgumentException("Unknown media item type: " + type);
+    };
+  }
 }
@@ -0,0 +1,31 @@
+package com.codedifferently.lesson23.repository;
+
+import com.codedifferently.lesson23.models.CheckoutModel;
+import java.util.Collection;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface CheckoutRepository extends CrudRepository<CheckoutModel, UUID> {
+
+  /**
+   * Delete the checkouts of the given items in a single statement.
+   *
+   * @param itemIds The ids of the items.
+   * @return The number of checkouts deleted.
+   */
+  @Modifying
+  @Query("delete from CheckoutModel c where c.itemId in :itemIds")
+  int deleteByItemIds(@Param("itemIds") Collection<UUID> itemIds);
+
+  /**
+   * Delete every checkout in a single statement.
+   *
+   * @return The number of checkouts deleted.
+   */
+  @Modifying
+  @Query("delete from CheckoutModel c")
+  int deleteAllCheckouts();
+}
@@ -1,11 +1,96 @@
 package com.codedifferently.lesson23.repository;
 
+import static com.codedifferently.lesson23.repository.RepositoryCacheConfiguration.GUESTS;
+
 import com.codedifferently.lesson23.models.LibraryGuestModel;
+import jakarta.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 public interface LibraryGuestRepository extends CrudRepository<LibraryGuestModel, String> {
 
+  /**
+   * Find every guest along with their checked out items.
+   *
+   * <p>The checkouts are fetched in the same query so callers can read them after the session
+   * that loaded the guests has closed.
+   *
+   * @return The guests.
+   */
   @Override
+  @EntityGraph(attributePaths = "checkedOutItems")
   List<LibraryGuestModel> findAll();
+
+  /**
+   * Find a guest by email along with their checked out items.
+   *
+   * <p>The checkouts are fetched eagerly since the cached guest outlives the session that loaded
+   * it. Writers of checkouts must evict the guests they touch.
+   *
+   * @param email The email of the guest.
+   * @return The guest, or empty if there is none.
+   */
+  @Override
+  @Cacheable(GUESTS)
+  @EntityGraph(attributePaths = "checkedOutItems")
+  Optional<LibraryGuestModel> findById(String email);
+
+  @Override
+  @CacheEvict(cacheNames = GUESTS, key = "#p0.email")
+  <S extends LibraryGuestModel> S save(S guest);
+
+  @Override
+  @CacheEvict(cacheNames = GUESTS, allEntries = true)
+  <S extends LibraryGuestModel> Iterable<S> saveAll(Iterable<S> guests);
+
+  @Override
+  @CacheEvict(GUESTS)
+  void deleteById(String email);
+
+  @Override
+  @CacheEvict(cacheNames = GUESTS, key = "#p0.email")
+  void delete(LibraryGuestModel guest);
+
+  @Override
+  @CacheEvict(cacheNames = GUESTS, allEntries = true)
+  void deleteAllById(Iterable<? extends String> emails);
+
+  @Override
+  @CacheEvict(cacheNames = GUESTS, allEntries = true)
+  void deleteAll(Iterable<? extends LibraryGuestModel> guests);
+
+  @Override
+  @CacheEvict(cacheNames = GUESTS, allEntries = true)
+  void deleteAll();
+
+  /**
+   * Find every guest along with their checked out items in a single query.
+   *
+   * @return The guests.
+   */
+  @Query("select distinct g from LibraryGuestModel g left join fetch g.checkedOutItems")
+  List<LibraryGuestModel> findAllWithCheckouts();
+
+  /**
+   * Stream every guest along with their checked out items through a database cursor.
+   *
+   * <p>Rows are ordered by guest so each guest is complete before the next one is read. The stream
+   * must be consumed inside a transaction and closed afterwards.
+   *
+   * @return The guests.
+   */
+  @Query("select g from LibraryGuestModel g left join fetch g.checkedOutItems order by g.email")
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  Stream<LibraryGuestModel> streamAllWithCheckouts();
 }
@@ -1,12 +1,69 @@
 package com.codedifferently.lesson23.repository;
 
+import static com.codedifferently.lesson23.repository.RepositoryCacheConfiguration.MEDIA_ITEMS;
+
 import com.codedifferently.lesson23.models.MediaItemModel;
+import jakarta.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 public interface MediaItemRepository extends CrudRepository<MediaItemModel, UUID> {
 
   @Override
   List<MediaItemModel> findAll();
+
+  @Override
+  @Cacheable(MEDIA_ITEMS)
+  Optional<MediaItemModel> findById(UUID id);
+
+  @Override
+  @CacheEvict(cacheNames = MEDIA_ITEMS, key = "#p0.id")
+  <S extends MediaItemModel> S save(S item);
+
+  @Override
+  @CacheEvict(cacheNames = MEDIA_ITEMS, allEntries = true)
+  <S extends MediaItemModel> Iterable<S> saveAll(Iterable<S> items);
+
+  @Override
+  @CacheEvict(MEDIA_ITEMS)
+  void deleteById(UUID id);
+
+  @Override
+  @CacheEvict(cacheNames = MEDIA_ITEMS, key = "#p0.id")
+  void delete(MediaItemModel item);
+
+  @Override
+  @CacheEvict(cacheNames = MEDIA_ITEMS, allEntries = true)
+  void deleteAllById(Iterable<? extends UUID> ids);
+
+  @Override
+  @CacheEvict(cacheNames = MEDIA_ITEMS, allEntries = true)
+  void deleteAll(Iterable<? extends MediaItemModel> items);
+
+  @Override
+  @CacheEvict(cacheNames = MEDIA_ITEMS, allEntries = true)
+  void deleteAll();
+
+  /**
+   * Stream every media item through a database cursor, fetching rows in batches.
+   *
+   * <p>The stream must be consumed inside a transaction and closed afterwards. Entities are loaded
+   * read-only, so callers can detach them as soon as they are converted.
+   *
+   * @return The media items.
+   */
+  @Query("select m from MediaItemModel m")
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  Stream<MediaItemModel> streamAll();
 }
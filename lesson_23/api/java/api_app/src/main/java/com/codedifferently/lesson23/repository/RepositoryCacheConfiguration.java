@@ -0,0 +1,24 @@
+package com.codedifferently.lesson23.repository;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches repository lookups by id in front of the database.
+ *
+ * <p>The caches are Caffeine caches, configured under {@code spring.cache} in the application
+ * properties. Caffeine admits entries with W-TinyLFU, so a burst of one-off lookups cannot evict
+ * the entries that are read often. Repositories evict an entry whenever it is saved or deleted, and
+ * the hit, miss and eviction counts are published as the {@code cache.gets} and {@code
+ * cache.evictions} metrics.
+ */
+@Configuration
+@EnableCaching
+public class RepositoryCacheConfiguration {
+
+  /** The cache of media items, keyed by id. */
+  public static final String MEDIA_ITEMS = "mediaItems";
+
+  /** The cache of guests with their checkouts, keyed by email. */
+  public static final String GUESTS = "guests";
+}
@@ -0,0 +1,55 @@
+package com.codedifferently.lesson23.web;
+
+import com.codedifferently.lesson23.library.LibraryStats;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class GetLibraryStatsResponse {
+
+  private long itemCount;
+  private Map<String, Long> itemCountsByType;
+  private long checkedOutCount;
+  private long guestCount;
+  private long librarianCount;
+
+  /** The number of guests with at least one checkout. */
+  private int borrowerCount;
+
+  /** The number of items checked out by the guests with the most checkouts, highest first. */
+  private Map<UUID, Integer> topBorrowers;
+
+  private long searchCacheHitCount;
+  private long searchCacheMissCount;
+  private double searchCacheHitRatio;
+
+  /**
+   * Build a response from the library's stats.
+   *
+   * @param stats The stats of the library.
+   * @param topBorrowerCount The most borrowers to list checkout counts for.
+   * @return The response.
+   */
+  public static GetLibraryStatsResponse from(LibraryStats stats, int topBorrowerCount) {
+    Map<String, Long> itemCountsByType = new HashMap<>();
+    stats
+        .getItemCountsByType()
+        .forEach((type, count) -> itemCountsByType.put(type.getType(), count));
+    return GetLibraryStatsResponse.builder()
+        .itemCount(stats.getItemCount())
+        .itemCountsByType(itemCountsByType)
+        .checkedOutCount(stats.getCheckedOutCount())
+        .guestCount(stats.getGuestCount())
+        .librarianCount(stats.getLibrarianCount())
+        .borrowerCount(stats.getBorrowerCount())
+        .topBorrowers(stats.getTopBorrowers(topBorrowerCount))
+        .searchCacheHitCount(stats.getSearchCacheHitCount())
+        .searchCacheMissCount(stats.getSearchCacheMissCount())
+        .searchCacheHitRatio(stats.getSearchCacheHitRatio())
+        .build();
+  }
+}
@@ -9,5 +9,9 @@ import lombok.Singular;
 @Builder
 public class GetMediaItemsResponse {
 
-  @Singular private List<MediaItemResponse> items;
+  /** The items, each a {@link MediaItemResponse} or a map of the fields that were requested. */
+  @Singular private List<Object> items;
+
+  /** The cursor for the next page, or null if this is the last page. */
+  private String nextCursor;
 }
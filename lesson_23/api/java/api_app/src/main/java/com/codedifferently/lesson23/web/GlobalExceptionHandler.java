@@ -25,6 +25,13 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(getErrorsMap(errors), new HttpHeaders(), HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<Map<String, List<String>>> handleIllegalArguments(
+      IllegalArgumentException ex) {
+    return new ResponseEntity<>(
+        getErrorsMap(List.of(ex.getMessage())), new HttpHeaders(), HttpStatus.BAD_REQUEST);
+  }
+
   private Map<String, List<String>> getErrorsMap(List<String> errors) {
     Map<String, List<String>> errorResponse = new HashMap<>();
     errorResponse.put("errors", errors);
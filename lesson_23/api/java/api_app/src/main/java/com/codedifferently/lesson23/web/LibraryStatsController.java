@@ -0,0 +1,30 @@
+package com.codedifferently.lesson23.web;
+
+import com.codedifferently.lesson23.library.Library;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@CrossOrigin
+public class LibraryStatsController {
+
+  private static final int MAX_TOP_BORROWERS = 100;
+
+  private final Library library;
+
+  public LibraryStatsController(Library library) {
+    this.library = library;
+  }
+
+  @GetMapping("/stats")
+  public ResponseEntity<GetLibraryStatsResponse> getStats(
+      @RequestParam(defaultValue = "10") int topBorrowers) {
+    if (topBorrowers < 0 || topBorrowers > MAX_TOP_BORROWERS) {
+      throw new IllegalArgumentException("topBorrowers must be between 0 and " + MAX_TOP_BORROWERS);
+    }
+    return ResponseEntity.ok(GetLibraryStatsResponse.from(library.getStats(), topBorrowers));
+  }
+}
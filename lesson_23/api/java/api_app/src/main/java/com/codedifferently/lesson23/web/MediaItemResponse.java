@@ -1,7 +1,10 @@
 package com.codedifferently.lesson23.web;
 
 import com.codedifferently.lesson23.library.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import lombok.Builder;
 import lombok.Data;
@@ -10,6 +13,10 @@ import lombok.Data;
 @Builder
 public class MediaItemResponse {
 
+  /** The field names that can be requested in a projection. */
+  public static final Set<String> FIELDS =
+      Set.of("type", "id", "isbn", "title", "authors", "edition", "pages", "runtime");
+
   private String type;
   private UUID id;
   private String isbn;
@@ -36,4 +43,35 @@ public class MediaItemResponse {
 
     return result.build();
   }
+
+  /**
+   * Keep only the given fields of this response.
+   *
+   * <p>The full response always carries every field, but a projection leaves out the fields that
+   * have no value, so that clients get exactly what they asked for.
+   *
+   * @param fields The names of the fields to keep.
+   * @return The values of the kept fields keyed by name.
+   */
+  public Map<String, Object> project(Set<String> fields) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (String field : fields) {
+      Object value =
+          switch (field) {
+            case "type" -> type;
+            case "id" -> id;
+            case "isbn" -> isbn;
+            case "title" -> title;
+            case "authors" -> authors;
+            case "edition" -> edition;
+            case "pages" -> pages;
+            case "runtime" -> runtime;
+            default -> throw new IllegalArgumentException("Unknown field: " + field);
+          };
+      if (value != null) {
+        result.put(field, value);
+      }
+    }
+    return result;
+  }
 }
@@ -3,32 +3,122 @@ package com.codedifferently.lesson23.web;
 import com.codedifferently.lesson23.library.Librarian;
 import com.codedifferently.lesson23.library.Library;
 import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.library.MediaItemOrder;
 import com.codedifferently.lesson23.library.search.SearchCriteria;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @CrossOrigin
 public class MediaItemsController {
 
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int STREAM_FLUSH_INTERVAL = 500;
+
   private final Library library;
   private final Librarian librarian;
+  private final ObjectWriter itemWriter;
+  private final ObjectMapper objectMapper;
 
-  public MediaItemsController(Library library) throws IOException {
+  public MediaItemsController(Library library, ObjectMapper objectMapper) throws IOException {
     this.library = library;
     this.librarian = library.getLibrarians().stream().findFirst().orElseThrow();
+    this.objectMapper = objectMapper;
+    this.itemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
   }
 
   @GetMapping("/items")
-  public ResponseEntity<GetMediaItemsResponse> getItems() {
-    Set<MediaItem> items = library.search(SearchCriteria.builder().build());
-    List<MediaItemResponse> responseItems = items.stream().map(MediaItemResponse::from).toList();
-    var response = GetMediaItemsResponse.builder().items(responseItems).build();
+  public ResponseEntity<GetMediaItemsResponse> getItems(
+      @ModelAttribute SearchCriteria query,
+      @RequestParam(defaultValue = "id") String sort,
+      @RequestParam(required = false) Set<String> fields,
+      @RequestParam(defaultValue = "100") int limit,
+      @RequestParam(required = false) String cursor) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    validateFields(fields);
+    MediaItemOrder order = MediaItemOrder.fromString(sort);
+    MediaItemOrder.Position after = PageCursor.decode(cursor, order);
+    // Fetch one extra item to learn whether another page follows.
+    List<MediaItem> items = library.search(query, order, after, limit + 1);
+    boolean hasMore = items.size() > limit;
+    List<MediaItem> page = hasMore ? items.subList(0, limit) : items;
+    List<Object> responseItems = page.stream().map(item -> toResponse(item, fields)).toList();
+    String nextCursor =
+        hasMore ? PageCursor.encode(order, order.positionOf(page.get(limit - 1))) : null;
+    var response =
+        GetMediaItemsResponse.builder().items(responseItems).nextCursor(nextCursor).build();
     return ResponseEntity.ok(response);
   }
+
+  @GetMapping(value = "/items", params = "stream=true")
+  public ResponseEntity<StreamingResponseBody> streamItems(
+      @ModelAttribute SearchCriteria query,
+      @RequestParam(defaultValue = "id") String sort,
+      @RequestParam(required = false) Set<String> fields) {
+    validateFields(fields);
+    MediaItemOrder order = MediaItemOrder.fromString(sort);
+    // Compile the query before the response starts so a bad one is still reported as an error.
+    Iterable<MediaItem> items = library.searchInOrder(query, order);
+    StreamingResponseBody body = out -> writeItems(out, items, fields);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  /**
+   * Describe an item for a response, keeping only the requested fields if any were requested.
+   *
+   * @param item The item to describe.
+   * @param fields The fields to keep, or null for the full response.
+   * @return The full response, or a map of the requested fields.
+   */
+  private static Object toResponse(MediaItem item, Set<String> fields) {
+    MediaItemResponse response = MediaItemResponse.from(item);
+    return fields == null ? response : response.project(fields);
+  }
+
+  private static void validateFields(Set<String> fields) {
+    if (fields != null && !MediaItemResponse.FIELDS.containsAll(fields)) {
+      throw new IllegalArgumentException("fields must be among " + MediaItemResponse.FIELDS);
+    }
+  }
+
+  /**
+   * Write every matching item as a single JSON document while the items are produced.
+   *
+   * @param out The response stream.
+   * @param items The items to write, in order.
+   * @param fields The fields to write for each item, or null for every field.
+   * @throws IOException If the response cannot be written.
+   */
+  private void writeItems(OutputStream out, Iterable<MediaItem> items, Set<String> fields)
+      throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("items");
+      int written = 0;
+      for (MediaItem item : items) {
+        itemWriter.writeValue(generator, toResponse(item, fields));
+        if (++written % STREAM_FLUSH_INTERVAL == 0) {
+          generator.flush();
+        }
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
 }
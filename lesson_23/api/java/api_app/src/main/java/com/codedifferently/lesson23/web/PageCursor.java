@@ -0,0 +1,53 @@
+package com.codedifferently.lesson23.web;
+
+import com.codedifferently.lesson23.library.MediaItemOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/** Encodes and decodes the opaque cursors handed out by paginated endpoints. */
+public final class PageCursor {
+
+  private static final String SEPARATOR = "|";
+
+  private PageCursor() {}
+
+  /**
+   * Encode the position of the last item on a page as a cursor.
+   *
+   * @param order The order the page was listed in.
+   * @param position The position of the last item on the page.
+   * @return The opaque cursor.
+   */
+  public static String encode(MediaItemOrder order, MediaItemOrder.Position position) {
+    String raw = order.getName() + SEPARATOR + position.id() + SEPARATOR + position.key();
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a cursor back into the position of the last item on the previous page.
+   *
+   * @param cursor The opaque cursor, or null for the first page.
+   * @param order The order the caller is listing in.
+   * @return The position of the last item on the previous page, or null for the first page.
+   * @throws IllegalArgumentException If the cursor is malformed or was issued for another order.
+   */
+  public static MediaItemOrder.Position decode(String cursor, MediaItemOrder order)
+      throws IllegalArgumentException {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\|", 3);
+      if (parts.length != 3 || !parts[0].equals(order.getName())) {
+        throw new IllegalArgumentException();
+      }
+      return new MediaItemOrder.Position(parts[2], UUID.fromString(parts[1]));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.codedifferently.lesson23.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.Lesson23;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.repository.CheckoutRepository;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+@SpringBootTest
+@ContextConfiguration(classes = Lesson23.class)
+class LibraryCheckoutPersisterTest {
+
+  @Autowired private Library library;
+  @Autowired private CheckoutRepository checkoutRepository;
+
+  @Test
+  void testPersister_writesCheckoutsBehind() throws Exception {
+    // Arrange
+    MediaItem item =
+        library.getInfo().getItems().stream()
+            .filter(candidate -> candidate.canCheckOut() && !library.isCheckedOut(candidate))
+            .findFirst()
+            .orElseThrow();
+    LibraryGuest guest = library.getInfo().getGuests().iterator().next();
+
+    // Act
+    library.checkOutMediaItem(item, guest);
+    boolean written = await(() -> checkoutRepository.existsById(item.getId()));
+    library.checkInMediaItem(item, guest);
+    boolean removed = await(() -> !checkoutRepository.existsById(item.getId()));
+
+    // Assert
+    assertThat(written).isTrue();
+    assertThat(removed).isTrue();
+  }
+
+  @Test
+  void testPersister_dropsChangesRatherThanWaitWhenQueueIsFull() {
+    // Arrange
+    var persister = new LibraryCheckoutPersister();
+    MediaItem item = library.getInfo().getItems().iterator().next();
+    LibraryGuest guest = library.getInfo().getGuests().iterator().next();
+
+    // Act
+    for (int i = 0; i <= LibraryCheckoutPersister.QUEUE_CAPACITY; i++) {
+      persister.onMediaItemCheckedOut(item, guest, null);
+    }
+
+    // Assert
+    assertThat(persister.getDroppedChangeCount()).isEqualTo(1);
+  }
+
+  private static boolean await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + LibraryCheckoutPersister.FLUSH_INTERVAL.toNanos() * 10;
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(50);
+    }
+    return true;
+  }
+}
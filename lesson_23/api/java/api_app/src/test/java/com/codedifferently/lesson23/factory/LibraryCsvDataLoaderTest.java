@@ -3,18 +3,27 @@ package com.codedifferently.lesson23.factory;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.codedifferently.lesson23.Lesson23;
+import com.codedifferently.lesson23.library.Library;
 import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.LibraryStats;
 import com.codedifferently.lesson23.library.MediaItem;
 import com.codedifferently.lesson23.library.MediaType;
 import com.codedifferently.lesson23.models.CheckoutModel;
 import com.codedifferently.lesson23.models.LibraryDataModel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.test.context.ContextConfiguration;
 
 @SpringBootTest
@@ -82,4 +91,51 @@ class LibraryCsvDataLoaderTest {
     assertThat(guests.stream().map(LibraryGuest::getEmail).distinct().count()).isEqualTo(5);
     assertThat(guests.stream().map(LibraryGuest::getName).distinct().count()).isEqualTo(5);
   }
+
+  @Test
+  void testDataLoader_streamsIntoLibrary() throws Exception {
+    // Act
+    Library library = LibraryFactory.createWithLoader(new LibraryCsvDataLoader());
+
+    // Assert
+    LibraryStats stats = library.getStats();
+    assertThat(stats.getItemCount()).isEqualTo(31);
+    assertThat(stats.getItemCount(MediaType.BOOK)).isEqualTo(7);
+    assertThat(stats.getGuestCount()).isEqualTo(5);
+    assertThat(stats.getCheckedOutCount()).isEqualTo(4);
+  }
+
+  @Test
+  void testDataLoader_keepsLineBreaksInsideQuotedFields(@TempDir Path directory) throws Exception {
+    // Arrange
+    Files.writeString(
+        directory.resolve("media_items.csv"),
+        "type,id,title,isbn,authors,pages,runtime,edition\r\n"
+            + "dvd,e27a4e0d-9664-420d-955e-c0e295d0ce02,\"Line one\r\nLine two\",,,,,\r\n"
+            + "dvd,295ea581-cd61-4319-8b0c-e5c0c03286c5,\"Say \"\"hi\"\"\nagain\",,,,,\r\n");
+    Files.writeString(directory.resolve("guests.csv"), "type,name,email\r\n");
+    Files.writeString(directory.resolve("checked_out_items.csv"), "email,item_id,due_date\r\n");
+    var loader =
+        new LibraryCsvDataLoader(
+            new FileSystemResource(directory.toString() + "/"), ForkJoinPool.commonPool());
+    List<String> titles = Collections.synchronizedList(new ArrayList<>());
+
+    // Act
+    loader.loadData(
+        new LibraryDataSink() {
+          @Override
+          public void addGuest(LibraryGuest guest) {}
+
+          @Override
+          public void addMediaItem(MediaItem item) {
+            titles.add(item.getTitle());
+          }
+
+          @Override
+          public void addCheckout(String email, CheckoutModel checkout) {}
+        });
+
+    // Assert
+    assertThat(titles).containsExactlyInAnyOrder("Line one\r\nLine two", "Say \"hi\"\nagain");
+  }
 }
@@ -0,0 +1,129 @@
+package com.codedifferently.lesson23.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.library.Patron;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+class LibraryFactoryTest {
+
+  @Test
+  void testFactory_buildsSameLibraryInParallel() throws Exception {
+    // Arrange
+    var loader = new LibraryCsvDataLoader();
+
+    // Act
+    Library sequential = LibraryFactory.createWithLoader(loader);
+    Library parallel = LibraryFactory.createWithLoaderInParallel(loader);
+
+    // Assert
+    assertThat(parallel.getInfo().getItems())
+        .containsExactlyInAnyOrderElementsOf(sequential.getInfo().getItems());
+    assertThat(parallel.getStats().getCheckedOutCount())
+        .isEqualTo(sequential.getStats().getCheckedOutCount());
+    for (LibraryGuest guest : sequential.getInfo().getGuests()) {
+      LibraryGuest sameGuest = parallel.findLibraryGuest(guest.getEmail()).orElseThrow();
+      assertThat(parallel.getCheckedOutByGuest(sameGuest))
+          .containsExactlyInAnyOrderElementsOf(sequential.getCheckedOutByGuest(guest));
+    }
+  }
+
+  @Test
+  void testFactory_rejectsUnknownCheckoutsBeforeApplyingAny() {
+    // Arrange
+    var builder = new ParallelLibraryBuilder();
+    var patron = new Patron("Jane Doe", "jane@example.com");
+    var dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    builder.addGuest(patron);
+    builder.addMediaItem(dvd);
+    builder.addCheckout(patron.getEmail(), checkout(dvd));
+    builder.addCheckout("nobody@example.com", checkout(dvd));
+    builder.addCheckout(patron.getEmail(), checkout(new Dvd(UUID.randomUUID(), "Missing")));
+
+    // Act & Assert
+    assertThatThrownBy(() -> builder.build("test-library"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageStartingWith("2 checkouts refer to an unknown guest or item");
+    assertThat(dvd.isCheckedOut()).isFalse();
+  }
+
+  @Test
+  void testFactory_rejectsDuplicateCheckoutsBeforeApplyingAny() {
+    // Arrange
+    var builder = new ParallelLibraryBuilder();
+    var jane = new Patron("Jane Doe", "jane@example.com");
+    var john = new Patron("John Doe", "john@example.com");
+    var dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    var other = new Dvd(UUID.randomUUID(), "Inception");
+    builder.addGuest(jane);
+    builder.addGuest(john);
+    builder.addMediaItem(dvd);
+    builder.addMediaItem(other);
+    builder.addCheckout(jane.getEmail(), checkout(other));
+    builder.addCheckout(jane.getEmail(), checkout(dvd));
+    builder.addCheckout(john.getEmail(), checkout(dvd));
+
+    // Act & Assert
+    assertThatThrownBy(() -> builder.build("test-library"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageStartingWith("1 checkouts refer to an item that cannot be checked out");
+    assertThat(dvd.isCheckedOut()).isFalse();
+    assertThat(other.isCheckedOut()).isFalse();
+  }
+
+  @Test
+  void testFactory_rejectsDuplicateCheckoutRowsInEitherMode(@TempDir Path directory)
+      throws Exception {
+    // Arrange
+    String itemId = UUID.randomUUID().toString();
+    Files.writeString(
+        directory.resolve("media_items.csv"),
+        "type,id,title,isbn,authors,pages,runtime,edition\n"
+            + "dvd,"
+            + itemId
+            + ",The Matrix,,,,,\n");
+    Files.writeString(
+        directory.resolve("guests.csv"),
+        "type,name,email\n"
+            + "librarian,Jane Doe,jane@example.com\n"
+            + "patron,John Doe,john@example.com\n");
+    Files.writeString(
+        directory.resolve("checked_out_items.csv"),
+        "email,item_id,due_date\n"
+            + "jane@example.com,"
+            + itemId
+            + ",2024-04-05T00:00:00Z\n"
+            + "john@example.com,"
+            + itemId
+            + ",2024-04-05T00:00:00Z\n");
+    var loader =
+        new LibraryCsvDataLoader(
+            new FileSystemResource(directory.toString() + "/"), ForkJoinPool.commonPool());
+
+    // Act & Assert
+    assertThatThrownBy(() -> LibraryFactory.createWithLoader(loader))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Checkout refused by the library: john@example.com, " + itemId);
+    assertThatThrownBy(() -> LibraryFactory.createWithLoaderInParallel(loader))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageStartingWith("1 checkouts refer to an item that cannot be checked out");
+  }
+
+  private static CheckoutModel checkout(MediaItem item) {
+    var checkout = new CheckoutModel();
+    checkout.itemId = item.getId();
+    return checkout;
+  }
+}
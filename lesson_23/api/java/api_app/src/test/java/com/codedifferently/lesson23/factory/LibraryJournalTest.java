@@ -0,0 +1,164 @@
+package com.codedifferently.lesson23.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Librarian;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.library.Patron;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LibraryJournalTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testJournal_replaysChangesAfterRestart() throws Exception {
+    // Arrange
+    var journal = new LibraryJournal(tempDir);
+    Library library = journal.recover(new LibraryCsvDataLoader());
+    Librarian librarian = library.getLibrarians().iterator().next();
+    var patron = new Patron("Jane Doe", "jane@example.com");
+    var book = new Book(UUID.randomUUID(), "Journaled", "978-0", List.of("A. Writer"), 42);
+    var dvd = new Dvd(UUID.randomUUID(), "Journaled Movie");
+    Instant dueDate = Instant.parse("2024-06-01T12:00:00Z");
+    library.addLibraryGuest(patron);
+    library.addMediaItem(book, librarian);
+    library.addMediaItem(dvd, librarian);
+    library.checkOutMediaItem(book, patron, dueDate);
+    library.checkOutMediaItem(dvd, patron);
+    library.checkInMediaItem(dvd, patron);
+    library.removeMediaItem(dvd, librarian);
+    journal.close();
+
+    // Act
+    var reopened = new LibraryJournal(tempDir);
+    Library restored = reopened.recover(null);
+    reopened.close();
+
+    // Assert
+    LibraryGuest guest = restored.findLibraryGuest("jane@example.com").orElseThrow();
+    assertThat(restored.getCheckedOutByGuest(guest)).containsExactly(book);
+    assertThat(restored.getDueDate(book)).contains(dueDate);
+    assertThat(restored.hasMediaItem(dvd)).isFalse();
+    assertThat(((Book) restored.findMediaItem(book.getId()).orElseThrow()).getAuthors())
+        .containsExactly("A. Writer");
+    assertThat(restored.getStats().getItemCount()).isEqualTo(32);
+    assertThat(restored.getStats().getCheckedOutCount()).isEqualTo(5);
+  }
+
+  @Test
+  void testJournal_replaysBulkAddedItems() throws Exception {
+    // Arrange
+    var journal = new LibraryJournal(tempDir);
+    Library library = journal.recover(new LibraryCsvDataLoader());
+    Librarian librarian = library.getLibrarians().iterator().next();
+    var dvd = new Dvd(UUID.randomUUID(), "Bulk Movie");
+    var book = new Book(UUID.randomUUID(), "Bulk Book", "978-1", List.of("B. Writer"), 7);
+
+    // Act
+    library.addMediaItems(List.of(dvd, book), librarian);
+    journal.close();
+    var reopened = new LibraryJournal(tempDir);
+    Library restored = reopened.recover(null);
+    reopened.close();
+
+    // Assert
+    assertThat(restored.hasMediaItem(dvd)).isTrue();
+    assertThat(restored.hasMediaItem(book)).isTrue();
+    assertThat(restored.getStats().getItemCount()).isEqualTo(33);
+  }
+
+  @Test
+  void testJournal_compactsIntoSnapshot() throws Exception {
+    // Arrange
+    var journal = new LibraryJournal(tempDir);
+    Library library = journal.recover(new LibraryCsvDataLoader());
+    var patron = new Patron("Jane Doe", "jane@example.com");
+    library.addLibraryGuest(patron);
+    MediaItem item =
+        library.getInfo().getItems().stream()
+            .filter(candidate -> !library.isCheckedOut(candidate))
+            .findFirst()
+            .orElseThrow();
+    library.checkOutMediaItem(item, patron);
+
+    // Act
+    journal.compact();
+    journal.close();
+
+    // Assert
+    try (var files = Files.list(tempDir)) {
+      assertThat(files.map(file -> file.getFileName().toString()))
+          .containsExactlyInAnyOrder("snapshot-1.bin", "journal-1.log");
+    }
+    var reopened = new LibraryJournal(tempDir);
+    Library restored = reopened.recover(null);
+    reopened.close();
+    LibraryGuest guest = restored.findLibraryGuest("jane@example.com").orElseThrow();
+    assertThat(restored.getCheckedOutByGuest(guest)).containsExactly(item);
+  }
+
+  @Test
+  void testJournal_ignoresTornRecord() throws Exception {
+    // Arrange
+    var journal = new LibraryJournal(tempDir);
+    Library library = journal.recover(new LibraryCsvDataLoader());
+    library.addLibraryGuest(new Patron("Jane Doe", "jane@example.com"));
+    journal.close();
+    byte[] tornRecord = {0, 0, 0, 50, 1, 2};
+    Files.write(tempDir.resolve("journal-0.log"), tornRecord, StandardOpenOption.APPEND);
+
+    // Act
+    var reopened = new LibraryJournal(tempDir);
+    Library restored = reopened.recover(null);
+    restored.addLibraryGuest(new Patron("John Doe", "john@example.com"));
+    reopened.close();
+    var reopenedAgain = new LibraryJournal(tempDir);
+    Library restoredAgain = reopenedAgain.recover(null);
+    reopenedAgain.close();
+
+    // Assert
+    assertThat(restored.hasLibraryGuest("jane@example.com")).isTrue();
+    assertThat(restoredAgain.hasLibraryGuest("jane@example.com")).isTrue();
+    assertThat(restoredAgain.hasLibraryGuest("john@example.com")).isTrue();
+  }
+
+  @Test
+  void testJournal_dropsSegmentsAfterCorruptRecord() throws Exception {
+    // Arrange
+    var journal = new LibraryJournal(tempDir);
+    journal
+        .recover(new LibraryCsvDataLoader())
+        .addLibraryGuest(new Patron("Jane Doe", "jane@example.com"));
+    journal.close();
+    var reopened = new LibraryJournal(tempDir);
+    reopened.recover(null).addLibraryGuest(new Patron("John Doe", "john@example.com"));
+    reopened.close();
+    Path firstSegment = tempDir.resolve("journal-0.log");
+    byte[] records = Files.readAllBytes(firstSegment);
+    records[records.length - 1] ^= 1;
+    Files.write(firstSegment, records);
+
+    // Act
+    var reopenedAgain = new LibraryJournal(tempDir);
+    Library restored = reopenedAgain.recover(null);
+    reopenedAgain.close();
+
+    // Assert
+    assertThat(restored.hasLibraryGuest("jane@example.com")).isFalse();
+    assertThat(restored.hasLibraryGuest("john@example.com")).isFalse();
+    assertThat(Files.size(firstSegment)).isZero();
+    assertThat(Files.size(tempDir.resolve("journal-1.log"))).isZero();
+  }
+}
@@ -2,7 +2,9 @@ package com.codedifferently.lesson23.factory;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.codedifferently.lesson23.library.Library;
 import com.codedifferently.lesson23.library.LibraryGuest;
+import com.codedifferently.lesson23.library.LibraryStats;
 import com.codedifferently.lesson23.library.MediaItem;
 import com.codedifferently.lesson23.library.MediaType;
 import com.codedifferently.lesson23.models.CheckoutModel;
@@ -74,4 +76,17 @@ class LibraryJsonDataLoaderTest {
     assertThat(guests.stream().map(LibraryGuest::getEmail).distinct().count()).isEqualTo(5);
     assertThat(guests.stream().map(LibraryGuest::getName).distinct().count()).isEqualTo(5);
   }
+
+  @Test
+  void testDataLoader_streamsIntoLibrary() throws Exception {
+    // Act
+    Library library = LibraryFactory.createWithLoader(new LibraryJsonDataLoader());
+
+    // Assert
+    LibraryStats stats = library.getStats();
+    assertThat(stats.getItemCount()).isEqualTo(31);
+    assertThat(stats.getItemCount(MediaType.DVD)).isEqualTo(8);
+    assertThat(stats.getGuestCount()).isEqualTo(5);
+    assertThat(stats.getCheckedOutCount()).isEqualTo(4);
+  }
 }
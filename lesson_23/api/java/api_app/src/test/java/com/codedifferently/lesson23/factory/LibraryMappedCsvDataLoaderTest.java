@@ -0,0 +1,55 @@
+package com.codedifferently.lesson23.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryStats;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.library.MediaType;
+import com.codedifferently.lesson23.library.search.SearchCriteria;
+import com.codedifferently.lesson23.models.LibraryDataModel;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class LibraryMappedCsvDataLoaderTest {
+
+  private static LibraryDataModel libraryDataModel;
+
+  @BeforeAll
+  static void beforeAll() throws Exception {
+    libraryDataModel = new LibraryMappedCsvDataLoader().loadData();
+  }
+
+  @Test
+  void testDataLoader_matchesCommonsCsvLoader() throws Exception {
+    // Arrange
+    LibraryDataModel expected = new LibraryCsvDataLoader().loadData();
+
+    // Act
+    List<MediaItem> items = libraryDataModel.getMediaItems();
+
+    // Assert
+    assertThat(items).containsExactlyElementsOf(expected.getMediaItems());
+    assertThat(items.stream().map(MediaItem::getTitle).toList())
+        .isEqualTo(expected.getMediaItems().stream().map(MediaItem::getTitle).toList());
+    assertThat(libraryDataModel.getCheckoutsByEmail().values().stream().mapToInt(List::size).sum())
+        .isEqualTo(4);
+  }
+
+  @Test
+  void testDataLoader_streamsIntoLibrary() throws Exception {
+    // Act
+    Library library = LibraryFactory.createWithLoader(new LibraryMappedCsvDataLoader());
+
+    // Assert
+    LibraryStats stats = library.getStats();
+    assertThat(stats.getItemCount(MediaType.BOOK)).isEqualTo(7);
+    assertThat(stats.getItemCount()).isEqualTo(31);
+    assertThat(stats.getGuestCount()).isEqualTo(5);
+    assertThat(stats.getCheckedOutCount()).isEqualTo(4);
+    assertThat(library.search(SearchCriteria.builder().type("book").build()))
+        .allSatisfy(item -> assertThat(((Book) item).getAuthors()).isNotEmpty());
+  }
+}
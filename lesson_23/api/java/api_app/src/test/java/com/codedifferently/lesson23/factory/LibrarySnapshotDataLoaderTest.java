@@ -0,0 +1,88 @@
+package com.codedifferently.lesson23.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codedifferently.lesson23.library.Library;
+import com.codedifferently.lesson23.library.LibraryStats;
+import com.codedifferently.lesson23.library.MediaItem;
+import com.codedifferently.lesson23.library.MediaType;
+import com.codedifferently.lesson23.models.LibraryDataModel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+class LibrarySnapshotDataLoaderTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testDataLoader_roundTripsLoaderData() throws Exception {
+    // Arrange
+    LibraryDataModel expected = new LibraryCsvDataLoader().loadData();
+    var writer = new LibrarySnapshotWriter();
+    new LibraryCsvDataLoader().loadData(writer);
+    Path snapshot = tempDir.resolve("library.snapshot");
+    writer.write(snapshot);
+
+    // Act
+    LibraryDataModel actual =
+        new LibrarySnapshotDataLoader(new FileSystemResource(snapshot)).loadData();
+
+    // Assert
+    assertThat(actual.getMediaItems()).containsExactlyElementsOf(expected.getMediaItems());
+    assertThat(actual.getMediaItems().stream().map(MediaItem::getTitle).toList())
+        .isEqualTo(expected.getMediaItems().stream().map(MediaItem::getTitle).toList());
+    assertThat(actual.getGuests()).containsExactlyElementsOf(expected.getGuests());
+    assertThat(dueDatesByItem(actual)).isEqualTo(dueDatesByItem(expected));
+  }
+
+  @Test
+  void testDataLoader_restoresLibrary() throws Exception {
+    // Arrange
+    Library original = LibraryFactory.createWithLoader(new LibraryCsvDataLoader());
+    var writer = new LibrarySnapshotWriter();
+    writer.addLibrary(original);
+    Path snapshot = tempDir.resolve("library.snapshot");
+    writer.write(snapshot);
+
+    // Act
+    Library library =
+        LibraryFactory.createWithLoader(
+            new LibrarySnapshotDataLoader(new FileSystemResource(snapshot)));
+
+    // Assert
+    LibraryStats stats = library.getStats();
+    assertThat(stats.getItemCount(MediaType.BOOK)).isEqualTo(7);
+    assertThat(stats.getItemCount()).isEqualTo(31);
+    assertThat(stats.getGuestCount()).isEqualTo(5);
+    assertThat(stats.getCheckedOutCount()).isEqualTo(4);
+    assertThat(library.getInfo().getCheckedOutItemsByGuest())
+        .isEqualTo(original.getInfo().getCheckedOutItemsByGuest());
+  }
+
+  @Test
+  void testDataLoader_rejectsOtherFiles() throws Exception {
+    // Arrange
+    Path file = Files.write(tempDir.resolve("library.snapshot"), new byte[] {1, 2, 3});
+
+    // Act & Assert
+    assertThatThrownBy(() -> new LibrarySnapshotDataLoader(new FileSystemResource(file)).loadData())
+        .isInstanceOf(IOException.class)
+        .hasMessage("Not a library snapshot");
+  }
+
+  private static Map<UUID, Instant> dueDatesByItem(LibraryDataModel model) {
+    return model.getCheckoutsByEmail().values().stream()
+        .flatMap(List::stream)
+        .collect(Collectors.toMap(checkout -> checkout.itemId, checkout -> checkout.dueDate));
+  }
+}
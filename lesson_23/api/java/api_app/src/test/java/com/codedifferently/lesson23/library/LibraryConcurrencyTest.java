@@ -0,0 +1,193 @@
+package com.codedifferently.lesson23.library;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.library.exceptions.MediaItemCheckedOutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+
+class LibraryConcurrencyTest {
+
+  private static final int THREADS = 64;
+  private static final int ITEMS = 500;
+
+  private Library classUnderTest;
+  private Librarian librarian;
+  private List<MediaItem> items;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    classUnderTest = new Library("compton-library");
+    librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    classUnderTest.addLibraryGuest(librarian);
+    items = new ArrayList<>();
+    for (int i = 0; i < ITEMS; i++) {
+      Dvd dvd = new Dvd(UUID.randomUUID(), "Movie " + i);
+      classUnderTest.addMediaItem(dvd, librarian);
+      items.add(dvd);
+    }
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @RepeatedTest(5)
+  void testLibrary_neverChecksOutAnItemTwice() throws Exception {
+    // Arrange
+    List<Patron> patrons = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      Patron patron = new Patron("Patron " + i, "patron" + i + "@example.com");
+      classUnderTest.addLibraryGuest(patron);
+      patrons.add(patron);
+    }
+    AtomicInteger successfulCheckouts = new AtomicInteger();
+    // Act
+    runConcurrently(
+        patrons.stream()
+            .map(
+                patron ->
+                    (Callable<Void>)
+                        () -> {
+                          List<MediaItem> shuffled = new ArrayList<>(items);
+                          Collections.shuffle(shuffled);
+                          for (MediaItem item : shuffled) {
+                            if (classUnderTest.checkOutMediaItem(item, patron)) {
+                              successfulCheckouts.incrementAndGet();
+                            }
+                          }
+                          return null;
+                        })
+            .toList());
+    // Assert
+    assertThat(successfulCheckouts.get()).isEqualTo(ITEMS);
+    List<MediaItem> checkedOut = new ArrayList<>();
+    for (Patron patron : patrons) {
+      checkedOut.addAll(patron.getCheckedOutMediaItems());
+    }
+    assertThat(checkedOut).hasSize(ITEMS).doesNotHaveDuplicates();
+  }
+
+  @RepeatedTest(5)
+  void testLibrary_neverRemovesACheckedOutItem() throws Exception {
+    // Arrange
+    Patron patron = new Patron("John Doe", "john@example.com");
+    classUnderTest.addLibraryGuest(patron);
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      boolean remover = i % 2 == 0;
+      tasks.add(
+          () -> {
+            for (MediaItem item : items) {
+              if (remover) {
+                try {
+                  classUnderTest.removeMediaItem(item, librarian);
+                } catch (MediaItemCheckedOutException e) {
+                  // Expected when the other side won the race.
+                }
+              } else {
+                classUnderTest.checkOutMediaItem(item, patron);
+              }
+            }
+            return null;
+          });
+    }
+    // Act
+    runConcurrently(tasks);
+    // Assert
+    for (MediaItem item : patron.getCheckedOutMediaItems()) {
+      assertThat(classUnderTest.hasMediaItem(item)).isTrue();
+      assertThat(classUnderTest.isCheckedOut(item)).isTrue();
+    }
+    for (MediaItem item : items) {
+      if (!classUnderTest.hasMediaItem(item)) {
+        assertThat(classUnderTest.isCheckedOut(item)).isFalse();
+      }
+    }
+  }
+
+  @RepeatedTest(5)
+  void testLibrary_handsPopularItemToEveryHolderOnce() throws Exception {
+    // Arrange
+    MediaItem popular = items.get(0);
+    classUnderTest.checkOutMediaItem(popular, librarian);
+    Map<UUID, CountDownLatch> handedOff = new ConcurrentHashMap<>();
+    List<Patron> patrons = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      Patron patron = new Patron("Patron " + i, "patron" + i + "@example.com");
+      classUnderTest.addLibraryGuest(patron);
+      patrons.add(patron);
+      handedOff.put(patron.getId(), new CountDownLatch(1));
+    }
+    classUnderTest.addListener(
+        new LibraryListener() {
+          @Override
+          public void onHoldFulfilled(MediaItem item, LibraryGuest guest) {
+            handedOff.get(guest.getId()).countDown();
+          }
+        });
+    // Act
+    runConcurrently(
+        patrons.stream()
+            .map(
+                patron ->
+                    (Callable<Void>)
+                        () -> {
+                          assertThat(classUnderTest.placeHold(popular, patron)).isTrue();
+                          return null;
+                        })
+            .toList());
+    classUnderTest.checkInMediaItem(popular, librarian);
+    runConcurrently(
+        patrons.stream()
+            .map(
+                patron ->
+                    (Callable<Void>)
+                        () -> {
+                          assertThat(handedOff.get(patron.getId()).await(30, TimeUnit.SECONDS))
+                              .isTrue();
+                          assertThat(classUnderTest.checkInMediaItem(popular, patron)).isTrue();
+                          return null;
+                        })
+            .toList());
+    // Assert
+    assertThat(classUnderTest.isCheckedOut(popular)).isFalse();
+    assertThat(classUnderTest.getHolds(popular)).isEmpty();
+    assertThat(classUnderTest.getStats().getCheckedOutCount()).isZero();
+  }
+
+  private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Void>> futures = new ArrayList<>();
+    for (Callable<Void> task : tasks) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                return task.call();
+              }));
+    }
+    start.countDown();
+    for (Future<Void> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+  }
+}
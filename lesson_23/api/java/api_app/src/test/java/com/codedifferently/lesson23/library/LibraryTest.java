@@ -2,11 +2,18 @@ package com.codedifferently.lesson23.library;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 
 import com.codedifferently.lesson23.library.exceptions.MediaItemCheckedOutException;
+import com.codedifferently.lesson23.library.search.SearchCriteria;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -351,4 +358,433 @@ class LibraryTest {
     // Assert
     assertThat(classUnderTest.getPatrons().size()).isEqualTo(2);
   }
+
+  @Test
+  void testLibrary_sharesInfoSnapshotUntilChanged() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Dvd dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addMediaItem(dvd, librarian);
+    LibraryInfo before = classUnderTest.getInfo();
+
+    // Act
+    LibraryInfo unchanged = classUnderTest.getInfo();
+    classUnderTest.checkOutMediaItem(dvd, librarian);
+    LibraryInfo after = classUnderTest.getInfo();
+
+    // Assert
+    assertThat(unchanged).isSameAs(before);
+    assertThat(before.getCheckedOutItemsByGuest().get(librarian.getId())).isEmpty();
+    assertThat(after.getCheckedOutItemsByGuest().get(librarian.getId())).containsExactly(dvd);
+    assertThatThrownBy(() -> after.getItems().clear())
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void testLibrary_updatesInfoAfterBulkAddsAndRemovals() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    classUnderTest.addLibraryGuest(librarian);
+    List<Dvd> dvds = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      dvds.add(new Dvd(UUID.randomUUID(), "Dvd " + i));
+    }
+    classUnderTest.addMediaItems(dvds, librarian);
+    LibraryInfo before = classUnderTest.getInfo();
+
+    // Act
+    classUnderTest.removeMediaItem(dvds.get(0), librarian);
+    Instant dueDate = Instant.now().plus(Duration.ofDays(7));
+    classUnderTest.checkOutMediaItem(dvds.get(1), librarian, dueDate);
+    LibraryInfo after = classUnderTest.getInfo();
+
+    // Assert
+    assertThat(before.getItems()).hasSize(100).containsExactlyInAnyOrderElementsOf(dvds);
+    assertThat(after.getItems()).hasSize(99).doesNotContain(dvds.get(0)).contains(dvds.get(99));
+    assertThat(after.getCheckedOutItemsByGuest().get(librarian.getId()))
+        .containsExactly(dvds.get(1));
+    assertThat(after.getDueDatesByItemId()).containsExactly(entry(dvds.get(1).getId(), dueDate));
+  }
+
+  @Test
+  void testLibrary_tracksStatsAsItemsMove() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron patron = new Patron("John Doe", "john@example.com");
+    Dvd dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    Magazine magazine = new Magazine(UUID.randomUUID(), "Time");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(patron);
+    classUnderTest.addMediaItem(dvd, librarian);
+    classUnderTest.addMediaItem(magazine, librarian);
+
+    // Act
+    classUnderTest.checkOutMediaItem(dvd, patron);
+    boolean returnedByOtherGuest = classUnderTest.checkInMediaItem(dvd, librarian);
+
+    // Assert
+    LibraryStats stats = classUnderTest.getStats();
+    assertThat(returnedByOtherGuest).isFalse();
+    assertThat(stats.getItemCount()).isEqualTo(2);
+    assertThat(stats.getItemCount(MediaType.DVD)).isEqualTo(1);
+    assertThat(stats.getGuestCount()).isEqualTo(2);
+    assertThat(stats.getLibrarianCount()).isEqualTo(1);
+    assertThat(stats.getCheckedOutCount()).isEqualTo(1);
+    assertThat(stats.getCheckoutCount(patron.getId())).isEqualTo(1);
+    assertThat(stats.getCheckoutCount(librarian.getId())).isZero();
+  }
+
+  @Test
+  void testLibrary_listsTopBorrowersByCheckoutCount() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron first = new Patron("John Doe", "john@example.com");
+    Patron second = new Patron("Jane Roe", "jane@example.com");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(first);
+    classUnderTest.addLibraryGuest(second);
+    List<Dvd> dvds = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      dvds.add(new Dvd(UUID.randomUUID(), "Dvd " + i));
+    }
+    classUnderTest.addMediaItems(dvds, librarian);
+
+    // Act
+    classUnderTest.checkOutMediaItems(first, dvds.subList(0, 3));
+    classUnderTest.checkOutMediaItems(second, dvds.subList(3, 5));
+    classUnderTest.checkOutMediaItems(librarian, dvds.subList(5, 6));
+
+    // Assert
+    LibraryStats stats = classUnderTest.getStats();
+    assertThat(stats.getBorrowerCount()).isEqualTo(3);
+    assertThat(stats.getTopBorrowers(2))
+        .containsExactly(entry(first.getId(), 3), entry(second.getId(), 2));
+    assertThat(stats.getTopBorrowers(0)).isEmpty();
+  }
+
+  @Test
+  void testLibrary_findsGuestsByEmailIgnoringCase() throws MediaItemCheckedOutException {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "Anthony@Example.com");
+    Patron patron = new Patron("John Doe", "john@example.com");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(patron);
+
+    // Act
+    classUnderTest.removeLibraryGuest(patron);
+
+    // Assert
+    assertThat(classUnderTest.hasLibraryGuest("anthony@example.COM")).isTrue();
+    assertThat(classUnderTest.findLibraryGuest("ANTHONY@example.com")).contains(librarian);
+    assertThat(classUnderTest.hasLibraryGuest("john@example.com")).isFalse();
+    assertThat(classUnderTest.getLibrarians()).containsExactly(librarian);
+  }
+
+  @Test
+  void testLibrary_canAddItemsInBulk() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    UUID dvdId = UUID.randomUUID();
+    Dvd original = new Dvd(dvdId, "The Matrix");
+    Dvd replacement = new Dvd(dvdId, "The Matrix Reloaded");
+    Book book =
+        new Book(
+            UUID.randomUUID(),
+            "The Great Gatsby",
+            "978-0743273565",
+            List.of("F. Scott Fitzgerald"),
+            180);
+    classUnderTest.addMediaItem(original, librarian);
+
+    // Act
+    List<Boolean> results = classUnderTest.addMediaItems(List.of(book, replacement), librarian);
+
+    // Assert
+    var query = SearchCriteria.builder().title("reloaded").build();
+    assertThat(results).containsExactly(true, false);
+    assertThat(classUnderTest.hasMediaItem(book)).isTrue();
+    assertThat(classUnderTest.findMediaItem(dvdId)).containsSame(replacement);
+    assertThat(classUnderTest.search(query)).containsExactly(replacement);
+    assertThat(classUnderTest.getStats().getItemCount()).isEqualTo(2);
+    assertThat(book.isCheckedOut()).isFalse();
+  }
+
+  @Test
+  void testLibrary_streamsFilteredMatchesInIdOrder() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    List<Dvd> dvds = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      dvds.add(new Dvd(UUID.randomUUID(), i % 2 == 0 ? "Even " + i : "Odd " + i));
+    }
+    classUnderTest.addMediaItems(dvds, librarian);
+    classUnderTest.addMediaItem(
+        new Book(UUID.randomUUID(), "Even Steven", "978-0000000000", List.of("Anon"), 10),
+        librarian);
+    var query = SearchCriteria.builder().title("even").type("dvd").build();
+
+    // Act
+    Iterable<MediaItem> results = classUnderTest.searchInOrder(query, MediaItemOrder.ID);
+
+    // Assert
+    assertThat(results)
+        .containsExactlyElementsOf(
+            dvds.stream()
+                .filter(dvd -> dvd.getTitle().startsWith("Even"))
+                .sorted(MediaItemOrder.ID.comparator())
+                .toList());
+  }
+
+  @Test
+  void testLibrary_pagesFilteredMatchesInTitleOrder() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    List<Dvd> dvds = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      dvds.add(new Dvd(UUID.randomUUID(), (i % 2 == 0 ? "Even " : "Odd ") + (char) ('z' - i)));
+    }
+    classUnderTest.addMediaItems(dvds, librarian);
+    Dvd renamed = new Dvd(dvds.get(0).getId(), "Odd one out");
+    classUnderTest.addMediaItem(renamed, librarian);
+    var query = SearchCriteria.builder().title("even").build();
+
+    // Act
+    List<MediaItem> pages = new ArrayList<>();
+    MediaItemOrder.Position after = null;
+    List<MediaItem> page;
+    do {
+      page = classUnderTest.search(query, MediaItemOrder.TITLE, after, 3);
+      pages.addAll(page);
+      after = page.isEmpty() ? null : MediaItemOrder.TITLE.positionOf(page.get(page.size() - 1));
+    } while (page.size() == 3);
+
+    // Assert
+    assertThat(pages)
+        .containsExactlyElementsOf(
+            dvds.stream()
+                .skip(1)
+                .filter(dvd -> dvd.getTitle().startsWith("Even"))
+                .sorted(MediaItemOrder.TITLE.comparator())
+                .toList());
+    assertThat(classUnderTest.searchInOrder(query, MediaItemOrder.TITLE))
+        .containsExactlyElementsOf(pages);
+  }
+
+  @Test
+  void testLibrary_cachesSearchesUntilMatchingTypeChanges() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Dvd matrix = new Dvd(UUID.randomUUID(), "The Matrix");
+    Dvd reloaded = new Dvd(UUID.randomUUID(), "The Matrix Reloaded");
+    Book book =
+        new Book(
+            UUID.randomUUID(), "The Matrix Explained", "978-0", List.of("Anthony Mays"), 100);
+    classUnderTest.addMediaItem(matrix, librarian);
+    var query = SearchCriteria.builder().title("MATRIX").type("dvd").build();
+    var equivalentQuery = SearchCriteria.builder().title("matrix").type("DVD").build();
+
+    // Act
+    Set<MediaItem> first = classUnderTest.search(query);
+    classUnderTest.addMediaItem(book, librarian);
+    Set<MediaItem> afterBookAdded = classUnderTest.search(equivalentQuery);
+    classUnderTest.addMediaItem(reloaded, librarian);
+    Set<MediaItem> afterDvdAdded = classUnderTest.search(query);
+
+    // Assert
+    assertThat(first).containsExactly(matrix);
+    assertThat(afterBookAdded).isSameAs(first);
+    assertThat(afterDvdAdded).containsExactlyInAnyOrder(matrix, reloaded);
+    assertThat(classUnderTest.getStats().getSearchCacheHitCount()).isEqualTo(1);
+    assertThat(classUnderTest.getStats().getSearchCacheMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  void testLibrary_checksOutItemsInBulk() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron patron = new Patron("John Doe", "john@example.com");
+    Dvd dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    Dvd borrowed = new Dvd(UUID.randomUUID(), "Inception");
+    Magazine magazine = new Magazine(UUID.randomUUID(), "Time");
+    Dvd missing = new Dvd(UUID.randomUUID(), "Not Here");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(patron);
+    classUnderTest.addMediaItems(List.of(dvd, borrowed, magazine), librarian);
+    classUnderTest.checkOutMediaItem(borrowed, librarian);
+
+    // Act
+    List<Boolean> results =
+        classUnderTest.checkOutMediaItems(patron, List.of(dvd, borrowed, magazine, missing, dvd));
+
+    // Assert
+    assertThat(results).containsExactly(true, false, false, false, false);
+    assertThat(classUnderTest.getCheckedOutByGuest(patron)).containsExactly(dvd);
+    assertThat(classUnderTest.getStats().getCheckedOutCount()).isEqualTo(2);
+    assertThat(classUnderTest.getStats().getCheckoutCount(patron.getId())).isEqualTo(1);
+  }
+
+  @Test
+  void testLibrary_checksInItemsInBulk() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron patron = new Patron("John Doe", "john@example.com");
+    Dvd dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    Dvd borrowed = new Dvd(UUID.randomUUID(), "Inception");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(patron);
+    classUnderTest.addMediaItems(List.of(dvd, borrowed), librarian);
+    classUnderTest.checkOutMediaItems(patron, List.of(dvd));
+    classUnderTest.checkOutMediaItems(librarian, List.of(borrowed));
+
+    // Act
+    List<Boolean> results = classUnderTest.checkInMediaItems(patron, List.of(dvd, borrowed, dvd));
+
+    // Assert
+    assertThat(results).containsExactly(true, false, false);
+    assertThat(classUnderTest.isCheckedOut(dvd)).isFalse();
+    assertThat(classUnderTest.isCheckedOut(borrowed)).isTrue();
+    assertThat(classUnderTest.getStats().getCheckoutCount(patron.getId())).isZero();
+  }
+
+  @Test
+  void testLibrary_refusesCheckInFromUnknownGuest() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron stranger = new Patron("Jane Roe", "jane@example.com");
+    Dvd dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addMediaItem(dvd, librarian);
+    classUnderTest.checkOutMediaItem(dvd, librarian);
+
+    // Act
+    boolean single = classUnderTest.checkInMediaItem(dvd, stranger);
+    List<Boolean> bulk = classUnderTest.checkInMediaItems(stranger, List.of(dvd));
+
+    // Assert
+    assertThat(single).isFalse();
+    assertThat(bulk).containsExactly(false);
+    assertThat(classUnderTest.isCheckedOut(dvd)).isTrue();
+  }
+
+  @Test
+  void testLibrary_tracksOverdueItems() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron patron = new Patron("John Doe", "john@example.com");
+    Dvd overdue = new Dvd(UUID.randomUUID(), "The Matrix");
+    Dvd dueSoon = new Dvd(UUID.randomUUID(), "Inception");
+    Dvd dueLater = new Dvd(UUID.randomUUID(), "Tenet");
+    Dvd returned = new Dvd(UUID.randomUUID(), "Memento");
+    Instant now = Instant.parse("2024-06-01T12:00:00Z");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(patron);
+    classUnderTest.addMediaItems(List.of(overdue, dueSoon, dueLater, returned), librarian);
+    classUnderTest.checkOutMediaItem(overdue, patron, now.minus(Duration.ofDays(1)));
+    classUnderTest.checkOutMediaItem(dueSoon, patron, now.plus(Duration.ofHours(2)));
+    classUnderTest.checkOutMediaItem(dueLater, patron, now.plus(Duration.ofDays(7)));
+    classUnderTest.checkOutMediaItem(returned, patron, now.minus(Duration.ofDays(2)));
+    classUnderTest.checkInMediaItem(returned, patron);
+
+    // Act
+    List<MediaItem> firstSweep = classUnderTest.sweepOverdueItems(now);
+    List<MediaItem> laterSweep = classUnderTest.sweepOverdueItems(now.plus(Duration.ofHours(3)));
+
+    // Assert
+    assertThat(classUnderTest.getOverdueItems(now)).containsExactly(overdue);
+    assertThat(classUnderTest.getItemsDueBetween(now, now.plus(Duration.ofHours(24))))
+        .containsExactly(dueSoon);
+    assertThat(classUnderTest.getDueDate(dueLater)).contains(now.plus(Duration.ofDays(7)));
+    assertThat(classUnderTest.getDueDate(returned)).isEmpty();
+    assertThat(firstSweep).containsExactly(overdue);
+    assertThat(laterSweep).containsExactly(dueSoon);
+  }
+
+  @Test
+  void testLibrary_reportsOverdueItemsOnceWhenListenerThrows() {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Dvd first = new Dvd(UUID.randomUUID(), "The Matrix");
+    Dvd second = new Dvd(UUID.randomUUID(), "Inception");
+    Instant now = Instant.parse("2024-06-01T12:00:00Z");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addMediaItems(List.of(first, second), librarian);
+    classUnderTest.checkOutMediaItem(first, librarian, now.minus(Duration.ofDays(2)));
+    classUnderTest.checkOutMediaItem(second, librarian, now.minus(Duration.ofDays(1)));
+    List<MediaItem> reported = new ArrayList<>();
+    classUnderTest.addListener(
+        new LibraryListener() {
+          @Override
+          public void onMediaItemOverdue(MediaItem item, Instant dueDate) {
+            throw new IllegalStateException("listener failed");
+          }
+        });
+    classUnderTest.addListener(
+        new LibraryListener() {
+          @Override
+          public void onMediaItemOverdue(MediaItem item, Instant dueDate) {
+            reported.add(item);
+          }
+        });
+
+    // Act
+    List<MediaItem> firstSweep = classUnderTest.sweepOverdueItems(now);
+    List<MediaItem> laterSweep = classUnderTest.sweepOverdueItems(now.plus(Duration.ofHours(1)));
+
+    // Assert
+    assertThat(firstSweep).containsExactly(first, second);
+    assertThat(laterSweep).isEmpty();
+    assertThat(reported).containsExactly(first, second);
+  }
+
+  @Test
+  void testLibrary_handsReturnedItemToNextHolder() throws Exception {
+    // Arrange
+    Librarian librarian = new Librarian("Anthony Mays", "anthony@example.com");
+    Patron first = new Patron("John Doe", "john@example.com");
+    Patron second = new Patron("Jane Doe", "jane@example.com");
+    Dvd dvd = new Dvd(UUID.randomUUID(), "The Matrix");
+    classUnderTest.addLibraryGuest(librarian);
+    classUnderTest.addLibraryGuest(first);
+    classUnderTest.addLibraryGuest(second);
+    classUnderTest.addMediaItem(dvd, librarian);
+    var fulfilled = new CompletableFuture<LibraryGuest>();
+    classUnderTest.addListener(
+        new LibraryListener() {
+          @Override
+          public void onHoldFulfilled(MediaItem item, LibraryGuest guest) {
+            throw new IllegalStateException("Listeners after this one are still told");
+          }
+        });
+    classUnderTest.addListener(
+        new LibraryListener() {
+          @Override
+          public void onHoldFulfilled(MediaItem item, LibraryGuest guest) {
+            fulfilled.complete(guest);
+          }
+        });
+    boolean heldWhileIn = classUnderTest.placeHold(dvd, first);
+    classUnderTest.checkOutMediaItem(dvd, librarian);
+    classUnderTest.placeHold(dvd, first);
+    classUnderTest.placeHold(dvd, second);
+    boolean heldTwice = classUnderTest.placeHold(dvd, second);
+
+    // Act
+    Instant handedOffAfter = Instant.now();
+    classUnderTest.checkInMediaItem(dvd, librarian);
+    Instant handedOffBefore = Instant.now();
+    boolean jumpedQueue = classUnderTest.checkOutMediaItem(dvd, librarian);
+
+    // Assert
+    assertThat(heldWhileIn).isFalse();
+    assertThat(heldTwice).isFalse();
+    assertThat(jumpedQueue).isFalse();
+    assertThat(classUnderTest.getCheckedOutByGuest(first)).containsExactly(dvd);
+    assertThat(classUnderTest.getHolds(dvd)).containsExactly(second);
+    assertThat(classUnderTest.getDueDate(dvd).orElseThrow())
+        .isBetween(
+            handedOffAfter.plus(Library.DEFAULT_LOAN_PERIOD),
+            handedOffBefore.plus(Library.DEFAULT_LOAN_PERIOD));
+    assertThat(fulfilled.get(10, TimeUnit.SECONDS)).isSameAs(first);
+  }
 }
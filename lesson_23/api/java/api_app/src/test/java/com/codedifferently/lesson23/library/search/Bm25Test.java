@@ -0,0 +1,26 @@
+package com.codedifferently.lesson23.library.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class Bm25Test {
+
+  @Test
+  void testOccurrences_countsEachTokenOnce() {
+    // Act
+    int repeatedInsideToken = Bm25.occurrences("banana bread", "ana");
+    int inSeveralTokens = Bm25.occurrences("anagram, banana & ana", "ana");
+    // Assert
+    assertThat(repeatedInsideToken).isEqualTo(1);
+    assertThat(inSeveralTokens).isEqualTo(3);
+  }
+
+  @Test
+  void testOccurrences_returnsZeroWhenAbsent() {
+    // Act
+    int occurrences = Bm25.occurrences("the great gatsby", "mock");
+    // Assert
+    assertThat(occurrences).isZero();
+  }
+}
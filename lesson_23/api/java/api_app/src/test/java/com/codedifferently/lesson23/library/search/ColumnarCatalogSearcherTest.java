@@ -0,0 +1,82 @@
+package com.codedifferently.lesson23.library.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Magazine;
+import com.codedifferently.lesson23.library.MediaItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ColumnarCatalogSearcherTest {
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+  private ColumnarCatalogSearcher<MediaItem> classUnderTest;
+  private List<MediaItem> catalog;
+
+  @BeforeEach
+  void setUp() {
+    // Parallel from the first item, so that every search is split into chunks.
+    classUnderTest = new ColumnarCatalogSearcher<>(ScanStrategy.parallel(pool));
+    catalog = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      String title = (i % 2 == 0 ? "The Great " : "A Small ") + i;
+      catalog.add(
+          switch (i % 3) {
+            case 0 -> new Book(UUID.randomUUID(), title, "978-0", List.of("Author " + i), 10);
+            case 1 -> new Dvd(UUID.randomUUID(), title);
+            default -> new Magazine(UUID.randomUUID(), title);
+          });
+    }
+    classUnderTest.addAll(catalog);
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  void testSearch_agreesWithLinearScan() {
+    var linearSearcher = new CatalogSearcher<>(catalog, ScanStrategy.sequential());
+    String[] titles = {null, "great", "SMALL 4", "zzz"};
+    String[] authors = {null, "author 1", "nobody"};
+    String[] types = {null, "book", "DVD", "magazine"};
+    for (String title : titles) {
+      for (String author : authors) {
+        for (String type : types) {
+          var query = SearchCriteria.builder().title(title).author(author).type(type).build();
+          assertThat(classUnderTest.search(query))
+              .describedAs("title=%s author=%s type=%s", title, author, type)
+              .containsExactlyInAnyOrderElementsOf(linearSearcher.search(query));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testSearch_findsItemMovedIntoRemovedSlot() {
+    // Arrange
+    MediaItem removed = catalog.get(0);
+    MediaItem moved = catalog.get(catalog.size() - 1);
+    classUnderTest.remove(removed);
+
+    // Act
+    var removedResults =
+        classUnderTest.search(SearchCriteria.builder().id(removed.getId().toString()).build());
+    var movedResults =
+        classUnderTest.search(SearchCriteria.builder().id(moved.getId().toString()).build());
+    var allResults = classUnderTest.search(new SearchCriteria());
+
+    // Assert
+    assertThat(removedResults).isEmpty();
+    assertThat(movedResults).containsExactly(moved);
+    assertThat(allResults).hasSize(catalog.size() - 1).doesNotContain(removed);
+  }
+}
@@ -0,0 +1,87 @@
+package com.codedifferently.lesson23.library.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class CompiledQueryTest {
+
+  private final Book book =
+      new Book(
+          UUID.fromString("e27a4e0d-9664-420d-955e-c0e295d0ce02"),
+          "The Great Gatsby",
+          "978-0743273565",
+          List.of("F. Scott Fitzgerald"),
+          180);
+
+  @Test
+  void testMatches_ignoresCaseOfNeedles() {
+    // Arrange
+    var query =
+        CompiledQuery.compile(
+            SearchCriteria.builder()
+                .id("E27A4E0D-9664-420D-955E-C0E295D0CE02")
+                .title("GREAT g")
+                .author("SCOTT")
+                .type("Book")
+                .build());
+
+    // Act
+    boolean matches = query.matches(book);
+
+    // Assert
+    assertThat(matches).isTrue();
+  }
+
+  @Test
+  void testMatches_rejectsIdsThatAreNotCanonical() {
+    // Arrange
+    var item = new Dvd(UUID.fromString("1-2-3-4-5"), "Short Id");
+    var query = CompiledQuery.compile(SearchCriteria.builder().id("1-2-3-4-5").build());
+
+    // Act
+    boolean matches = query.matches(item);
+
+    // Assert
+    assertThat(matches).isFalse();
+    assertThat(item.matches(SearchCriteria.builder().id(item.getId().toString()).build()))
+        .isTrue();
+  }
+
+  @Test
+  void testMatches_requiresAuthorsWhenAuthorIsGiven() {
+    // Arrange
+    var query = CompiledQuery.compile(SearchCriteria.builder().author("").build());
+
+    // Act
+    boolean bookMatches = query.matches(book);
+    boolean dvdMatches = query.matches(new Dvd(UUID.randomUUID(), "No Authors"));
+
+    // Assert
+    assertThat(bookMatches).isTrue();
+    assertThat(dvdMatches).isFalse();
+  }
+
+  @Test
+  void testMatches_toleratesTyposUpToMaxEdits() {
+    // Arrange
+    var criteria = SearchCriteria.builder().title("grate gatsbi").author("Fitzgerld").build();
+
+    // Act
+    boolean exactMatches = CompiledQuery.compile(criteria).matches(book);
+    criteria.maxEdits = 2;
+    boolean fuzzyMatches = CompiledQuery.compile(criteria).matches(book);
+
+    // Assert
+    assertThat(exactMatches).isFalse();
+    assertThat(fuzzyMatches).isTrue();
+    criteria.maxEdits = 3;
+    assertThatThrownBy(() -> CompiledQuery.compile(criteria))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
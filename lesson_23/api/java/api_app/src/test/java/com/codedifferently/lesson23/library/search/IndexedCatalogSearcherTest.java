@@ -0,0 +1,169 @@
+package com.codedifferently.lesson23.library.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.library.Book;
+import com.codedifferently.lesson23.library.Dvd;
+import com.codedifferently.lesson23.library.Magazine;
+import com.codedifferently.lesson23.library.MediaItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndexedCatalogSearcherTest {
+
+  private IndexedCatalogSearcher<MediaItem> classUnderTest;
+  private List<MediaItem> catalog;
+  private CatalogSearcher<MediaItem> linearSearcher;
+
+  @BeforeEach
+  void setUp() {
+    classUnderTest = new IndexedCatalogSearcher<>();
+    catalog = new ArrayList<>();
+    linearSearcher = new CatalogSearcher<>(catalog);
+    add(
+        new Book(
+            UUID.randomUUID(),
+            "The Great Gatsby",
+            "978-0743273565",
+            List.of("F. Scott Fitzgerald"),
+            180));
+    add(
+        new Book(
+            UUID.randomUUID(),
+            "To Kill a Mockingbird",
+            "978-0061120084",
+            List.of("Harper Lee"),
+            281));
+    add(new Dvd(UUID.randomUUID(), "The Great Escape"));
+    add(new Magazine(UUID.randomUUID(), "Great Lakes Monthly"));
+  }
+
+  private void add(MediaItem item) {
+    catalog.add(item);
+    classUnderTest.add(item);
+  }
+
+  @Test
+  void testSearch_matchesTitleInfixes() {
+    // Arrange
+    var query = SearchCriteria.builder().title("t gats").build();
+    // Act
+    var results = classUnderTest.search(query);
+    // Assert
+    assertThat(results).extracting(MediaItem::getTitle).containsExactly("The Great Gatsby");
+  }
+
+  @Test
+  void testSearch_combinesTypeAndTitle() {
+    // Arrange
+    var query = SearchCriteria.builder().title("GREAT").type("dvd").build();
+    // Act
+    var results = classUnderTest.search(query);
+    // Assert
+    assertThat(results).extracting(MediaItem::getTitle).containsExactly("The Great Escape");
+  }
+
+  @Test
+  void testSearch_matchesAuthors() {
+    // Arrange
+    var query = SearchCriteria.builder().author("lee").build();
+    // Act
+    var results = classUnderTest.search(query);
+    // Assert
+    assertThat(results).extracting(MediaItem::getTitle).containsExactly("To Kill a Mockingbird");
+  }
+
+  @Test
+  void testSearch_matchesAuthorInfixesAfterRemovals() {
+    // Arrange
+    classUnderTest.remove(catalog.remove(1));
+    add(
+        new Book(
+            UUID.randomUUID(),
+            "A Wizard of Earthsea",
+            "978-0547773742",
+            List.of("Ursula K. Le Guin"),
+            183));
+    // Act
+    var results = classUnderTest.search(SearchCriteria.builder().author("guin").build());
+    var removed = classUnderTest.search(SearchCriteria.builder().author("harp").build());
+    // Assert
+    assertThat(results).extracting(MediaItem::getTitle).containsExactly("A Wizard of Earthsea");
+    assertThat(removed).isEmpty();
+  }
+
+  @Test
+  void testSearch_findsById() {
+    // Arrange
+    MediaItem item = catalog.get(2);
+    var query = SearchCriteria.builder().id(item.getId().toString().toUpperCase()).build();
+    // Act
+    var results = classUnderTest.search(query);
+    // Assert
+    assertThat(results).containsExactly(item);
+  }
+
+  @Test
+  void testSearch_forgetsRemovedItems() {
+    // Arrange
+    MediaItem item = catalog.remove(0);
+    classUnderTest.remove(item);
+    var query = SearchCriteria.builder().title("great").build();
+    // Act
+    var results = classUnderTest.search(query);
+    // Assert
+    assertThat(results).doesNotContain(item).hasSize(2);
+  }
+
+  @Test
+  void testSearchRanked_putsShortestMatchingTitleFirst() {
+    // Arrange
+    add(new Dvd(UUID.randomUUID(), "Great"));
+    var query = SearchCriteria.builder().title("great").build();
+    // Act
+    var results = classUnderTest.searchRanked(query, 1);
+    // Assert
+    assertThat(results).extracting(MediaItem::getTitle).containsExactly("Great");
+    assertThat(classUnderTest.search(query)).hasSize(4);
+  }
+
+  @Test
+  void testSearch_findsMisspelledAuthors() {
+    // Arrange
+    var query = SearchCriteria.builder().author("fitzgerld").maxEdits(1).build();
+    // Act
+    var results = classUnderTest.search(query);
+    // Assert
+    assertThat(results).extracting(MediaItem::getTitle).containsExactly("The Great Gatsby");
+    assertThat(results).containsExactlyInAnyOrderElementsOf(linearSearcher.search(query));
+  }
+
+  @Test
+  void testSearch_agreesWithLinearScan() {
+    String[] titles = {null, "", "great", "e g", "mock", "!", "zzz"};
+    String[] authors = {null, "", "scott", "ee", "nobody", "harpr le"};
+    String[] types = {null, "book", "DVD", "magazine", "unknown"};
+    Integer[] maxEdits = {null, 1, 2};
+    for (String title : titles) {
+      for (String author : authors) {
+        for (String type : types) {
+          for (Integer edits : maxEdits) {
+            var query =
+                SearchCriteria.builder()
+                    .title(title)
+                    .author(author)
+                    .type(type)
+                    .maxEdits(edits)
+                    .build();
+            assertThat(classUnderTest.search(query))
+                .describedAs("title=%s author=%s type=%s edits=%s", title, author, type, edits)
+                .containsExactlyInAnyOrderElementsOf(linearSearcher.search(query));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.codedifferently.lesson23.library.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TermDictionaryTest {
+
+  private Set<String> liveTerms;
+  private TermDictionary classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    liveTerms = new HashSet<>();
+    classUnderTest = new TermDictionary(liveTerms::contains);
+  }
+
+  private void add(String term) {
+    if (liveTerms.add(term)) {
+      classUnderTest.add(term);
+    }
+    classUnderTest.compact();
+  }
+
+  private void remove(String term) {
+    if (liveTerms.remove(term)) {
+      classUnderTest.remove(term);
+    }
+    classUnderTest.compact();
+  }
+
+  private List<String> within(String term, int maxEdits) {
+    List<String> found = new ArrayList<>();
+    classUnderTest.forEachWithin(term, maxEdits, found::add);
+    return found;
+  }
+
+  @Test
+  void testForEachWithin_findsTermsOnceAcrossSegments() {
+    // Arrange
+    add("fitzgerald");
+    for (int i = 0; i < TermDictionary.MAX_PENDING_TERMS; i++) {
+      add("term" + i);
+    }
+    add("fitzgerlad");
+
+    // Act
+    List<String> found = within("fitzgerld", 2);
+
+    // Assert
+    assertThat(found).containsExactlyInAnyOrder("fitzgerald", "fitzgerlad");
+  }
+
+  @Test
+  void testForEachWithin_agreesWithEditDistanceAsTermsComeAndGo() {
+    var random = new Random(42);
+    String alphabet = "abcé";
+    List<String> added = new ArrayList<>();
+    for (int step = 0; step < 4_000; step++) {
+      if (added.isEmpty() || random.nextInt(3) > 0) {
+        String term = randomWord(random, alphabet, 7);
+        add(term);
+        added.add(term);
+      } else {
+        remove(added.get(random.nextInt(added.size())));
+      }
+      if (step % 250 == 0) {
+        String query = randomWord(random, alphabet, 8);
+        for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+          Set<String> expected = new HashSet<>();
+          for (String term : liveTerms) {
+            if (EditDistance.isWithin(term, 0, term.length(), query, maxEdits)) {
+              expected.add(term);
+            }
+          }
+          assertThat(within(query, maxEdits))
+              .describedAs("query=%s maxEdits=%s", query, maxEdits)
+              .doesNotHaveDuplicates()
+              .containsExactlyInAnyOrderElementsOf(expected);
+        }
+      }
+    }
+  }
+
+  private static String randomWord(Random random, String alphabet, int maxLength) {
+    var word = new StringBuilder();
+    int length = 1 + random.nextInt(maxLength);
+    for (int i = 0; i < length; i++) {
+      word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return word.toString();
+  }
+}
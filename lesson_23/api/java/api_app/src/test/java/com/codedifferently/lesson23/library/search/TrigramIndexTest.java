@@ -0,0 +1,88 @@
+package com.codedifferently.lesson23.library.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+
+  private TrigramIndex classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    classUnderTest = new TrigramIndex();
+  }
+
+  @Test
+  void testCandidates_findsShortNeedlesAtEitherEnd() {
+    // Arrange
+    classUnderTest.add(1, "gatsby");
+    classUnderTest.add(2, "mockingbird");
+    classUnderTest.add(3, "by");
+
+    // Act
+    int[] single = classUnderTest.candidates("y");
+    int[] pair = classUnderTest.candidates("bi");
+    int[] missing = classUnderTest.candidates("zz");
+
+    // Assert
+    assertThat(single).containsExactly(1, 3);
+    assertThat(pair).containsExactly(2);
+    assertThat(missing).isEmpty();
+  }
+
+  @Test
+  void testCandidates_dropsShortNeedlesOfRemovedDocuments() {
+    // Arrange
+    classUnderTest.add(1, "gatsby");
+    classUnderTest.add(2, "mockingbird");
+    classUnderTest.remove(1, "gatsby");
+
+    // Act
+    int[] candidates = classUnderTest.candidates("b");
+
+    // Assert
+    assertThat(candidates).containsExactly(2);
+  }
+
+  @Test
+  void testCandidates_coversEveryShortNeedleMatchAsDocumentsComeAndGo() {
+    var random = new Random(7);
+    Map<Integer, String> documents = new HashMap<>();
+    for (int step = 0; step < 2_000; step++) {
+      int docId = random.nextInt(200);
+      String previous = documents.remove(docId);
+      if (previous != null) {
+        classUnderTest.remove(docId, previous);
+      } else {
+        String text = randomWord(random, 1 + random.nextInt(6));
+        classUnderTest.add(docId, text);
+        documents.put(docId, text);
+      }
+      if (step % 100 == 0) {
+        String needle = randomWord(random, 1 + random.nextInt(2));
+        int[] expected =
+            documents.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(needle))
+                .mapToInt(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+        assertThat(classUnderTest.candidates(needle))
+            .describedAs("needle=%s", needle)
+            .containsExactly(expected);
+      }
+    }
+  }
+
+  private static String randomWord(Random random, int length) {
+    var word = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      word.append("abcd".charAt(random.nextInt(4)));
+    }
+    return word.toString();
+  }
+}
@@ -0,0 +1,114 @@
+package com.codedifferently.lesson23.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codedifferently.lesson23.Lesson23;
+import com.codedifferently.lesson23.models.CheckoutModel;
+import com.codedifferently.lesson23.models.LibraryGuestModel;
+import com.codedifferently.lesson23.models.MediaItemModel;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ContextConfiguration;
+
+@SpringBootTest
+@ContextConfiguration(classes = Lesson23.class)
+class RepositoryCacheTest {
+
+  @Autowired private MediaItemRepository mediaItemRepository;
+  @Autowired private LibraryGuestRepository libraryGuestRepository;
+  @Autowired private CheckoutRepository checkoutRepository;
+  @Autowired private CacheManager cacheManager;
+
+  private UUID seededItemId;
+
+  @AfterEach
+  void tearDown() {
+    if (seededItemId != null) {
+      checkoutRepository.deleteById(seededItemId);
+      cacheManager.getCache(RepositoryCacheConfiguration.GUESTS).evict("emily.brown@example.com");
+    }
+  }
+
+  @Test
+  void testCache_servesRepeatedLookupsUntilSaved() {
+    // Arrange
+    MediaItemModel item = mediaItemRepository.findAll().get(0);
+    Cache cache = cacheManager.getCache(RepositoryCacheConfiguration.MEDIA_ITEMS);
+    cache.evict(item.id);
+    CacheStats before = stats(cache);
+
+    // Act
+    mediaItemRepository.findById(item.id);
+    mediaItemRepository.findById(item.id);
+    CacheStats lookups = stats(cache).minus(before);
+    boolean cachedBeforeSave = cache.get(item.id) != null;
+    mediaItemRepository.save(item);
+
+    // Assert
+    assertThat(lookups.missCount()).isEqualTo(1);
+    assertThat(lookups.hitCount()).isEqualTo(1);
+    assertThat(cachedBeforeSave).isTrue();
+    assertThat(cache.get(item.id)).isNull();
+  }
+
+  @Test
+  void testCache_loadsGuestsWithCheckouts() {
+    // Arrange
+    var checkout = new CheckoutModel();
+    checkout.itemId = UUID.randomUUID();
+    checkout.email = "emily.brown@example.com";
+    checkout.dueDate = Instant.parse("2024-04-05T00:00:00Z");
+    checkoutRepository.save(checkout);
+    seededItemId = checkout.itemId;
+    Cache cache = cacheManager.getCache(RepositoryCacheConfiguration.GUESTS);
+    cache.evict(checkout.email);
+    CacheStats before = stats(cache);
+
+    // Act
+    libraryGuestRepository.findById(checkout.email);
+    LibraryGuestModel cached = libraryGuestRepository.findById(checkout.email).orElseThrow();
+    CacheStats lookups = stats(cache).minus(before);
+
+    // Assert
+    assertThat(lookups.missCount()).isEqualTo(1);
+    assertThat(lookups.hitCount()).isEqualTo(1);
+    // Reading the checkouts would fail outside a session if they had not been fetched.
+    assertThat(cached.checkedOutItems)
+        .singleElement()
+        .satisfies(
+            loaded -> {
+              assertThat(loaded.itemId).isEqualTo(checkout.itemId);
+              assertThat(loaded.email).isEqualTo(checkout.email);
+              assertThat(loaded.dueDate).isEqualTo(checkout.dueDate);
+            });
+  }
+
+  @Test
+  void testFindAll_loadsGuestsWithCheckouts() {
+    // Act
+    List<LibraryGuestModel> guests = libraryGuestRepository.findAll();
+
+    // Assert
+    // Reading the checkouts would fail outside a session if they had not been fetched.
+    LibraryGuestModel guest =
+        guests.stream()
+            .filter(candidate -> candidate.email.equals("alice.johnson@example.com"))
+            .findFirst()
+            .orElseThrow();
+    assertThat(guest.checkedOutItems).hasSize(2);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static CacheStats stats(Cache cache) {
+    return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache())
+        .stats();
+  }
+}
@@ -1,10 +1,13 @@
 package com.codedifferently.lesson23.web;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.codedifferently.lesson23.Lesson23;
@@ -12,6 +15,7 @@ import com.codedifferently.lesson23.library.Book;
 import com.codedifferently.lesson23.library.Library;
 import com.codedifferently.lesson23.library.MediaItem;
 import com.codedifferently.lesson23.library.search.SearchCriteria;
+import com.jayway.jsonpath.JsonPath;
 import java.util.Set;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -44,6 +48,72 @@ class MediaItemsControllerTest {
         .andExpect(jsonPath("$.items.length()").value(31));
   }
 
+  @Test
+  void testController_paginatesItems() throws Exception {
+    var firstPage =
+        mockMvc
+            .perform(get("/items?limit=20").contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.length()").value(20))
+            .andExpect(jsonPath("$.nextCursor").isString())
+            .andReturn();
+    String body = firstPage.getResponse().getContentAsString();
+    String cursor = JsonPath.read(body, "$.nextCursor");
+    String firstId = JsonPath.read(body, "$.items[0].id");
+
+    mockMvc
+        .perform(get("/items?limit=20&cursor=" + cursor).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items").isArray())
+        .andExpect(jsonPath("$.items[0].id").value(not(firstId)));
+  }
+
+  @Test
+  void testController_rejectsInvalidCursor() throws Exception {
+    mockMvc
+        .perform(get("/items?cursor=not-a-cursor").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void testController_filtersAndProjectsItems() throws Exception {
+    // Arrange
+    int expectedCount = library.search(SearchCriteria.builder().type("dvd").build()).size();
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/items?type=dvd&fields=id,title").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items.length()").value(expectedCount))
+        .andExpect(jsonPath("$.items[0].title").isString())
+        .andExpect(jsonPath("$.items[0].type").doesNotExist());
+  }
+
+  @Test
+  void testController_keepsEveryFieldWithoutProjection() throws Exception {
+    mockMvc
+        .perform(get("/items?type=dvd").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items[0].type").value("dvd"))
+        .andExpect(jsonPath("$.items[0].isbn").hasJsonPath())
+        .andExpect(jsonPath("$.items[0].authors").hasJsonPath())
+        .andExpect(jsonPath("$.items[0].pages").value(0));
+  }
+
+  @Test
+  void testController_streamsAllItems() throws Exception {
+    var result =
+        mockMvc
+            .perform(get("/items?stream=true").contentType(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items.length()").value(31));
+  }
+
   @Test
   void testController_getsAnItem() throws Exception {
     mockMvc